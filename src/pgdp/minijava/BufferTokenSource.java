@@ -0,0 +1,128 @@
+package pgdp.minijava;
+
+/**
+ * A {@link TokenSource} reading from a {@link TokenBuffer}. Positions are indices into the buffer.
+ */
+public class BufferTokenSource implements TokenSource {
+    private final TokenBuffer tokens;
+    private final int end;
+    private int pos;
+    private int cachedLine;
+    private int cachedLineStart;
+
+    public BufferTokenSource(TokenBuffer tokens) {
+        this(tokens, 0, tokens.size());
+    }
+
+    /**
+     * @param end the index after the last token this source hands out
+     */
+    public BufferTokenSource(TokenBuffer tokens, int pos, int end) {
+        this.tokens = tokens;
+        this.end = end;
+        this.pos = skipComments(pos);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pos < end;
+    }
+
+    @Override
+    public TokenKind kind(int k) {
+        return tokens.kind(index(k));
+    }
+
+    @Override
+    public String text(int k) {
+        return tokens.text(index(k));
+    }
+
+    @Override
+    public boolean textEquals(int k, String text) {
+        return tokens.textEquals(index(k), text);
+    }
+
+    @Override
+    public int line(int k) {
+        return tokens.line(index(k));
+    }
+
+    /**
+     * The start of the last line asked for is cached, so the parser asking for the columns of the
+     * tokens in order only scans each line once.
+     */
+    @Override
+    public int column(int k) {
+        int index = index(k);
+        int start = tokens.start(index);
+        if (tokens.line(index) != cachedLine || start < cachedLineStart) {
+            cachedLine = tokens.line(index);
+            cachedLineStart = start - tokens.column(index) + 1;
+        }
+        return start - cachedLineStart + 1;
+    }
+
+    @Override
+    public int value(int k) {
+        return tokens.value(index(k));
+    }
+
+    @Override
+    public SymbolTable symbols() {
+        return tokens.getSymbols();
+    }
+
+    @Override
+    public void advance() {
+        pos = skipComments(index(0) + 1);
+    }
+
+    @Override
+    public int position() {
+        return pos;
+    }
+
+    /**
+     * Skips the block starting at the next token up to its matching {@code }}, only looking at the kinds
+     * of the tokens in between.
+     *
+     * @return a source for the tokens of the block, braces included
+     * @throws IllegalStateException if the next token doesn't open a block or the block isn't closed
+     */
+    public BufferTokenSource skipBlock() {
+        int start = index(0);
+        if (tokens.kind(start) != TokenKind.LBRACE) {
+            throw new IllegalStateException("Expected a block at line " + tokens.line(start));
+        }
+        int depth = 0;
+        for (int i = start; i < end; i++) {
+            TokenKind kind = tokens.kind(i);
+            if (kind == TokenKind.LBRACE) {
+                depth++;
+            } else if (kind == TokenKind.RBRACE && --depth == 0) {
+                pos = skipComments(i + 1);
+                return new BufferTokenSource(tokens, start, i + 1);
+            }
+        }
+        throw new IllegalStateException("Couldn't close block opened at line " + tokens.line(start));
+    }
+
+    private int index(int k) {
+        int index = pos;
+        for (int i = 0; i < k; i++) {
+            index = skipComments(index + 1);
+        }
+        if (index >= end) {
+            throw TokenSource.unexpectedEnd(end == 0 ? 0 : tokens.line(end - 1));
+        }
+        return index;
+    }
+
+    private int skipComments(int index) {
+        while (index < end && tokens.kind(index) == TokenKind.COMMENT) {
+            index++;
+        }
+        return index;
+    }
+}
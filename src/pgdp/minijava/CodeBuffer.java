@@ -0,0 +1,138 @@
+package pgdp.minijava;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The code of a program as packed instructions: the ordinal of the {@link Opcode} and the operand of
+ * every instruction are stored next to each other in one growable int array, and labels are IDs into a
+ * table of their names. Passes work on the instructions by index without parsing any text, and the
+ * code can be replayed into any {@link InstructionSink}, like a {@link CodePrinter} for miniJVM text.
+ */
+public class CodeBuffer implements InstructionSink {
+    private int[] code = new int[64];
+    private int size;
+    private String[] labelNames = new String[16];
+    private int[] labelNumbers = new int[16];
+    private int labelCount;
+
+    @Override
+    public int newLabel(String name, int number) {
+        if(labelCount == labelNames.length) {
+            labelNames = Arrays.copyOf(labelNames, labelCount * 2);
+            labelNumbers = Arrays.copyOf(labelNumbers, labelCount * 2);
+        }
+        labelNames[labelCount] = name;
+        labelNumbers[labelCount] = number;
+        return labelCount++;
+    }
+
+    @Override
+    public void instruction(Opcode opcode) {
+        instruction(opcode, 0);
+    }
+
+    @Override
+    public void instruction(Opcode opcode, int operand) {
+        if(size * 2 == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[size * 2] = opcode.ordinal();
+        code[size * 2 + 1] = operand;
+        size++;
+    }
+
+    /**
+     * @return the number of instructions, labels included
+     */
+    public int size() {
+        return size;
+    }
+
+    public Opcode opcode(int index) {
+        return Opcode.fromOrdinal(code[checkIndex(index) * 2]);
+    }
+
+    /**
+     * @return the operand of the instruction, 0 if its opcode has none
+     */
+    public int operand(int index) {
+        return code[checkIndex(index) * 2 + 1];
+    }
+
+    /**
+     * Replaces the instruction at the index.
+     */
+    public void set(int index, Opcode opcode, int operand) {
+        code[checkIndex(index) * 2] = opcode.ordinal();
+        code[index * 2 + 1] = operand;
+    }
+
+    /**
+     * Drops the instructions from the given size on, for passes that compact the code in place.
+     */
+    public void truncate(int size) {
+        if(size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("Size " + size + " out of bounds for length " + this.size);
+        }
+        this.size = size;
+    }
+
+    public int labelCount() {
+        return labelCount;
+    }
+
+    public String labelName(int label) {
+        return labelNames[Objects.checkIndex(label, labelCount)];
+    }
+
+    /**
+     * @return the number following the name of the label, -1 if there is none
+     */
+    public int labelNumber(int label) {
+        return labelNumbers[Objects.checkIndex(label, labelCount)];
+    }
+
+    /**
+     * Replays the code into the sink, labels included.
+     */
+    public void writeTo(InstructionSink out) {
+        int[] labels = new int[labelCount];
+        for (int i = 0; i < labelCount; i++) {
+            labels[i] = out.newLabel(labelNames[i], labelNumbers[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            Opcode opcode = Opcode.fromOrdinal(code[i * 2]);
+            int operand = code[i * 2 + 1];
+            switch (opcode.getOperand()) {
+                case NONE -> out.instruction(opcode);
+                case LABEL -> out.instruction(opcode, labels[operand]);
+                default -> out.instruction(opcode, operand);
+            }
+        }
+    }
+
+    /**
+     * Writes the code as miniJVM text, see {@link CodePrinter}.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        try {
+            writeTo(new CodePrinter(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public String toString() {
+        var out = new StringBuilder();
+        writeTo(new CodePrinter(out));
+        return out.toString();
+    }
+
+    private int checkIndex(int index) {
+        return Objects.checkIndex(index, size);
+    }
+}
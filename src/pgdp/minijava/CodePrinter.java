@@ -0,0 +1,78 @@
+package pgdp.minijava;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Writes the instructions it receives as miniJVM text, one per line and without a trailing newline.
+ * Failures of the underlying {@link Appendable} are thrown as {@link UncheckedIOException}.
+ */
+public class CodePrinter implements InstructionSink {
+    private final Appendable out;
+    private String[] labelNames = new String[16];
+    private int[] labelNumbers = new int[16];
+    private int labelCount;
+    private boolean first = true;
+
+    public CodePrinter(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public int newLabel(String name, int number) {
+        if (labelCount == labelNames.length) {
+            labelNames = Arrays.copyOf(labelNames, labelCount * 2);
+            labelNumbers = Arrays.copyOf(labelNumbers, labelCount * 2);
+        }
+        labelNames[labelCount] = name;
+        labelNumbers[labelCount] = number;
+        return labelCount++;
+    }
+
+    @Override
+    public void instruction(Opcode opcode) {
+        try {
+            line();
+            out.append(opcode.name());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void instruction(Opcode opcode, int operand) {
+        try {
+            line();
+            switch (opcode.getOperand()) {
+                case NONE -> out.append(opcode.name());
+                case LABEL -> {
+                    if (opcode == Opcode.LABEL) {
+                        printLabel(operand);
+                        out.append(':');
+                    } else {
+                        out.append(opcode.name()).append(' ');
+                        printLabel(operand);
+                    }
+                }
+                default -> out.append(opcode.name()).append(' ').append(Integer.toString(operand));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void line() throws IOException {
+        if (!first) {
+            out.append('\n');
+        }
+        first = false;
+    }
+
+    private void printLabel(int label) throws IOException {
+        out.append(labelNames[label]);
+        if (labelNumbers[label] >= 0) {
+            out.append(Integer.toString(labelNumbers[label]));
+        }
+    }
+}
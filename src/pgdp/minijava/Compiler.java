@@ -16,11 +16,70 @@ public class Compiler {
         compileFromFile("resources/input.java");
     }
 
+    /**
+     * Compiles the source in a single pass that reports all lexical, syntax and undeclared variable
+     * errors to the diagnostics.
+     *
+     * @return the miniJVM code or null if there were errors
+     */
+    public static String compile(CharSequence source, Diagnostics diagnostics) {
+        return compile(source, diagnostics, false);
+    }
+
+    /**
+     * @param debug whether to compile from the debug tree that keeps every token instead of the lean one
+     */
+    public static String compile(CharSequence source, Diagnostics diagnostics, boolean debug) {
+        SyntaxTreeNode node = Parser.parse(source, diagnostics, !debug);
+        return Emitter.emit(node, diagnostics);
+    }
+
+    /**
+     * @param optimize whether to fold the constants of the tree with the {@link ConstantFolder} and to
+     *                 {@link #optimize(CodeBuffer, Diagnostics) optimize} the code
+     */
+    public static String compile(CharSequence source, Diagnostics diagnostics, boolean debug, boolean optimize) {
+        SyntaxTreeNode node = Parser.parse(source, diagnostics, !debug);
+        if(optimize && !diagnostics.hasErrors()) {
+            // folding can drop operands, so their variables are checked before
+            if(!Emitter.checkVariables(node, diagnostics)) {
+                return null;
+            }
+            node = ConstantFolder.fold(node);
+        }
+        CodeBuffer code = Emitter.emitCode(node, diagnostics);
+        if(code == null) {
+            return null;
+        }
+        if(optimize) {
+            optimize(code, diagnostics);
+        }
+        return code.toString();
+    }
+
+    /**
+     * Compiles the file and writes the code next to it, or to {@code resources/bin} for files in
+     * {@code resources}. The code is written through a buffered writer instead of being built as a
+     * single string first.
+     */
     public static void compileFromFile(String filePath) {
-        SyntaxTreeNode node = Parser.parseFromFile(filePath);
-        String out = """
-                //Generated using my MiniJavaCompiler at https://github.com/SilicDev/MiniJavaCompiler
-                """ + Emitter.emit(node);
+        compileFromFile(filePath, false);
+    }
+
+    /**
+     * @param optimize whether to fold the constants of the tree with the {@link ConstantFolder} and to
+     *                 {@link #optimize(CodeBuffer, Diagnostics) optimize} the code
+     */
+    public static void compileFromFile(String filePath, boolean optimize) {
+        SyntaxTreeNode node = Parser.parseFromFile(filePath, true);
+        if(optimize) {
+            Emitter.checkVariables(node, null);
+            node = ConstantFolder.fold(node);
+        }
+        CodeBuffer code = Emitter.emitCode(node);
+        if(optimize) {
+            optimize(code, null);
+        }
 
         if(filePath.startsWith("resources/")) {
             filePath = "resources/bin/" + filePath.substring(10);
@@ -29,10 +88,31 @@ public class Compiler {
             filePath = filePath.substring(0, filePath.length() - 5) + ".jvm";
         }
         Path path = Path.of(filePath);
-        try {
-            Files.writeString(path, out, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        try (var out = Files.newBufferedWriter(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write("""
+                    //Generated using my MiniJavaCompiler at https://github.com/SilicDev/MiniJavaCompiler
+                    """);
+            code.writeTo(out);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Runs the {@link PeepholeOptimizer#standard() standard} peephole optimizer and removes the code it
+     * left unreachable with the {@link DeadCodeEliminator}, until neither finds anything more to do. The
+     * slots of the variables are then reassigned by the {@link SlotAllocator}.
+     *
+     * @param diagnostics where warnings about unreachable code go to, may be null
+     */
+    private static void optimize(CodeBuffer code, Diagnostics diagnostics) {
+        var peephole = PeepholeOptimizer.standard();
+        peephole.optimize(code);
+        while(DeadCodeEliminator.eliminate(code, diagnostics) && peephole.optimize(code)) {
+            // a removed block can leave jumps to the very next instruction behind
+        }
+        SlotAllocator.allocate(code);
+        // variables that end up in the same slot turn copies between them into LOAD n; STORE n
+        peephole.optimize(code);
+    }
 }
@@ -0,0 +1,263 @@
+package pgdp.minijava;
+
+import pgdp.minijava.ast.NodeView;
+import pgdp.minijava.ast.SyntaxTreeNode;
+import pgdp.minijava.ast.TreeCursor;
+
+import java.util.Arrays;
+
+/**
+ * Folds the constant parts of the EXPRs and CONDs of a lean tree before it is emitted. Arithmetic on
+ * literals is evaluated with the overflow of Java ints, comparisons and boolean operators on literals
+ * become {@code true} or {@code false}, and operations that leave their operand as it is, like
+ * {@code x * 1}, {@code x + 0}, {@code !!c} or {@code true && c}, are replaced by the operand. Since the
+ * tree is folded bottom up, a folded operand can make its parent constant in turn.
+ * <p>
+ * An operand is only dropped, as in {@code x * 0}, if it has no effect: it doesn't call a function and
+ * doesn't divide, which could fail. A division by a literal 0 is left for the program to fail on. The
+ * variables of a dropped operand are gone as well, so they have to be checked with
+ * {@link Emitter#checkVariables(NodeView, Diagnostics)} before folding.
+ * <p>
+ * Debug trees keep every token and are left as they are.
+ */
+public final class ConstantFolder {
+    private ConstantFolder() {
+
+    }
+
+    /**
+     * Folds the tree without recursing. Subtrees that don't change are kept, so folding a tree that has
+     * nothing to fold returns the tree itself.
+     *
+     * @return the folded tree, frozen
+     */
+    public static SyntaxTreeNode fold(NodeView tree) {
+        SyntaxTreeNode[] results = new SyntaxTreeNode[16];
+        int size = 0;
+        var cursor = new TreeCursor().reset(tree, TreeCursor.Order.POSTORDER);
+        while (cursor.next()) {
+            NodeView node = cursor.node();
+            int count = node.getNumberChildren();
+            SyntaxTreeNode result;
+            if (count == 0 && node instanceof SyntaxTreeNode leaf) {
+                result = leaf;
+            } else {
+                SyntaxTreeNode[] children = Arrays.copyOfRange(results, size - count, size);
+                Arrays.fill(results, size - count, size, null);
+                size -= count;
+                result = fold(node, children);
+            }
+            if (size == results.length) {
+                results = Arrays.copyOf(results, size * 2);
+            }
+            results[size++] = result;
+        }
+        return results[0].freeze();
+    }
+
+    private static SyntaxTreeNode fold(NodeView node, SyntaxTreeNode[] children) {
+        SyntaxTreeNode folded = switch (node.getType()) {
+            case EXPR -> foldExpression(node, children);
+            case COND -> foldCondition(node, children);
+            default -> null;
+        };
+        return folded != null ? folded : copy(node, children);
+    }
+
+    /**
+     * @return the folded expression, null if there is nothing to fold
+     */
+    private static SyntaxTreeNode foldExpression(NodeView node, SyntaxTreeNode[] children) {
+        String operator = node.getValue();
+        if (operator.equals("-") && children.length == 1) {
+            Integer value = constant(children[0]);
+            if (value != null) {
+                return number(-value, node);
+            }
+            if (children[0].getValue().equals("-") && children[0].getNumberChildren() == 1) {
+                return children[0].getChild(0);
+            }
+            return null;
+        }
+        if (operator.isEmpty() || children.length != 2) {
+            return null;
+        }
+        SyntaxTreeNode left = children[0];
+        SyntaxTreeNode right = children[1];
+        Integer a = constant(left);
+        Integer b = constant(right);
+        if (a != null && b != null) {
+            return switch (operator) {
+                case "+" -> number(a + b, node);
+                case "-" -> number(a - b, node);
+                case "*" -> number(a * b, node);
+                case "/" -> b == 0 ? null : number(a / b, node);
+                case "%" -> b == 0 ? null : number(a % b, node);
+                default -> null;
+            };
+        }
+        return switch (operator) {
+            case "+" -> isConstant(a, 0) ? right : isConstant(b, 0) ? left : null;
+            case "-" -> isConstant(b, 0) ? left : null;
+            case "*" -> {
+                if (isConstant(a, 1) || isConstant(b, 0) && isPure(left)) {
+                    yield right;
+                }
+                if (isConstant(b, 1) || isConstant(a, 0) && isPure(right)) {
+                    yield left;
+                }
+                yield null;
+            }
+            case "/" -> isConstant(b, 1) ? left : null;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the folded condition, null if there is nothing to fold
+     */
+    private static SyntaxTreeNode foldCondition(NodeView node, SyntaxTreeNode[] children) {
+        String operator = node.getValue();
+        if (operator.equals("!") && children.length == 1) {
+            Boolean value = truth(children[0]);
+            if (value != null) {
+                return bool(!value, node);
+            }
+            if (children[0].getValue().equals("!") && children[0].getNumberChildren() == 1) {
+                return children[0].getChild(0);
+            }
+            return null;
+        }
+        if (operator.isEmpty() || children.length != 2) {
+            return null;
+        }
+        SyntaxTreeNode left = children[0];
+        SyntaxTreeNode right = children[1];
+        if (left.getType() == SyntaxTreeNode.Type.EXPR) {
+            Integer a = constant(left);
+            Integer b = constant(right);
+            if (a == null || b == null) {
+                return null;
+            }
+            return switch (operator) {
+                case "==" -> bool(a.intValue() == b.intValue(), node);
+                case "!=" -> bool(a.intValue() != b.intValue(), node);
+                case "<" -> bool(a < b, node);
+                case "<=" -> bool(a <= b, node);
+                case ">" -> bool(a > b, node);
+                case ">=" -> bool(a >= b, node);
+                default -> null;
+            };
+        }
+        Boolean a = truth(left);
+        Boolean b = truth(right);
+        return switch (operator) {
+            case "&&", "&" -> {
+                if (a == Boolean.TRUE || b == Boolean.FALSE && isPure(left)) {
+                    yield right;
+                }
+                if (b == Boolean.TRUE || a == Boolean.FALSE && isPure(right)) {
+                    yield left;
+                }
+                yield null;
+            }
+            case "||", "|" -> {
+                if (a == Boolean.FALSE || b == Boolean.TRUE && isPure(left)) {
+                    yield right;
+                }
+                if (b == Boolean.FALSE || a == Boolean.TRUE && isPure(right)) {
+                    yield left;
+                }
+                yield null;
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the value of an EXPR holding nothing but a number, null for any other node
+     */
+    private static Integer constant(SyntaxTreeNode node) {
+        if (node.getType() != SyntaxTreeNode.Type.EXPR || !node.getValue().isEmpty() || node.getNumberChildren() != 1
+                || node.getChild(0).getType() != SyntaxTreeNode.Type.NUMBER) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(node.getChild(0).getValue());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isConstant(Integer value, int constant) {
+        return value != null && value == constant;
+    }
+
+    /**
+     * @return the value of a COND holding nothing but a boolean literal, null for any other node
+     */
+    private static Boolean truth(SyntaxTreeNode node) {
+        if (node.getType() != SyntaxTreeNode.Type.COND || !node.getValue().isEmpty() || node.getNumberChildren() != 1
+                || node.getChild(0).getType() != SyntaxTreeNode.Type.BOOL) {
+            return null;
+        }
+        return switch (node.getChild(0).getValue()) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return whether the node can be left out without changing what the program does
+     */
+    private static boolean isPure(SyntaxTreeNode node) {
+        var cursor = new TreeCursor().reset(node, TreeCursor.Order.PREORDER);
+        while (cursor.next()) {
+            NodeView next = cursor.node();
+            if (next.getType() == SyntaxTreeNode.Type.FUNCCALL || next.getType() == SyntaxTreeNode.Type.EXPR
+                    && (next.getValue().equals("/") || next.getValue().equals("%"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static SyntaxTreeNode number(int value, NodeView at) {
+        return wrap(SyntaxTreeNode.Type.EXPR, new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, Integer.toString(value)), at);
+    }
+
+    private static SyntaxTreeNode bool(boolean value, NodeView at) {
+        return wrap(SyntaxTreeNode.Type.COND, new SyntaxTreeNode(SyntaxTreeNode.Type.BOOL, Boolean.toString(value)), at);
+    }
+
+    private static SyntaxTreeNode wrap(SyntaxTreeNode.Type type, SyntaxTreeNode literal, NodeView at) {
+        var node = new SyntaxTreeNode(type, "");
+        node.setPosition(at.getLine(), at.getColumn());
+        literal.setPosition(at.getLine(), at.getColumn());
+        node.addChild(literal);
+        return node;
+    }
+
+    /**
+     * @return the node itself if it is a {@link SyntaxTreeNode} whose children didn't change, otherwise a
+     * copy with the given children
+     */
+    private static SyntaxTreeNode copy(NodeView node, SyntaxTreeNode[] children) {
+        if (node instanceof SyntaxTreeNode original) {
+            boolean changed = false;
+            for (int i = 0; i < children.length; i++) {
+                changed |= children[i] != original.getChild(i);
+            }
+            if (!changed) {
+                return original;
+            }
+        }
+        var copy = new SyntaxTreeNode(node.getType(), node.getValue(), node.getSymbol());
+        copy.setPosition(node.getLine(), node.getColumn());
+        for (SyntaxTreeNode child : children) {
+            copy.addChild(child);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,122 @@
+package pgdp.minijava;
+
+import java.util.Arrays;
+
+/**
+ * Removes the code no run of the program can reach: what follows a JUMP or HALT up to the next label
+ * that is jumped to, like the body of {@code while (false)} once the {@link PeepholeOptimizer} has turned
+ * its condition into a JUMP. Labels no jump refers to any more are removed as well, and a JUMP to a HALT
+ * becomes the HALT.
+ * <p>
+ * Every removed block that held more than jumps and HALTs the emitter added is reported as a warning.
+ */
+public final class DeadCodeEliminator {
+    private DeadCodeEliminator() {
+
+    }
+
+    /**
+     * @param diagnostics where the warnings go to, printed to {@code System.err} if null
+     * @return whether any code was removed
+     */
+    public static boolean eliminate(CodeBuffer code, Diagnostics diagnostics) {
+        int[] positions = new int[code.labelCount()];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == Opcode.LABEL) {
+                positions[code.operand(i)] = i;
+            }
+        }
+        boolean changed = haltJumps(code, positions);
+        boolean[] reachable = reachable(code, positions);
+
+        int[] references = new int[code.labelCount()];
+        for (int i = 0; i < code.size(); i++) {
+            if (reachable[i] && code.opcode(i).isJump()) {
+                references[code.operand(i)]++;
+            }
+        }
+        int size = 0;
+        boolean warned = false;
+        for (int i = 0; i < code.size(); i++) {
+            Opcode opcode = code.opcode(i);
+            if (!reachable[i]) {
+                if (!warned && opcode != Opcode.LABEL && !opcode.isJump() && opcode != Opcode.HALT) {
+                    warn(diagnostics);
+                    warned = true;
+                }
+                changed = true;
+                continue;
+            }
+            warned = false;
+            if (opcode == Opcode.LABEL && references[code.operand(i)] == 0) {
+                changed = true;
+                continue;
+            }
+            code.set(size++, opcode, code.operand(i));
+        }
+        code.truncate(size);
+        return changed;
+    }
+
+    /**
+     * Replaces every JUMP to a label that is followed by a HALT with a HALT.
+     *
+     * @return whether any JUMP was replaced
+     */
+    private static boolean haltJumps(CodeBuffer code, int[] positions) {
+        boolean changed = false;
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) != Opcode.JUMP || positions[code.operand(i)] < 0) {
+                continue;
+            }
+            int target = positions[code.operand(i)];
+            while (target < code.size() && code.opcode(target) == Opcode.LABEL) {
+                target++;
+            }
+            if (target < code.size() && code.opcode(target) == Opcode.HALT) {
+                code.set(i, Opcode.HALT, 0);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Follows the control flow from the first instruction with an explicit stack.
+     */
+    private static boolean[] reachable(CodeBuffer code, int[] positions) {
+        boolean[] reachable = new boolean[code.size()];
+        int[] stack = new int[16];
+        int size = 0;
+        if (code.size() > 0) {
+            stack[size++] = 0;
+            reachable[0] = true;
+        }
+        while (size > 0) {
+            int i = stack[--size];
+            Opcode opcode = code.opcode(i);
+            int next = opcode == Opcode.JUMP || opcode == Opcode.HALT ? -1 : i + 1;
+            int target = opcode.isJump() ? positions[code.operand(i)] : -1;
+            for (int k = 0; k < 2; k++) {
+                int successor = k == 0 ? next : target;
+                if (successor >= 0 && successor < code.size() && !reachable[successor]) {
+                    reachable[successor] = true;
+                    if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, size * 2);
+                    }
+                    stack[size++] = successor;
+                }
+            }
+        }
+        return reachable;
+    }
+
+    private static void warn(Diagnostics diagnostics) {
+        if (diagnostics == null) {
+            System.err.println("Unreachable code detected");
+            return;
+        }
+        diagnostics.warning(Diagnostics.Phase.SEMANTIC, 0, 0, "Unreachable code");
+    }
+}
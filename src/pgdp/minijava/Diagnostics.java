@@ -0,0 +1,113 @@
+package pgdp.minijava;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the errors and warnings of a compilation, so a single pass can report all of them instead
+ * of stopping at the first one. Lines and columns are one based, 0 if the position is unknown.
+ */
+public class Diagnostics {
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private int errors;
+
+    public void error(Phase phase, int line, int column, String message) {
+        report(new Diagnostic(Severity.ERROR, phase, line, column, message));
+    }
+
+    public void warning(Phase phase, int line, int column, String message) {
+        report(new Diagnostic(Severity.WARNING, phase, line, column, message));
+    }
+
+    public void report(Diagnostic diagnostic) {
+        diagnostics.add(diagnostic);
+        if (diagnostic.severity() == Severity.ERROR) {
+            errors++;
+        }
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    public boolean hasErrors() {
+        return errors > 0;
+    }
+
+    public int errorCount() {
+        return errors;
+    }
+
+    /**
+     * @return one diagnostic per line in the usual {@code line:column: severity: message} format
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Diagnostic diagnostic : diagnostics) {
+            out.append(diagnostic).append("\n");
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return the diagnostics as a JSON array of objects with the fields severity, phase, line, column
+     * and message
+     */
+    public String toJson() {
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < diagnostics.size(); i++) {
+            Diagnostic diagnostic = diagnostics.get(i);
+            if (i > 0) {
+                out.append(",");
+            }
+            out.append("{\"severity\":\"").append(diagnostic.severity().name().toLowerCase())
+                    .append("\",\"phase\":\"").append(diagnostic.phase().name().toLowerCase())
+                    .append("\",\"line\":").append(diagnostic.line())
+                    .append(",\"column\":").append(diagnostic.column())
+                    .append(",\"message\":\"");
+            appendEscaped(out, diagnostic.message());
+            out.append("\"}");
+        }
+        return out.append("]").toString();
+    }
+
+    private static void appendEscaped(StringBuilder out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    public enum Severity {
+        ERROR,
+        WARNING
+    }
+
+    public enum Phase {
+        LEXICAL,
+        SYNTAX,
+        SEMANTIC
+    }
+
+    public record Diagnostic(Severity severity, Phase phase, int line, int column, String message) {
+        @Override
+        public String toString() {
+            return line + ":" + column + ": " + severity.name().toLowerCase() + ": " + message;
+        }
+    }
+}
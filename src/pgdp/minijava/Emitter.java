@@ -1,11 +1,13 @@
 package pgdp.minijava;
 
+import pgdp.minijava.ast.NodeView;
 import pgdp.minijava.ast.SyntaxTreeNode;
+import pgdp.minijava.ast.TreeCursor;
+import pgdp.minijava.ast.TreeVisitor;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 public class Emitter {
     private static int whileLoops = 0;
@@ -15,311 +17,915 @@ public class Emitter {
 
     }
     
-    public static String emit(SyntaxTreeNode node) {
-        Map<String, Integer> variableMap = generateVariableMap(node, new HashMap<>());
+    public static String emit(NodeView node) {
+        return emitCode(node).toString();
+    }
+
+    /**
+     * Emits the program and cleans the code up: adjacent allocations are merged and a label placed
+     * right in front of another one is replaced by it.
+     *
+     * @throws IllegalStateException if a variable is used undeclared or declared twice
+     */
+    public static CodeBuffer emitCode(NodeView node) {
+        var code = new CodeBuffer();
+        emit(node, code);
+        cleanUp(code);
+        return code;
+    }
+
+    /**
+     * Emits the program into the sink as it is generated, ending it with a HALT. A {@link CodePrinter}
+     * writes it straight to text, a {@link CodeBuffer} keeps it for further passes.
+     *
+     * @throws IllegalStateException if a variable is used undeclared or declared twice
+     */
+    public static void emit(NodeView node, InstructionSink out) {
+        emit(node, generateVariableMap(node, null), out);
+    }
+
+    /**
+     * Emits the program, reporting every variable that is used undeclared or declared twice instead of
+     * stopping at the first one.
+     *
+     * @return the code or null if the diagnostics hold any errors, including earlier ones
+     */
+    public static String emit(NodeView node, Diagnostics diagnostics) {
+        CodeBuffer code = emitCode(node, diagnostics);
+        return code == null ? null : code.toString();
+    }
+
+    /**
+     * Like {@link #emit(NodeView, Diagnostics)}, but keeps the code for further passes.
+     *
+     * @return the cleaned up code or null if the diagnostics hold any errors, including earlier ones
+     */
+    public static CodeBuffer emitCode(NodeView node, Diagnostics diagnostics) {
+        Variables variables = generateVariableMap(node, diagnostics);
+        if(diagnostics.hasErrors()) {
+            return null;
+        }
+        var code = new CodeBuffer();
+        var work = new Work(code);
+        try {
+            emit(node, variables, work);
+            cleanUp(code);
+            return code;
+        } catch (IllegalStateException | UnsupportedOperationException e) {
+            // reported where the node that couldn't be emitted starts
+            NodeView at = firstPositioned(work.node());
+            if(at == null) {
+                diagnostics.error(Diagnostics.Phase.SEMANTIC, 0, 0, e.getMessage());
+            } else {
+                diagnostics.error(Diagnostics.Phase.SEMANTIC, at.getLine(), at.getColumn(), e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return the first node of the subtree that knows its position in the source, null if there is none
+     */
+    private static NodeView firstPositioned(NodeView node) {
+        if(node == null) {
+            return null;
+        }
+        var cursor = new TreeCursor().reset(node, TreeCursor.Order.PREORDER);
+        while(cursor.next()) {
+            if(cursor.node().getLine() > 0) {
+                return cursor.node();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reports every variable that is used undeclared or declared twice without emitting anything, for
+     * passes that change the tree before it is emitted and could drop a use.
+     *
+     * @param diagnostics where errors are reported to, may be null
+     * @return whether no errors were found
+     * @throws IllegalStateException at the first error if there are no diagnostics
+     */
+    public static boolean checkVariables(NodeView node, Diagnostics diagnostics) {
+        int errors = diagnostics == null ? 0 : diagnostics.errorCount();
+        generateVariableMap(node, diagnostics);
+        return diagnostics == null || diagnostics.errorCount() == errors;
+    }
+
+    private static void emit(NodeView node, Variables variables, InstructionSink out) {
+        emit(node, variables, new Work(out));
+    }
+
+    private static void emit(NodeView node, Variables variables, Work work) {
         whileLoops = 0;
         ifStatements = 0;
-        var temp = emitCode(node, variableMap).trim();
-        if(!temp.endsWith("\nHALT")) {
-            temp += "\nHALT";
-        }
-        temp = cleanUpResult(temp).trim();
-        return temp;
-    }
-
-    private static String cleanUpResult(String in) {
-        ArrayList<String> lines = new ArrayList<>(in.lines().toList());
-        ArrayList<String> newLines = new ArrayList<>();
-        if(lines.size() != 0) {
-            newLines.add(lines.get(0));
-        }
-        for (int i = 1; i < lines.size(); i++) {
-            var current = lines.get(i);
-            var prev = lines.get(i - 1);
-            if(current.startsWith("ALLOC") && prev.startsWith("ALLOC")) {
-                newLines.remove(prev);
-                newLines.add("ALLOC " + (Integer.parseInt(current.substring(6)) + Integer.parseInt(prev.substring(6))));
-            }else if(current.endsWith(":") && prev.endsWith(":")){
-                String prevLabel = prev.substring(0, prev.length() - 1);
-                String currentLabel = current.substring(0, current.length() - 1);
-                for (int j = 0; j < lines.size(); j++) {
-                    lines.set(j, lines.get(j).replace(prevLabel, currentLabel));
-                }
-                newLines.remove(prev);
-                for (int j = 0; j < newLines.size(); j++) {
-                    newLines.set(j, newLines.get(j).replace(prevLabel, currentLabel));
-                }
-                newLines.add(current);
-            } else {
-                newLines.add(current);
+        emitTree(node, variables, work);
+    }
+
+    /**
+     * Merges runs of ALLOCs into one and hands the labels to the {@link LabelResolver}.
+     */
+    private static void cleanUp(CodeBuffer code) {
+        int size = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Opcode opcode = code.opcode(i);
+            int operand = code.operand(i);
+            if(size > 0 && opcode == Opcode.ALLOC && code.opcode(size - 1) == Opcode.ALLOC) {
+                code.set(size - 1, Opcode.ALLOC, code.operand(size - 1) + operand);
+                continue;
             }
+            code.set(size++, opcode, operand);
         }
-        return newLines.stream().reduce("", (s, s2) -> s + "\n" + s2);
+        code.truncate(size);
+        LabelResolver.resolve(code);
     }
 
-    private static Map<String, Integer> generateVariableMap(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        Map<String, Integer> out = new HashMap<>(variableMap);
-        List<Map<String, Integer>> variableMaps = new ArrayList<>();
-        int freeID = 0;
-        for (int i = 0; i < node.getNumberChildren(); i++) {
-            SyntaxTreeNode child = node.getChild(i);
-            if(child.getType() == SyntaxTreeNode.Type.DECL) {
-                for (int j = 0; j < child.getNumberChildren(); j++) {
-                    SyntaxTreeNode n = child.getChild(j);
-                    if(n.getType() == SyntaxTreeNode.Type.NAME){
-                        if(variableMap.containsKey(n.getValue())) {
-                            throw new IllegalStateException(n.getValue() + " has already been defined in this context");
-                        } else {
-                            out.put(n.getValue(), freeID++);
-                        }
+    /**
+     * Assigns every declared variable its slot. Variables are tracked by symbol ID in flat arrays: a
+     * scope only records the variables it adds, and the entries of a child scope are merged into its
+     * parent once the parent is done, shifted behind the variables the parent already knows.
+     * <p>
+     * The tree is walked by a {@link TreeCursor}, and the {@link Scope} frames are reused by depth, so
+     * neither deep nesting nor large trees are a problem.
+     *
+     * @param diagnostics where errors are reported to instead of being thrown, may be null
+     */
+    private static Variables generateVariableMap(NodeView node, Diagnostics diagnostics) {
+        var variables = new Variables(node);
+        new Scopes(variables, diagnostics).walk(node);
+        return variables;
+    }
+
+    /**
+     * Emits the code for a tree without recursing. A node is expanded into its parts when it comes up
+     * on an explicit work stack: instructions and labels go to the sink once they are popped, nested
+     * nodes are expanded in turn. Nodes are expanded in pre-order, so labels are numbered as before.
+     * <p>
+     * The code ends with a HALT, unless it already does and has more than one line.
+     */
+    private static void emitTree(NodeView node, Variables variables, Work work) {
+        InstructionSink out = work.out;
+        work.code(node).flush();
+        int lines = 0;
+        boolean halted = false;
+        while(!work.isEmpty()) {
+            work.pop();
+            switch (work.mode()) {
+                case INSTRUCTION -> {
+                    if(work.opcode().getOperand() == Opcode.Operand.NONE) {
+                        out.instruction(work.opcode());
+                    } else {
+                        out.instruction(work.opcode(), work.operand());
                     }
+                    lines++;
+                    halted = work.opcode() == Opcode.HALT;
                 }
-            } else if(child.getType() == SyntaxTreeNode.Type.NAME && (i != 1 && node.getType() != SyntaxTreeNode.Type.FUNCCALL)) {
-                if(!(variableMap.containsKey(child.getValue()) || out.containsKey(child.getValue()))) {
-                    throw new IllegalStateException(child.getValue() + " hasn't been defined in this context");
-                }
-            } else {
-                variableMaps.add(generateVariableMap(child, out));
+                case CODE -> emitCode(work.node(), variables, work);
+                case EXPRESSION -> emitExpression(work.node(), variables, work);
+                case CONDITION -> emitCondition(work.node(), variables, work);
             }
+            work.flush();
         }
-        return mergeVariableMaps(out, variableMaps);
-    }
-
-    private static Map<String, Integer> mergeVariableMaps(Map<String, Integer> variableMap, List<Map<String, Integer>> list) {
-        for (Map<String, Integer> map : list) {
-            final int size = variableMap.size();
-            map.forEach(((s, integer) -> {if(!variableMap.containsKey(s)) variableMap.put(s, integer + size);} ));
+        if(lines < 2 || !halted) {
+            out.instruction(Opcode.HALT);
         }
-        return variableMap;
     }
 
-    private static String emitCode(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        return switch (node.getType()) {
-            case PROGRAM -> emitProgram(node, variableMap);
-            case DECL -> emitDeclaration(node, variableMap);
+    private static void emitCode(NodeView node, Variables variables, Work work) {
+        switch (node.getType()) {
+            case PROGRAM -> emitProgram(node, work);
+            case DECL -> emitDeclaration(node, variables, work);
             //case BOOL -> null;
             //case NAME -> null;
             //case NUMBER -> null;
             //case TYPE -> null;
-            //case EXPR -> emitExpression(node, variableMap);
+            //case EXPR -> emitExpression(node, variables);
             //case COND -> null;
             //case COMP -> null;
-            case STMT -> emitStatement(node, variableMap);
-            case LABEL -> emitLabel(node, variableMap);
+            case STMT -> emitStatement(node, variables, work);
+            case LABEL -> emitLabel(node, work);
             //case SYMBOL -> null;
-            case FUNCCALL -> emitFunctionCall(node, variableMap);
-            //case ASS -> emitAssignment(node, variableMap);
+            case FUNCCALL -> emitFunctionCall(node, work);
+            case ASS -> emitAssignment(node, variables, work);
             default -> throw new IllegalStateException("Not a statement!");
-        };
+        }
     }
 
-    private static String emitProgram(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        StringBuilder out = new StringBuilder();
+    private static void emitProgram(NodeView node, Work work) {
         for (int i = 0; i < node.getNumberChildren(); i++) {
-            SyntaxTreeNode child = node.getChild(i);
-            out.append(emitCode(child, variableMap));
+            work.code(node.getChild(i));
         }
-        return out.toString();
     }
 
-    private static String emitLabel(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        return node.getValue() + ":\n";
+    private static void emitLabel(NodeView node, Work work) {
+        work.label(work.newLabel(node.getValue(), -1));
     }
 
-    private static String emitDeclaration(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        boolean[] vars = new boolean[variableMap.size()];
-        int variables = 0;
-        boolean readValue = false;
-        String value = "";
+    /**
+     * Allocates the declared variables. An initializer only belongs to the name right in front of it,
+     * as in {@code int a, b = 1;}.
+     */
+    private static void emitDeclaration(NodeView node, Variables variables, Work work) {
+        int declared = 0;
         for (int j = 0; j < node.getNumberChildren(); j++) {
-            SyntaxTreeNode child = node.getChild(j);
-            if(child.getType() == SyntaxTreeNode.Type.NAME){
-                variables++;
-                vars[variableMap.get(child.getValue())] = true;
-            }
-            if(child.getType() == SyntaxTreeNode.Type.SYMBOL && child.getValue().equals("=")) {
-                readValue = true;
-            }
-            if(readValue){
-                if(child.getType() == SyntaxTreeNode.Type.EXPR){
-                    value = emitExpression(child, variableMap);
-                } else if(child.getType() == SyntaxTreeNode.Type.COND) {
-                    value = emitCondition(child, variableMap);
-                } else {
-                    throw new IllegalStateException("Expected value!");
-                }
+            if(node.getChild(j).getType() == SyntaxTreeNode.Type.NAME) {
+                declared++;
             }
         }
-        StringBuilder out = new StringBuilder();
-        out.append("ALLOC ").append(variables).append("\n");
-        if(readValue) {
-            for (int i = 0; i < vars.length; i++) {
-                if(vars[i]) {
-                    out.append(value).append("STORE ").append(i).append("\n");
-                }
+        work.instruction(Opcode.ALLOC, declared);
+        int slot = -1;
+        for (int j = 0; j < node.getNumberChildren(); j++) {
+            NodeView child = node.getChild(j);
+            if(child.getType() == SyntaxTreeNode.Type.NAME){
+                slot = variables.slotOf(child);
+            } else if(child.getType() == SyntaxTreeNode.Type.EXPR){
+                work.expression(child).instruction(Opcode.STORE, slot);
+            } else if(child.getType() == SyntaxTreeNode.Type.COND) {
+                work.condition(child).instruction(Opcode.STORE, slot);
             }
         }
-        return out.toString();
     }
 
-    private static String emitExpression(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        SyntaxTreeNode next = node.getChild(0);
+    /**
+     * Emits an EXPR. In a lean tree an operator is the value of the node and its operands are its only
+     * children, see {@link Parser#parseTokens(TokenSource, Diagnostics, boolean)}.
+     */
+    private static void emitExpression(NodeView node, Variables variables, Work work) {
+        String operator = node.getValue();
+        if(!operator.isEmpty()) {
+            if(node.getNumberChildren() == 1) {
+                work.expression(node.getChild(0)).instruction(Opcode.NEG);
+            } else {
+                work.expression(node.getChild(0)).expression(node.getChild(1)).instruction(emitOperator(operator));
+            }
+            return;
+        }
+        NodeView next = node.getChild(0);
         if(next.getType() == SyntaxTreeNode.Type.NUMBER) {
-            return "CONST " + next.getValue() + "\n";
+            work.instruction(Opcode.CONST, constant(next));
+            return;
         }
         if(next.getType() == SyntaxTreeNode.Type.NAME) {
-            return "LOAD " + variableMap.get(next.getValue()) + "\n";
+            work.instruction(Opcode.LOAD, variables.slotOf(next));
+            return;
         }
         if(next.getType() == SyntaxTreeNode.Type.SYMBOL) {
             if(next.getValue().equals("(")) {
-                return emitExpression(node.getChild(1), variableMap);
+                work.expression(node.getChild(1));
+                return;
             }
             if(next.getValue().equals("-")) {
-                return emitExpression(node.getChild(1), variableMap) + "NEG\n";
+                work.expression(node.getChild(1)).instruction(Opcode.NEG);
+                return;
             }
             throw new IllegalStateException("Unexpected symbol " + next.getValue());
         }
         if(next.getType() == SyntaxTreeNode.Type.EXPR) {
-            return emitExpression(next, variableMap) + emitExpression(node.getChild(2), variableMap) + emitOperator(node.getChild(1), variableMap);
+            work.expression(next).expression(node.getChild(2)).instruction(emitOperator(node.getChild(1).getValue()));
+            return;
         }
         if(next.getType() == SyntaxTreeNode.Type.FUNCCALL) {
-            return emitFunctionCall(next, variableMap);
+            emitFunctionCall(next, work);
+            return;
         }
         if(next.getType() == SyntaxTreeNode.Type.COND) {
-            return emitCondition(next, variableMap);
+            work.condition(next);
+            return;
         }
         throw new IllegalStateException("Couldn't resolve expression");
     }
 
-    private static String emitStatement(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        SyntaxTreeNode next = node.getChild(0);
+    /**
+     * Emits a STMT. A lean tree holds the keyword or the opening symbol of the statement as its value,
+     * only a labeled statement has none.
+     */
+    private static void emitStatement(NodeView node, Variables variables, Work work) {
+        if(!node.getValue().isEmpty()) {
+            emitLeanStatement(node, work);
+            return;
+        }
+        NodeView next = node.getChild(0);
         if(next.getType() == SyntaxTreeNode.Type.SYMBOL) {
             if(next.getValue().equals(";")) {
                 System.err.println("Unnecessary Semicolon detected");
-                return "";
+                return;
             }
             if(next.getValue().equals("{")) {
-                StringBuilder out = new StringBuilder();
                 for (int i = 1; i < node.getNumberChildren() - 1; i++) {
-                    out.append(emitCode(node.getChild(i), variableMap));
+                    work.code(node.getChild(i));
                 }
-                return out.toString();
+                return;
             }
             if(next.getValue().equals("return")) {
-                return "HALT\n";
+                work.instruction(Opcode.HALT);
+                return;
             }
             if(next.getValue().equals("while")) {
-                var start = "while" + whileLoops + ":\n" + emitCondition(node.getChild(2), variableMap) + "FJUMP whileEnd" + whileLoops +"\n";
-                var end = "JUMP " + "while" + whileLoops + "\nwhileEnd" + whileLoops +":\n";
-                whileLoops++;
-                return start + emitCode(node.getChild(4), variableMap) + end;
+                emitWhile(node.getChild(2), node.getChild(4), work);
+                return;
             }
             if(next.getValue().equals("if")) {
-                var currentIfs = ifStatements++;
-                var start = emitCondition(node.getChild(2), variableMap) + "FJUMP else" + currentIfs + "\n";
-                var temp = start + emitCode(node.getChild(4), variableMap);
-                var end = "else" + currentIfs + ":\n";
-                if(node.getNumberChildren() > 5) {
-                    var middle = "JUMP ifend" + currentIfs + "\n" + end;
-                    end = "ifend" + currentIfs +":\n";
-                    temp += middle + emitCode(node.getChild(6), variableMap);
-                }
-                temp += end;
-                return temp;
+                emitIf(node.getChild(2), node.getChild(4), node.getNumberChildren() > 5 ? node.getChild(6) : null, work);
+                return;
             }
             throw new IllegalStateException("Unexpected symbol " + next.getValue());
         }
         if(next.getType() == SyntaxTreeNode.Type.LABEL) {
-            return emitLabel(next, variableMap) + emitCode(node.getChild(2), variableMap);
+            emitLabel(next, work);
+            work.code(node.getChild(node.getNumberChildren() - 1));
+            return;
         }
         if(next.getType() == SyntaxTreeNode.Type.ASS) {
-            return emitAssignment(next, variableMap);
+            emitAssignment(next, variables, work);
+            return;
         }
         if(next.getType() == SyntaxTreeNode.Type.FUNCCALL) {
-            return emitFunctionCall(next, variableMap);
+            emitFunctionCall(next, work);
+            return;
         }
         throw new IllegalStateException("Unexpected symbol " + next.getValue());
     }
 
-    private static String emitAssignment(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        SyntaxTreeNode next = node.getChild(0);
-        int pos = variableMap.get(next.getValue());
-        String store = "STORE " + pos;
-        return emitExpression(node.getChild(2), variableMap) + store + "\n";
+    private static void emitLeanStatement(NodeView node, Work work) {
+        switch (node.getValue()) {
+            case ";" -> System.err.println("Unnecessary Semicolon detected");
+            case "{" -> {
+                for (int i = 0; i < node.getNumberChildren(); i++) {
+                    work.code(node.getChild(i));
+                }
+            }
+            case "return" -> work.instruction(Opcode.HALT);
+            case "while" -> emitWhile(node.getChild(0), node.getChild(1), work);
+            case "if" -> emitIf(node.getChild(0), node.getChild(1), node.getNumberChildren() > 2 ? node.getChild(2) : null, work);
+            default -> throw new IllegalStateException("Unexpected symbol " + node.getValue());
+        }
+    }
+
+    private static void emitWhile(NodeView condition, NodeView body, Work work) {
+        var currentWhile = whileLoops++;
+        int start = work.newLabel("while", currentWhile);
+        int end = work.newLabel("whileEnd", currentWhile);
+        work.label(start)
+                .condition(condition)
+                .instruction(Opcode.FJUMP, end)
+                .code(body)
+                .instruction(Opcode.JUMP, start)
+                .label(end);
+    }
+
+    /**
+     * @param otherwise the else branch, may be null
+     */
+    private static void emitIf(NodeView condition, NodeView then, NodeView otherwise, Work work) {
+        var currentIfs = ifStatements++;
+        int otherwiseLabel = work.newLabel("else", currentIfs);
+        work.condition(condition)
+                .instruction(Opcode.FJUMP, otherwiseLabel)
+                .code(then);
+        if(otherwise != null) {
+            int end = work.newLabel("ifend", currentIfs);
+            work.instruction(Opcode.JUMP, end)
+                    .label(otherwiseLabel)
+                    .code(otherwise)
+                    .label(end);
+        } else {
+            work.label(otherwiseLabel);
+        }
+    }
+
+    private static void emitAssignment(NodeView node, Variables variables, Work work) {
+        NodeView next = node.getChild(0);
+        int pos = variables.slotOf(next);
+        work.expression(node.getChild(node.getNumberChildren() - 1)).instruction(Opcode.STORE, pos);
     }
 
-    private static String emitFunctionCall(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        SyntaxTreeNode next = node.getChild(0);
+    private static void emitFunctionCall(NodeView node, Work work) {
+        NodeView next = node.getChild(0);
         if(next.getValue().equals("write")) {
-            return emitExpression(node.getChild(2), variableMap) + "WRITE\n";
+            // the argument follows the ( in a debug tree
+            int argument = node.getNumberChildren() > 1 && node.getChild(1).getType() == SyntaxTreeNode.Type.SYMBOL ? 2 : 1;
+            if(argument >= node.getNumberChildren() || node.getChild(argument).getType() == SyntaxTreeNode.Type.SYMBOL) {
+                throw new IllegalStateException("write expects a value");
+            }
+            work.expression(node.getChild(argument)).instruction(Opcode.WRITE);
+            return;
         }
         if(next.getValue().equals("readInt")) {
-            return "READ\n";
+            work.instruction(Opcode.READ);
+            return;
         }
         throw new UnsupportedOperationException("This compiler does not support CALL and RET");
     }
 
-    private static String emitOperator(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        return switch (node.getValue()) {
-            case "+" -> "ADD\n";
-            case "-" -> "SUB\n";
-            case "*" -> "MUL\n";
-            case "/" -> "DIV\n";
-            case "%" -> "MOD\n";
+    private static int constant(NodeView number) {
+        try {
+            return Integer.parseInt(number.getValue());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid number " + number.getValue());
+        }
+    }
+
+    private static Opcode emitOperator(String operator) {
+        return switch (operator) {
+            case "+" -> Opcode.ADD;
+            case "-" -> Opcode.SUB;
+            case "*" -> Opcode.MUL;
+            case "/" -> Opcode.DIV;
+            case "%" -> Opcode.MOD;
             default -> throw new IllegalStateException();
         };
     }
 
-    private static String emitCondition(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        SyntaxTreeNode next = node.getChild(0);
+    private static void emitCondition(NodeView node, Variables variables, Work work) {
+        String operator = node.getValue();
+        if(!operator.isEmpty()) {
+            NodeView left = node.getChild(0);
+            if(node.getNumberChildren() == 1) {
+                work.condition(left).instruction(Opcode.NOT);
+            } else if(left.getType() == SyntaxTreeNode.Type.COND) {
+                work.condition(left).condition(node.getChild(1)).instruction(emitBoolOperator(operator));
+            } else {
+                emitComparator(operator, work.expression(left).expression(node.getChild(1)));
+            }
+            return;
+        }
+        NodeView next = node.getChild(0);
         if(next.getType() == SyntaxTreeNode.Type.BOOL) {
             if(next.getValue().equals("true")) {
-                return "TRUE\n";
+                work.instruction(Opcode.TRUE);
+                return;
             }
             if(next.getValue().equals("false")) {
-                return "FALSE\n";
+                work.instruction(Opcode.FALSE);
+                return;
             }
             throw new IllegalStateException("Unexpected non bool value detected as bool!");
         }
 
         if(next.getType() == SyntaxTreeNode.Type.SYMBOL) {
             if(next.getValue().equals("(")) {
-                return emitCondition(node.getChild(1), variableMap);
+                work.condition(node.getChild(1));
+                return;
             }
             if(next.getValue().equals("!")) {
-                return emitExpression(node.getChild(1), variableMap) + "NOT\n";
+                work.condition(node.getChild(1)).instruction(Opcode.NOT);
+                return;
             }
             throw new IllegalStateException("Unexpected symbol " + next.getValue());
         }
         if(next.getType() == SyntaxTreeNode.Type.COND) {
-            return emitCondition(next, variableMap) + emitCondition(node.getChild(2), variableMap) + emitBoolOperator(node.getChild(1), variableMap);
+            work.condition(next).condition(node.getChild(2)).instruction(emitBoolOperator(node.getChild(1).getValue()));
+            return;
         }
         if(next.getType() == SyntaxTreeNode.Type.EXPR) {
             if(node.getNumberChildren() == 1) {
-                return emitExpression(next, variableMap);
+                work.expression(next);
+                return;
             }
-            return emitExpression(next, variableMap) + emitExpression(node.getChild(2), variableMap) + emitComparator(node.getChild(1), variableMap);
+            emitComparator(node.getChild(1).getValue(), work.expression(next).expression(node.getChild(2)));
+            return;
         }
         throw new IllegalStateException();
     }
 
-    private static String emitComparator(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        return switch (node.getValue()) {
-            case "==" -> "EQ\n";
-            case "!=" -> "NEQ\n";
-            case "<" -> "LESS\n";
-            case "<=" -> "LEQ\n";
-            case ">" -> "LEQ\nNOT\n";
-            case ">=" -> "LESS\nNOT\n";
+    private static void emitComparator(String comparator, Work work) {
+        switch (comparator) {
+            case "==" -> work.instruction(Opcode.EQ);
+            case "!=" -> work.instruction(Opcode.NEQ);
+            case "<" -> work.instruction(Opcode.LESS);
+            case "<=" -> work.instruction(Opcode.LEQ);
+            case ">" -> work.instruction(Opcode.LEQ).instruction(Opcode.NOT);
+            case ">=" -> work.instruction(Opcode.LESS).instruction(Opcode.NOT);
             default -> throw new IllegalStateException();
-        };
+        }
     }
 
-    private static String emitBoolOperator(SyntaxTreeNode node, Map<String, Integer> variableMap) {
-        return switch (node.getValue()) {
-            case "&&", "&" -> "AND\n";
-            case "||", "|" -> "OR\n";
+    private static Opcode emitBoolOperator(String operator) {
+        return switch (operator) {
+            case "&&", "&" -> Opcode.AND;
+            case "||", "|" -> Opcode.OR;
             default -> throw new IllegalStateException();
         };
     }
+
+    /**
+     * The slots of the variables of a program, indexed by symbol ID. Names that weren't produced by the
+     * parser carry no ID; they are interned into a table of their own whose IDs start after the largest
+     * parsed one.
+     */
+    private static final class Variables {
+        private final SymbolTable unparsed = new SymbolTable();
+        private final int parsedCount;
+        private final int[] slots;
+        private int slotCount;
+
+        private Variables(NodeView root) {
+            parsedCount = collectSymbols(root);
+            slots = new int[parsedCount + unparsed.size()];
+            Arrays.fill(slots, -1);
+        }
+
+        private int collectSymbols(NodeView root) {
+            int count = 0;
+            var cursor = new TreeCursor().reset(root, TreeCursor.Order.PREORDER);
+            while(cursor.next()) {
+                NodeView node = cursor.node();
+                if(node.getType() == SyntaxTreeNode.Type.NAME) {
+                    if(node.getSymbol() >= 0) {
+                        count = Math.max(count, node.getSymbol() + 1);
+                    } else {
+                        unparsed.intern(node.getValue());
+                    }
+                }
+            }
+            return count;
+        }
+
+        int symbolCount() {
+            return slots.length;
+        }
+
+        int symbolOf(NodeView name) {
+            return name.getSymbol() >= 0 ? name.getSymbol() : parsedCount + unparsed.lookup(name.getValue());
+        }
+
+        void assign(int symbol, int slot) {
+            slots[symbol] = slot;
+            slotCount = Math.max(slotCount, slot + 1);
+        }
+
+        /**
+         * @return one more than the largest slot in use
+         */
+        int slotCount() {
+            return slotCount;
+        }
+
+        int slotOf(NodeView name) {
+            int slot = slots[symbolOf(name)];
+            if(slot < 0) {
+                throw new IllegalStateException(name.getValue() + " hasn't been defined in this context");
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * The variables a scope adds as pairs of symbol ID and slot, in the order they were added.
+     */
+    private static final class Entries {
+        private int[] pairs = new int[8];
+        private int size;
+
+        void add(int symbol, int slot) {
+            if(size * 2 == pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            }
+            pairs[size * 2] = symbol;
+            pairs[size * 2 + 1] = slot;
+            size++;
+        }
+
+        void setSlot(int index, int slot) {
+            pairs[index * 2 + 1] = slot;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int symbol(int index) {
+            return pairs[index * 2];
+        }
+
+        int slot(int index) {
+            return pairs[index * 2 + 1];
+        }
+    }
+
+    /**
+     * Walks the scopes of {@link #generateVariableMap(NodeView, Diagnostics)}. Every node with children
+     * other than a declaration opens a scope, which is closed once its children are done.
+     */
+    private static final class Scopes implements TreeVisitor {
+        private final Variables variables;
+        private final Diagnostics diagnostics;
+        /**
+         * For each symbol the depth of the scope that declared it plus one, 0 if it isn't visible in the
+         * current scope.
+         */
+        private final int[] visibleFrom;
+        private final int[] entryIndex;
+        private final List<Scope> scopes = new ArrayList<>();
+        private final TreeCursor cursor = new TreeCursor();
+        /**
+         * The number of open scopes.
+         */
+        private int depth;
+
+        private Scopes(Variables variables, Diagnostics diagnostics) {
+            this.variables = variables;
+            this.diagnostics = diagnostics;
+            this.visibleFrom = new int[variables.symbolCount()];
+            this.entryIndex = new int[variables.symbolCount()];
+        }
+
+        void walk(NodeView root) {
+            cursor.walk(root, this);
+        }
+
+        @Override
+        public boolean visit(NodeView node) {
+            if(cursor.depth() == 0) {
+                return open();
+            }
+            return switch (node.getType()) {
+                case DECL -> declare(node);
+                case NAME -> check(node);
+                default -> !node.isLeaf() && open();
+            };
+        }
+
+        private boolean declare(NodeView node) {
+            Scope scope = scopes.get(depth - 1);
+            for (int j = 0; j < node.getNumberChildren(); j++) {
+                NodeView n = node.getChild(j);
+                if(n.getType() == SyntaxTreeNode.Type.NAME){
+                    int symbol = variables.symbolOf(n);
+                    if(visibleFrom[symbol] != 0 && visibleFrom[symbol] < depth) {
+                        error(n, n.getValue() + " has already been defined in this context");
+                    } else if(visibleFrom[symbol] == depth) {
+                        scope.out.setSlot(entryIndex[symbol], scope.freeID++);
+                    } else {
+                        visibleFrom[symbol] = depth;
+                        entryIndex[symbol] = scope.out.size();
+                        scope.out.add(symbol, scope.freeID++);
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean check(NodeView name) {
+            if(cursor.index() != 1 && cursor.parent().getType() != SyntaxTreeNode.Type.FUNCCALL) {
+                if(visibleFrom[variables.symbolOf(name)] == 0) {
+                    error(name, name.getValue() + " hasn't been defined in this context");
+                }
+            }
+            return false;
+        }
+
+        private boolean open() {
+            if(scopes.size() == depth) {
+                scopes.add(new Scope());
+            }
+            int visible = depth == 0 ? 0 : scopes.get(depth - 1).visible + scopes.get(depth - 1).out.size();
+            scopes.get(depth).open(visible);
+            depth++;
+            return true;
+        }
+
+        /**
+         * Merges the variables of the child scopes into the scope that is done and hands them on to its
+         * parent, or assigns them their slots if it is the root.
+         */
+        @Override
+        public void leave(NodeView node) {
+            if(!isScope(node)) {
+                return;
+            }
+            Scope scope = scopes.get(--depth);
+            Entries entries = scope.merge(visibleFrom, entryIndex, depth + 1);
+            if(depth == 0) {
+                for (int k = 0; k < entries.size(); k++) {
+                    variables.assign(entries.symbol(k), entries.slot(k));
+                }
+                return;
+            }
+            for (int k = 0; k < entries.size(); k++) {
+                visibleFrom[entries.symbol(k)] = 0;
+            }
+            scopes.get(depth - 1).addChild(entries);
+        }
+
+        private boolean isScope(NodeView node) {
+            if(cursor.depth() == 0) {
+                return true;
+            }
+            return !node.isLeaf() && node.getType() != SyntaxTreeNode.Type.DECL && node.getType() != SyntaxTreeNode.Type.NAME;
+        }
+
+        private void error(NodeView name, String message) {
+            if(diagnostics == null) {
+                throw new IllegalStateException(message);
+            }
+            diagnostics.error(Diagnostics.Phase.SEMANTIC, name.getLine(), name.getColumn(), message);
+        }
+    }
+
+    /**
+     * A scope of {@link #generateVariableMap(NodeView, Diagnostics)}. The frame of a depth is reused for
+     * every scope at that depth.
+     */
+    private static final class Scope {
+        private final Entries out = new Entries();
+        /**
+         * The entries of the child scopes that are done, one after another.
+         */
+        private final Entries children = new Entries();
+        /**
+         * Where the entries of each child scope end in {@link #children}.
+         */
+        private int[] childEnds = new int[8];
+        private int childCount;
+        private int visible;
+        private int freeID;
+
+        /**
+         * @param visible the number of variables visible from the enclosing scopes
+         */
+        void open(int visible) {
+            this.visible = visible;
+            out.clear();
+            children.clear();
+            childCount = 0;
+            freeID = 0;
+        }
+
+        void addChild(Entries entries) {
+            for (int k = 0; k < entries.size(); k++) {
+                children.add(entries.symbol(k), entries.slot(k));
+            }
+            if(childCount == childEnds.length) {
+                childEnds = Arrays.copyOf(childEnds, childCount * 2);
+            }
+            childEnds[childCount++] = children.size();
+        }
+
+        /**
+         * Merges the variables of the child scopes once all children are walked.
+         *
+         * @param depth the depth of the scope, 1 for the root
+         * @return the variables this scope adds, with slots relative to the enclosing scope
+         */
+        Entries merge(int[] visibleFrom, int[] entryIndex, int depth) {
+            int k = 0;
+            for (int c = 0; c < childCount; c++) {
+                final int size = visible + out.size();
+                for (; k < childEnds[c]; k++) {
+                    int symbol = children.symbol(k);
+                    if(visibleFrom[symbol] == 0) {
+                        visibleFrom[symbol] = depth;
+                        entryIndex[symbol] = out.size();
+                        out.add(symbol, children.slot(k) + size);
+                    }
+                }
+            }
+            return out;
+        }
+    }
+
+    private enum Mode {
+        INSTRUCTION,
+        CODE,
+        EXPRESSION,
+        CONDITION
+    }
+
+    /**
+     * The work stack of the emitter. The parts of a node are pushed in the order they are emitted in and
+     * reversed once the node is expanded, so they are popped in order. A part is kept in parallel
+     * arrays instead of an object of its own: a node or an instruction with its operand, labels being
+     * placed by {@link Opcode#LABEL}. Labels are created in the sink when a node is expanded.
+     */
+    private static final class Work {
+        private final InstructionSink out;
+        private Mode[] modes = new Mode[64];
+        private NodeView[] nodes = new NodeView[64];
+        private Opcode[] opcodes = new Opcode[64];
+        private int[] operands = new int[64];
+        private int size;
+        /**
+         * Where the parts of the node being expanded start.
+         */
+        private int parts;
+        private Mode mode;
+        private NodeView node;
+        private Opcode opcode;
+        private int operand;
+
+        Work(InstructionSink out) {
+            this.out = out;
+        }
+
+        /**
+         * @see InstructionSink#newLabel(String, int)
+         */
+        int newLabel(String name, int number) {
+            return out.newLabel(name, number);
+        }
+
+        Work code(NodeView node) {
+            return add(Mode.CODE, node, null, 0);
+        }
+
+        Work expression(NodeView node) {
+            return add(Mode.EXPRESSION, node, null, 0);
+        }
+
+        Work condition(NodeView node) {
+            return add(Mode.CONDITION, node, null, 0);
+        }
+
+        Work instruction(Opcode opcode) {
+            return add(Mode.INSTRUCTION, null, opcode, 0);
+        }
+
+        Work instruction(Opcode opcode, int operand) {
+            return add(Mode.INSTRUCTION, null, opcode, operand);
+        }
+
+        Work label(int label) {
+            return add(Mode.INSTRUCTION, null, Opcode.LABEL, label);
+        }
+
+        private Work add(Mode mode, NodeView node, Opcode opcode, int operand) {
+            if(size == modes.length) {
+                modes = Arrays.copyOf(modes, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+                opcodes = Arrays.copyOf(opcodes, size * 2);
+                operands = Arrays.copyOf(operands, size * 2);
+            }
+            modes[size] = mode;
+            nodes[size] = node;
+            opcodes[size] = opcode;
+            operands[size] = operand;
+            size++;
+            return this;
+        }
+
+        void flush() {
+            for (int i = parts, j = size - 1; i < j; i++, j--) {
+                swap(i, j);
+            }
+            parts = size;
+        }
+
+        private void swap(int i, int j) {
+            Mode m = modes[i];
+            modes[i] = modes[j];
+            modes[j] = m;
+            NodeView n = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = n;
+            Opcode o = opcodes[i];
+            opcodes[i] = opcodes[j];
+            opcodes[j] = o;
+            int k = operands[i];
+            operands[i] = operands[j];
+            operands[j] = k;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Takes the top part off the stack, it is then described by {@link #mode()}, {@link #node()},
+         * {@link #opcode()} and {@link #operand()}.
+         */
+        void pop() {
+            size--;
+            mode = modes[size];
+            node = nodes[size];
+            opcode = opcodes[size];
+            operand = operands[size];
+            nodes[size] = null;
+            parts = size;
+        }
+
+        Mode mode() {
+            return mode;
+        }
+
+        NodeView node() {
+            return node;
+        }
+
+        Opcode opcode() {
+            return opcode;
+        }
+
+        /**
+         * @return the operand of an instruction, see {@link Opcode#getOperand()}
+         */
+        int operand() {
+            return operand;
+        }
+    }
 }
@@ -0,0 +1,122 @@
+package pgdp.minijava;
+
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+/**
+ * Updates a {@link TokenBuffer} after an edit of its source. Only the tokens around the edit are lexed
+ * again: lexing starts at the end of the last token in front of the edit and stops as soon as it
+ * produces a token that the old buffer already has at the same place behind the edit. From there on
+ * both sources are equal, so the rest of the old tokens is reused with shifted offsets and lines.
+ * <p>
+ * The buffer is updated in place. Lexing only covers the edit and its surroundings; the remaining work
+ * is moving the tail of the token arrays, which is a plain array copy.
+ */
+public class IncrementalLexer {
+    private IncrementalLexer() {
+
+    }
+
+    /**
+     * @param offset the position in the old source the edit starts at
+     * @param removedLength the number of characters the edit removes
+     * @param inserted the text inserted at the offset
+     * @param keepComments whether the previous buffer was lexed with comments
+     * @return the previous buffer, updated to hold the tokens of the edited source
+     */
+    public static TokenBuffer relex(TokenBuffer previous, int offset, int removedLength, CharSequence inserted,
+                                    boolean keepComments) throws IllegalCharacterException {
+        CharSequence old = previous.getSource();
+        checkEdit(old, offset, removedLength);
+        var source = new StringBuilder(old.length() - removedLength + inserted.length())
+                .append(old, 0, offset)
+                .append(inserted)
+                .append(old, offset + removedLength, old.length())
+                .toString();
+        return relex(previous, source, offset, removedLength, inserted.length(), keepComments);
+    }
+
+    /**
+     * Like {@link #relex(TokenBuffer, int, int, CharSequence, boolean)} for callers that already hold the
+     * edited source.
+     *
+     * @param source the edited source
+     * @param insertedLength the number of characters the edit inserts at the offset
+     */
+    public static TokenBuffer relex(TokenBuffer previous, CharSequence source, int offset, int removedLength,
+                                    int insertedLength, boolean keepComments) throws IllegalCharacterException {
+        CharSequence old = previous.getSource();
+        checkEdit(old, offset, removedLength);
+        if (source.length() != old.length() - removedLength + insertedLength) {
+            throw new IllegalArgumentException("Edited source has length " + source.length() + ", expected "
+                    + (old.length() - removedLength + insertedLength));
+        }
+        int first = firstEndingAtOrAfter(previous, offset);
+        int restart = first == 0 ? 0 : previous.end(first - 1);
+        int restartLine = first == 0 ? 0 : lineAfter(previous, first - 1);
+
+        int delta = insertedLength - removedLength;
+        int editEnd = offset + removedLength;
+        var relexed = new TokenBuffer(source, 16, previous.getSymbols());
+        var lexer = new Lexer(source, keepComments, previous.getSymbols());
+        lexer.reset(restart, restartLine);
+        int reused = previous.size();
+        int lineDelta = 0;
+        int candidate = first;
+        while (lexer.advance()) {
+            int start = lexer.getStart();
+            while (candidate < previous.size()
+                    && (previous.start(candidate) < editEnd || previous.start(candidate) + delta < start)) {
+                candidate++;
+            }
+            if (candidate < previous.size()
+                    && previous.start(candidate) + delta == start
+                    && previous.kind(candidate) == lexer.getKind()
+                    && previous.length(candidate) == lexer.getEnd() - start) {
+                reused = candidate;
+                lineDelta = lexer.getLine() - (previous.line(candidate) - 1);
+                break;
+            }
+            relexed.add(lexer);
+        }
+
+        previous.splice(source, first, reused, relexed, delta, lineDelta);
+        return previous;
+    }
+
+    private static void checkEdit(CharSequence old, int offset, int removedLength) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > old.length()) {
+            throw new IllegalArgumentException("Edit at " + offset + " removing " + removedLength
+                    + " characters is out of bounds for length " + old.length());
+        }
+    }
+
+    private static int firstEndingAtOrAfter(TokenBuffer tokens, int offset) {
+        int low = 0;
+        int high = tokens.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.end(middle) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the zero based line the given token ends in
+     */
+    private static int lineAfter(TokenBuffer tokens, int index) {
+        CharSequence source = tokens.getSource();
+        int line = tokens.line(index) - 1;
+        int end = tokens.end(index);
+        for (int i = tokens.start(index); i < end; i++) {
+            char c = source.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= source.length() || source.charAt(i + 1) != '\n'))) {
+                line++;
+            }
+        }
+        return line;
+    }
+}
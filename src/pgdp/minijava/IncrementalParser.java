@@ -0,0 +1,229 @@
+package pgdp.minijava;
+
+import pgdp.minijava.ast.SyntaxTreeNode;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the tree of a source up to date while the source is edited, for watch mode. Every top level
+ * line, a declaration or a statement with everything nested in it, is remembered with the range of
+ * tokens it was parsed from and a fingerprint of them. After an edit the tokens are updated by the
+ * {@link IncrementalLexer} and only the lines from the first one the edit touches are parsed again,
+ * until a line starts behind the edit at the same place an old line did and has its fingerprint. From
+ * there on the tokens are the ones of the old source, so the subtrees of the remaining lines are reused
+ * as they are.
+ * <p>
+ * A line is only reused if it also starts at the same line and column as before, since the nodes of
+ * the subtrees remember their position. An edit that adds or removes a line break therefore parses all
+ * lines behind it again.
+ */
+public class IncrementalParser {
+    private final TokenBuffer tokens;
+    private final boolean lean;
+    private SyntaxTreeNode tree;
+    private int lines;
+    /**
+     * The index of the first token of every line, followed by the number of tokens.
+     */
+    private int[] starts = new int[16];
+    /**
+     * The offset in the source every line starts at.
+     */
+    private int[] offsets = new int[16];
+    /**
+     * The line and column every line starts at, which its nodes carry.
+     */
+    private int[] startLines = new int[16];
+    private int[] startColumns = new int[16];
+    private long[] fingerprints = new long[16];
+    private int parsed;
+
+    /**
+     * @param lean see {@link Parser#parseTokens(TokenSource, Diagnostics, boolean)}
+     * @throws IllegalStateException if the source can't be parsed
+     */
+    public IncrementalParser(CharSequence source, boolean lean) throws IllegalCharacterException {
+        this.tokens = TokenBuffer.tokenize(source, false);
+        this.lean = lean;
+        reparse(0, 0, 0, 0);
+    }
+
+    /**
+     * Applies the edit to the source and updates the tree.
+     *
+     * @param offset the position in the old source the edit starts at
+     * @param removedLength the number of characters the edit removes
+     * @param inserted the text inserted at the offset
+     * @return the updated tree, its unchanged lines are the subtrees of the previous tree
+     * @throws IllegalStateException if the edited source can't be parsed. The next edit parses the
+     *                               whole source again.
+     */
+    public SyntaxTreeNode edit(int offset, int removedLength, CharSequence inserted) throws IllegalCharacterException {
+        CharSequence old = tokens.getSource();
+        if (offset < 0 || removedLength < 0 || offset + removedLength > old.length()) {
+            throw new IllegalArgumentException("Edit at " + offset + " removing " + removedLength
+                    + " characters is out of bounds for length " + old.length());
+        }
+        var source = new StringBuilder(old.length() - removedLength + inserted.length())
+                .append(old, 0, offset)
+                .append(inserted)
+                .append(old, offset + removedLength, old.length())
+                .toString();
+        return edit(source, offset, removedLength, inserted.length());
+    }
+
+    /**
+     * Like {@link #edit(int, int, CharSequence)} for callers that already hold the edited source.
+     *
+     * @param source the edited source
+     * @param insertedLength the number of characters the edit inserts at the offset
+     */
+    public SyntaxTreeNode edit(CharSequence source, int offset, int removedLength, int insertedLength)
+            throws IllegalCharacterException {
+        int first = tree == null ? 0 : firstLineEndingAtOrAfter(offset);
+        int size = tokens.size();
+        IncrementalLexer.relex(tokens, source, offset, removedLength, insertedLength, false);
+        if (tree == null) {
+            lines = 0;
+        }
+        reparse(first, tokens.size() - size, insertedLength - removedLength, offset + insertedLength);
+        return tree;
+    }
+
+    public SyntaxTreeNode getTree() {
+        return tree;
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    /**
+     * @return the number of lines the last edit parsed again
+     */
+    public int getParsedLines() {
+        return parsed;
+    }
+
+    /**
+     * Parses the lines from the given one on until the rest of the old lines can be reused.
+     *
+     * @param tokenDelta the number of tokens the edit added
+     * @param delta the number of characters the edit added
+     * @param editEnd the offset in the new source the edit ends at
+     */
+    private void reparse(int first, int tokenDelta, int delta, int editEnd) {
+        SyntaxTreeNode previous = tree;
+        tree = null;
+        var root = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        for (int i = 0; i < first; i++) {
+            root.addChild(previous.getChild(i));
+        }
+        int[] newStarts = Arrays.copyOf(starts, Math.max(16, lines + 1));
+        int[] newOffsets = Arrays.copyOf(offsets, newStarts.length);
+        int[] newStartLines = Arrays.copyOf(startLines, newStarts.length);
+        int[] newStartColumns = Arrays.copyOf(startColumns, newStarts.length);
+        long[] newFingerprints = Arrays.copyOf(fingerprints, newStarts.length);
+        int count = first;
+        int reused = lines;
+
+        // the tokens in front of the first line haven't changed, behind the last line there are only new ones
+        int restart = lines == 0 ? 0 : starts[first];
+        var source = new BufferTokenSource(tokens, restart, tokens.size());
+        while (source.hasNext()) {
+            int start = source.position();
+            int offset = tokens.start(start);
+            if (offset >= editEnd) {
+                int old = find(offset - delta, first);
+                if (old >= 0 && start + starts[old + 1] - starts[old] <= tokens.size()
+                        && tokens.line(start) == startLines[old] && tokens.column(start) == startColumns[old]
+                        && fingerprint(start, starts[old + 1] - starts[old]) == fingerprints[old]) {
+                    reused = old;
+                    break;
+                }
+            }
+            Parser.parseLine(source, root, lean);
+            if (count + 1 >= newStarts.length) {
+                newStarts = Arrays.copyOf(newStarts, newStarts.length * 2);
+                newOffsets = Arrays.copyOf(newOffsets, newStarts.length);
+                newStartLines = Arrays.copyOf(newStartLines, newStarts.length);
+                newStartColumns = Arrays.copyOf(newStartColumns, newStarts.length);
+                newFingerprints = Arrays.copyOf(newFingerprints, newStarts.length);
+            }
+            newStarts[count] = start;
+            newOffsets[count] = offset;
+            newStartLines[count] = tokens.line(start);
+            newStartColumns[count] = tokens.column(start);
+            newFingerprints[count] = fingerprint(start, source.position() - start);
+            count++;
+        }
+        parsed = count - first;
+
+        int total = count + lines - reused;
+        if (total + 1 > newStarts.length) {
+            newStarts = Arrays.copyOf(newStarts, total + 1);
+            newOffsets = Arrays.copyOf(newOffsets, total + 1);
+            newStartLines = Arrays.copyOf(newStartLines, total + 1);
+            newStartColumns = Arrays.copyOf(newStartColumns, total + 1);
+            newFingerprints = Arrays.copyOf(newFingerprints, total + 1);
+        }
+        for (int i = reused; i < lines; i++) {
+            root.addChild(previous.getChild(i));
+            newStarts[count] = starts[i] + tokenDelta;
+            newOffsets[count] = offsets[i] + delta;
+            newStartLines[count] = startLines[i];
+            newStartColumns[count] = startColumns[i];
+            newFingerprints[count] = fingerprints[i];
+            count++;
+        }
+        newStarts[count] = tokens.size();
+        starts = newStarts;
+        offsets = newOffsets;
+        startLines = newStartLines;
+        startColumns = newStartColumns;
+        fingerprints = newFingerprints;
+        lines = count;
+        tree = root.freeze();
+    }
+
+    /**
+     * @return the first line whose last token ends at or after the offset, in the old tokens
+     */
+    private int firstLineEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = lines;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.end(starts[middle + 1] - 1) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the old line from the given one on that started at the old offset, -1 if there is none
+     */
+    private int find(int offset, int from) {
+        int index = Arrays.binarySearch(offsets, from, lines, offset);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Hashes the kinds and text of the tokens.
+     */
+    private long fingerprint(int start, int length) {
+        long hash = 17;
+        CharSequence source = tokens.getSource();
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + tokens.kind(i).ordinal();
+            for (int c = tokens.start(i); c < tokens.end(i); c++) {
+                hash = 1_000_003 * hash + source.charAt(c);
+            }
+        }
+        return hash;
+    }
+}
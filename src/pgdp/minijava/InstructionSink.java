@@ -0,0 +1,29 @@
+package pgdp.minijava;
+
+/**
+ * Receives the miniJVM code the {@link Emitter} produces, one instruction or label at a time and in
+ * order. Labels are created first, so jumps can refer to them before they are placed.
+ */
+public interface InstructionSink {
+    /**
+     * Creates a label named after the name, followed by the number as in {@code while3}.
+     *
+     * @param number the number following the name, -1 if there is none
+     * @return the ID of the label
+     */
+    int newLabel(String name, int number);
+
+    void instruction(Opcode opcode);
+
+    /**
+     * @param operand the value, slot, count or label ID, see {@link Opcode#getOperand()}
+     */
+    void instruction(Opcode opcode, int operand);
+
+    /**
+     * Places the label in front of the next instruction.
+     */
+    default void label(int label) {
+        instruction(Opcode.LABEL, label);
+    }
+}
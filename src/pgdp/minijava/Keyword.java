@@ -0,0 +1,115 @@
+package pgdp.minijava;
+
+/**
+ * The reserved words of Java. Words are recognized through a perfect hash over the length and a few
+ * characters of the word, so the lexer never has to copy a word out of the source to classify it.
+ */
+public enum Keyword {
+    UNDERSCORE("_"),
+    ABSTRACT("abstract"),
+    ASSERT("assert"),
+    BOOLEAN("boolean"),
+    BREAK("break"),
+    BYTE("byte"),
+    CASE("case"),
+    CATCH("catch"),
+    CHAR("char"),
+    CLASS("class"),
+    CONST("const"),
+    CONTINUE("continue"),
+    DEFAULT("default"),
+    DO("do"),
+    DOUBLE("double"),
+    ELSE("else"),
+    ENUM("enum"),
+    EXTENDS("extends"),
+    FINAL("final"),
+    FINALLY("finally"),
+    FLOAT("float"),
+    FOR("for"),
+    GOTO("goto"),
+    IF("if"),
+    IMPLEMENTS("implements"),
+    IMPORT("import"),
+    INSTANCEOF("instanceof"),
+    INT("int"),
+    INTERFACE("interface"),
+    LONG("long"),
+    NATIVE("native"),
+    NEW("new"),
+    PACKAGE("package"),
+    PRIVATE("private"),
+    PROTECTED("protected"),
+    PUBLIC("public"),
+    RETURN("return"),
+    SHORT("short"),
+    STATIC("static"),
+    SUPER("super"),
+    SWITCH("switch"),
+    SYNCHRONIZED("synchronized"),
+    THIS("this"),
+    THROW("throw"),
+    THROWS("throws"),
+    TRANSIENT("transient"),
+    TRY("try"),
+    VOID("void"),
+    VOLATILE("volatile"),
+    WHILE("while");
+
+    private static final int HASH_BITS = 7;
+    private static final int HASH_SEED = 285929;
+
+    private static final Keyword[] values = values();
+    private static final Keyword[] table = new Keyword[1 << HASH_BITS];
+
+    static {
+        for (Keyword keyword : values) {
+            int slot = hash(keyword.text, 0, keyword.text.length());
+            if (table[slot] != null) {
+                throw new IllegalStateException("Keywords " + table[slot].text + " and " + keyword.text + " share a hash slot");
+            }
+            table[slot] = keyword;
+        }
+    }
+
+    private final String text;
+
+    Keyword(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the keyword spelled by the given region of the source or null if it isn't one
+     */
+    public static Keyword lookup(CharSequence source, int start, int length) {
+        Keyword candidate = table[hash(source, start, length)];
+        if (candidate != null && TokenBuffer.regionEquals(source, start, length, candidate.text)) {
+            return candidate;
+        }
+        return null;
+    }
+
+    public static Keyword lookup(String text) {
+        return lookup(text, 0, text.length());
+    }
+
+    static Keyword fromOrdinal(int ordinal) {
+        return values[ordinal];
+    }
+
+    private static int hash(CharSequence source, int start, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int h = length;
+        h = h * 31 + source.charAt(start);
+        h = h * 31 + source.charAt(start + (length > 1 ? 1 : 0));
+        h = h * 31 + source.charAt(start + length - 1);
+        h = h * 31 + source.charAt(start + (length > 2 ? 2 : 0));
+        return (h * HASH_SEED) >>> (32 - HASH_BITS);
+    }
+}
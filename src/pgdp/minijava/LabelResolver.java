@@ -0,0 +1,58 @@
+package pgdp.minijava;
+
+/**
+ * Merges labels that are placed right after each other, so a program like {@code x: while (...)} only
+ * keeps one of them. Of such a run the last label is kept and the others become its aliases, recorded in
+ * a union-find over the label IDs. Every jump is rewritten once at the end, which keeps the pass linear
+ * no matter how many labels are merged.
+ */
+public final class LabelResolver {
+    private LabelResolver() {
+
+    }
+
+    /**
+     * Compacts the code in place, dropping every label that is followed by another one and redirecting
+     * the jumps to it.
+     */
+    public static void resolve(CodeBuffer code) {
+        int[] parent = new int[code.labelCount()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        boolean merged = false;
+        int size = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Opcode opcode = code.opcode(i);
+            int operand = code.operand(i);
+            if (opcode == Opcode.LABEL && size > 0 && code.opcode(size - 1) == Opcode.LABEL) {
+                int alias = find(parent, code.operand(size - 1));
+                int target = find(parent, operand);
+                if (alias != target) {
+                    parent[alias] = target;
+                }
+                merged = true;
+                size--;
+            }
+            code.set(size++, opcode, operand);
+        }
+        code.truncate(size);
+        if (!merged) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            Opcode opcode = code.opcode(i);
+            if (opcode.isJump()) {
+                code.set(i, opcode, find(parent, code.operand(i)));
+            }
+        }
+    }
+
+    private static int find(int[] parent, int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+}
@@ -0,0 +1,328 @@
+package pgdp.minijava;
+
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+public class Lexer {
+    private static final int WHITESPACE = 1;
+    private static final int IDENTIFIER_START = 1 << 1;
+    private static final int IDENTIFIER_PART = 1 << 2;
+    private static final int DIGIT = 1 << 3;
+    private static final int SEPARATOR = 1 << 4;
+    private static final int OPERATOR = 1 << 5;
+    private static final int QUOTE = 1 << 6;
+    private static final int SIMPLE_WORD = 1 << 7;
+
+    private static final byte[] charClasses = new byte[128];
+
+    static {
+        for (char c = 0; c < charClasses.length; c++) {
+            charClasses[c] = (byte) classify(c);
+        }
+    }
+
+    private final CharSequence source;
+    private final boolean keepComments;
+    private final SymbolTable symbols;
+    private final Diagnostics diagnostics;
+    private final int end;
+    private int pos;
+    private int line;
+    private int lineStart;
+
+    private TokenKind kind;
+    private int tokenStart;
+    private int tokenLine;
+    private int tokenColumn;
+    private int tokenValue;
+
+    public Lexer(CharSequence source) {
+        this(source, true);
+    }
+
+    public Lexer(CharSequence source, boolean keepComments) {
+        this(source, keepComments, new SymbolTable());
+    }
+
+    /**
+     * @param symbols the table identifiers are interned into
+     */
+    public Lexer(CharSequence source, boolean keepComments, SymbolTable symbols) {
+        this(source, keepComments, symbols, null);
+    }
+
+    /**
+     * @param diagnostics where errors are reported to instead of being thrown; the offending characters
+     *                    are skipped. May be null
+     */
+    public Lexer(CharSequence source, boolean keepComments, SymbolTable symbols, Diagnostics diagnostics) {
+        this.source = source;
+        this.keepComments = keepComments;
+        this.symbols = symbols;
+        this.diagnostics = diagnostics;
+        this.end = source.length();
+    }
+
+    /**
+     * Moves the lexer to the given position. The position must not lie inside a token or a comment.
+     *
+     * @param line the zero based line of the position
+     */
+    public void reset(int pos, int line) {
+        this.pos = pos;
+        this.line = line;
+        int start = pos;
+        while (start > 0 && source.charAt(start - 1) != '\n' && source.charAt(start - 1) != '\r') {
+            start--;
+        }
+        this.lineStart = start;
+        this.kind = null;
+    }
+
+    /**
+     * Scans the next token of the source.
+     *
+     * @return the next token or null if the end of the source has been reached
+     */
+    public Token next() throws IllegalCharacterException {
+        if (!advance()) {
+            return null;
+        }
+        return new Token(kind, TokenBuffer.slice(source, tokenStart, pos), tokenLine);
+    }
+
+    /**
+     * Scans the next token without allocating it. Its data is available through the getters until the
+     * next call.
+     *
+     * @return false if the end of the source has been reached
+     */
+    public boolean advance() throws IllegalCharacterException {
+        while (pos < end) {
+            char c = source.charAt(pos);
+            int charClass = classOf(c);
+            if ((charClass & WHITESPACE) != 0) {
+                skipWhitespace(c);
+                continue;
+            }
+            tokenStart = pos;
+            tokenLine = line;
+            tokenColumn = pos - lineStart;
+            tokenValue = 0;
+            if ((charClass & IDENTIFIER_START) != 0) {
+                scanWord();
+                return true;
+            }
+            if ((charClass & DIGIT) != 0) {
+                scanNumber();
+                return true;
+            }
+            if ((charClass & (SEPARATOR | OPERATOR)) != 0) {
+                if (scanSymbol(c)) {
+                    return true;
+                }
+                continue;
+            }
+            if ((charClass & QUOTE) != 0) {
+                if (scanQuoted(c)) {
+                    return true;
+                }
+                continue;
+            }
+            if (diagnostics == null) {
+                throw new IllegalCharacterException(c, line, pos - lineStart);
+            }
+            diagnostics.error(Diagnostics.Phase.LEXICAL, line + 1, pos - lineStart + 1, "Illegal character " + c);
+            pos++;
+        }
+        kind = null;
+        return false;
+    }
+
+    public TokenKind getKind() {
+        return kind;
+    }
+
+    public int getStart() {
+        return tokenStart;
+    }
+
+    public int getEnd() {
+        return pos;
+    }
+
+    /**
+     * @return the zero based line the current token starts in
+     */
+    public int getLine() {
+        return tokenLine;
+    }
+
+    /**
+     * @return the zero based column the current token starts in
+     */
+    public int getColumn() {
+        return tokenColumn;
+    }
+
+    /**
+     * @return the ordinal of the {@link Keyword} if the current token is a keyword, its ID in the symbol
+     * table if it is an identifier and 0 otherwise. Numbers are 0 as well, their text may not fit an int
+     * on its own, as in {@code -2147483648}, so it is only converted once the tree is emitted.
+     */
+    public int getValue() {
+        return tokenValue;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    private void skipWhitespace(char c) {
+        pos++;
+        if (c == '\n' || (c == '\r' && (pos >= end || source.charAt(pos) != '\n'))) {
+            line++;
+            lineStart = pos;
+        }
+    }
+
+    private void scanWord() {
+        boolean simple = true;
+        pos++;
+        while (pos < end) {
+            int charClass = classOf(source.charAt(pos));
+            if ((charClass & IDENTIFIER_PART) == 0) {
+                break;
+            }
+            simple &= (charClass & SIMPLE_WORD) != 0;
+            pos++;
+        }
+        simple &= (classOf(source.charAt(tokenStart)) & SIMPLE_WORD) != 0;
+        int length = pos - tokenStart;
+        Keyword keyword = Keyword.lookup(source, tokenStart, length);
+        if (keyword != null) {
+            kind = TokenKind.KEYWORD;
+            tokenValue = keyword.ordinal();
+        } else if (TokenBuffer.regionEquals(source, tokenStart, length, "true")
+                || TokenBuffer.regionEquals(source, tokenStart, length, "false")) {
+            kind = TokenKind.BOOLEAN;
+        } else if (simple || diagnostics != null) {
+            if (!simple) {
+                diagnostics.error(Diagnostics.Phase.LEXICAL, line + 1, tokenColumn + 1,
+                        "Couldn't determine TokenType for string: " + TokenBuffer.slice(source, tokenStart, pos));
+            }
+            kind = TokenKind.IDENTIFIER;
+            tokenValue = symbols.intern(source, tokenStart, pos);
+        } else {
+            throw new IllegalStateException("Couldn't determine TokenType for string: "
+                    + TokenBuffer.slice(source, tokenStart, pos));
+        }
+    }
+
+    private void scanNumber() {
+        while (pos < end && (classOf(source.charAt(pos)) & IDENTIFIER_PART) != 0) {
+            pos++;
+        }
+        kind = TokenKind.NUMBER;
+    }
+
+    private boolean scanSymbol(char first) {
+        pos++;
+        char second = pos < end ? source.charAt(pos) : '\0';
+        if (first == '/' && second == '/') {
+            return scanLineComment();
+        }
+        if (first == '/' && second == '*') {
+            return scanBlockComment();
+        }
+        kind = TokenKind.symbol(first, second);
+        if (kind.getText().length() == 2) {
+            pos++;
+        }
+        return true;
+    }
+
+    private boolean scanLineComment() {
+        while (pos < end && source.charAt(pos) != '\n' && source.charAt(pos) != '\r') {
+            pos++;
+        }
+        kind = TokenKind.COMMENT;
+        return keepComments;
+    }
+
+    private boolean scanBlockComment() {
+        pos++;
+        while (pos < end) {
+            char c = source.charAt(pos);
+            if (c == '*' && pos + 1 < end && source.charAt(pos + 1) == '/') {
+                pos += 2;
+                break;
+            }
+            if (c == '\n' || c == '\r') {
+                skipWhitespace(c);
+            } else {
+                pos++;
+            }
+        }
+        kind = TokenKind.COMMENT;
+        return keepComments;
+    }
+
+    /**
+     * @return false if the literal isn't closed on its line and the error has been reported
+     */
+    private boolean scanQuoted(char quoteMark) throws IllegalCharacterException {
+        pos++;
+        while (pos < end) {
+            char c = source.charAt(pos);
+            if (c == '\n' || c == '\r') {
+                break;
+            }
+            pos++;
+            if (c == quoteMark) {
+                kind = TokenKind.STRING;
+                return true;
+            }
+            if (c == '\\' && pos < end && source.charAt(pos) != '\n' && source.charAt(pos) != '\r') {
+                pos++;
+            }
+        }
+        if (diagnostics == null) {
+            throw new IllegalCharacterException(quoteMark, line, tokenStart - lineStart);
+        }
+        diagnostics.error(Diagnostics.Phase.LEXICAL, line + 1, tokenColumn + 1, "Unclosed literal " + quoteMark);
+        return false;
+    }
+
+    private static int classOf(char c) {
+        return c < charClasses.length ? charClasses[c] & 0xFF : classify(c);
+    }
+
+    private static int classify(char c) {
+        if (Character.isWhitespace(c)) {
+            return WHITESPACE;
+        }
+        int charClass = 0;
+        if (Character.isJavaIdentifierStart(c)) {
+            charClass |= IDENTIFIER_START;
+        }
+        if (Character.isJavaIdentifierPart(c)) {
+            charClass |= IDENTIFIER_PART;
+        }
+        if (c >= '0' && c <= '9') {
+            charClass |= DIGIT;
+        }
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$') {
+            charClass |= SIMPLE_WORD;
+        }
+        if (".,:;()[]{}".indexOf(c) >= 0) {
+            charClass |= SEPARATOR;
+        }
+        if ("<>=!*+%/-&|^".indexOf(c) >= 0) {
+            charClass |= OPERATOR;
+        }
+        if (c == '"' || c == '\'') {
+            charClass |= QUOTE;
+        }
+        return charClass;
+    }
+}
@@ -0,0 +1,150 @@
+package pgdp.minijava;
+
+import pgdp.minijava.exceptions.IllegalCharacterException;
+import pgdp.minijava.exceptions.UncheckedIllegalCharacterException;
+
+import java.util.Arrays;
+
+/**
+ * A {@link TokenSource} that lexes lazily. Tokens are only scanned once the parser looks at them and
+ * are kept in a small ring buffer, so memory depends on the lookahead instead of the program size.
+ */
+public class LexingTokenSource implements TokenSource {
+    private final CharSequence source;
+    private final Lexer lexer;
+    private byte[] kinds = new byte[8];
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int[] lines = new int[8];
+    private int[] columns = new int[8];
+    private int[] values = new int[8];
+    private int head;
+    private int buffered;
+    private int position;
+    private boolean exhausted;
+    private int lastLine;
+
+    public LexingTokenSource(CharSequence source) {
+        this(source, null);
+    }
+
+    /**
+     * @param diagnostics where lexical errors are reported to instead of being thrown, may be null
+     */
+    public LexingTokenSource(CharSequence source, Diagnostics diagnostics) {
+        this.source = source;
+        this.lexer = new Lexer(source, false, new SymbolTable(), diagnostics);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return fill(1);
+    }
+
+    @Override
+    public TokenKind kind(int k) {
+        return TokenKind.fromOrdinal(kinds[slot(k)]);
+    }
+
+    @Override
+    public String text(int k) {
+        int slot = slot(k);
+        return TokenBuffer.slice(source, starts[slot], ends[slot]);
+    }
+
+    @Override
+    public boolean textEquals(int k, String text) {
+        int slot = slot(k);
+        return TokenBuffer.regionEquals(source, starts[slot], ends[slot] - starts[slot], text);
+    }
+
+    @Override
+    public int line(int k) {
+        return lines[slot(k)] + 1;
+    }
+
+    @Override
+    public int column(int k) {
+        return columns[slot(k)] + 1;
+    }
+
+    @Override
+    public int value(int k) {
+        return values[slot(k)];
+    }
+
+    @Override
+    public SymbolTable symbols() {
+        return lexer.getSymbols();
+    }
+
+    @Override
+    public void advance() {
+        slot(0);
+        head = (head + 1) & (kinds.length - 1);
+        buffered--;
+        position++;
+    }
+
+    @Override
+    public int position() {
+        return position;
+    }
+
+    private int slot(int k) {
+        if (!fill(k + 1)) {
+            throw TokenSource.unexpectedEnd(lastLine + 1);
+        }
+        return (head + k) & (kinds.length - 1);
+    }
+
+    private boolean fill(int count) {
+        while (buffered < count && !exhausted) {
+            try {
+                if (!lexer.advance()) {
+                    exhausted = true;
+                    break;
+                }
+            } catch (IllegalCharacterException e) {
+                throw new UncheckedIllegalCharacterException(e);
+            }
+            if (buffered == kinds.length) {
+                grow();
+            }
+            int slot = (head + buffered) & (kinds.length - 1);
+            kinds[slot] = (byte) lexer.getKind().ordinal();
+            starts[slot] = lexer.getStart();
+            ends[slot] = lexer.getEnd();
+            lines[slot] = lexer.getLine();
+            columns[slot] = lexer.getColumn();
+            values[slot] = lexer.getValue();
+            lastLine = lexer.getLine();
+            buffered++;
+        }
+        return buffered >= count;
+    }
+
+    private void grow() {
+        kinds = unwrap(kinds);
+        starts = unwrap(starts);
+        ends = unwrap(ends);
+        lines = unwrap(lines);
+        columns = unwrap(columns);
+        values = unwrap(values);
+        head = 0;
+    }
+
+    private byte[] unwrap(byte[] ring) {
+        byte[] grown = Arrays.copyOf(ring, ring.length * 2);
+        System.arraycopy(ring, 0, grown, ring.length - head, head);
+        System.arraycopy(ring, head, grown, 0, ring.length - head);
+        return grown;
+    }
+
+    private int[] unwrap(int[] ring) {
+        int[] grown = Arrays.copyOf(ring, ring.length * 2);
+        System.arraycopy(ring, 0, grown, ring.length - head, head);
+        System.arraycopy(ring, head, grown, 0, ring.length - head);
+        return grown;
+    }
+}
@@ -0,0 +1,100 @@
+package pgdp.minijava;
+
+import java.util.List;
+
+/**
+ * A {@link TokenSource} over an already tokenized program. Positions are indices into the list.
+ */
+public class ListTokenSource implements TokenSource {
+    private final List<Token> tokens;
+    private final SymbolTable symbols = new SymbolTable();
+    private int pos;
+
+    public ListTokenSource(List<Token> tokens, int pos) {
+        this.tokens = tokens;
+        this.pos = skipComments(pos);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pos < tokens.size();
+    }
+
+    @Override
+    public TokenKind kind(int k) {
+        return get(k).getKind();
+    }
+
+    @Override
+    public String text(int k) {
+        return get(k).getContentAsString();
+    }
+
+    @Override
+    public boolean textEquals(int k, String text) {
+        return get(k).getContentAsString().equals(text);
+    }
+
+    @Override
+    public int line(int k) {
+        return get(k).getLine();
+    }
+
+    @Override
+    public int value(int k) {
+        Token token = get(k);
+        return switch (token.getKind()) {
+            case KEYWORD -> {
+                Keyword keyword = Keyword.lookup(token.getContentAsString());
+                yield keyword == null ? -1 : keyword.ordinal();
+            }
+            case IDENTIFIER -> symbols.intern(token.getContentAsString());
+            default -> 0;
+        };
+    }
+
+    @Override
+    public Keyword keyword(int k) {
+        Token token = get(k);
+        return token.getKind() == TokenKind.KEYWORD ? Keyword.lookup(token.getContentAsString()) : null;
+    }
+
+    @Override
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    @Override
+    public Token peek(int k) {
+        return get(k);
+    }
+
+    @Override
+    public void advance() {
+        get(0);
+        pos = skipComments(pos + 1);
+    }
+
+    @Override
+    public int position() {
+        return pos;
+    }
+
+    private Token get(int k) {
+        int index = pos;
+        for (int i = 0; i < k; i++) {
+            index = skipComments(index + 1);
+        }
+        if (index >= tokens.size()) {
+            throw TokenSource.unexpectedEnd(tokens.isEmpty() ? 0 : tokens.get(tokens.size() - 1).getLine());
+        }
+        return tokens.get(index);
+    }
+
+    private int skipComments(int index) {
+        while (index < tokens.size() && tokens.get(index).getKind() == TokenKind.COMMENT) {
+            index++;
+        }
+        return index;
+    }
+}
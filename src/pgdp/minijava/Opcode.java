@@ -0,0 +1,79 @@
+package pgdp.minijava;
+
+/**
+ * The instructions of the miniJVM, and {@link #LABEL} marking the place of a label in the code.
+ */
+public enum Opcode {
+    CONST(Operand.VALUE),
+    LOAD(Operand.SLOT),
+    STORE(Operand.SLOT),
+    ALLOC(Operand.COUNT),
+    ADD,
+    SUB,
+    MUL,
+    DIV,
+    MOD,
+    NEG,
+    NOT,
+    AND,
+    OR,
+    EQ,
+    NEQ,
+    LESS,
+    LEQ,
+    TRUE,
+    FALSE,
+    READ,
+    WRITE,
+    JUMP(Operand.LABEL),
+    FJUMP(Operand.LABEL),
+    HALT,
+    /**
+     * Not an instruction: the place of the label given as operand.
+     */
+    LABEL(Operand.LABEL);
+
+    private static final Opcode[] VALUES = values();
+
+    private final Operand operand;
+
+    Opcode() {
+        this(Operand.NONE);
+    }
+
+    Opcode(Operand operand) {
+        this.operand = operand;
+    }
+
+    public Operand getOperand() {
+        return operand;
+    }
+
+    public boolean isJump() {
+        return this == JUMP || this == FJUMP;
+    }
+
+    public static Opcode fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public enum Operand {
+        NONE,
+        /**
+         * A constant.
+         */
+        VALUE,
+        /**
+         * The slot of a variable.
+         */
+        SLOT,
+        /**
+         * The number of slots to allocate.
+         */
+        COUNT,
+        /**
+         * The ID of a label.
+         */
+        LABEL
+    }
+}
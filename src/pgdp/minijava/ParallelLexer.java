@@ -0,0 +1,281 @@
+package pgdp.minijava;
+
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Lexes large sources on a {@link ForkJoinPool}. The source is cut into chunks at line breaks and every
+ * chunk is lexed on its own, assuming it doesn't start inside a token. The only token that can span
+ * a line break is a block comment, so a single sequential pass afterwards is enough to repair the
+ * chunks that actually started inside one: they are lexed again from the end of the comment until the
+ * tokens converge with the speculative ones, like in the {@link IncrementalLexer}.
+ * <p>
+ * The result, including the symbol IDs, is identical to {@link TokenBuffer#tokenize(CharSequence, boolean)}.
+ */
+public class ParallelLexer {
+    /**
+     * Sources shorter than this are lexed sequentially.
+     */
+    public static final int MIN_CHUNK_LENGTH = 1 << 16;
+
+    private ParallelLexer() {
+
+    }
+
+    public static TokenBuffer tokenize(CharSequence source, boolean keepComments) throws IllegalCharacterException {
+        return tokenize(source, keepComments, ForkJoinPool.commonPool());
+    }
+
+    public static TokenBuffer tokenize(CharSequence source, boolean keepComments, ForkJoinPool pool)
+            throws IllegalCharacterException {
+        List<Chunk> chunks = split(source, pool.getParallelism() * 4);
+        if (chunks.size() <= 1) {
+            return TokenBuffer.tokenize(source, keepComments);
+        }
+        invokeAll(pool, chunks, chunk -> {
+            chunk.lex(source);
+            return null;
+        });
+
+        var symbols = new SymbolTable();
+        int lineBase = 0;
+        int size = 0;
+        int lastEnd = 0;
+        int lastEndLine = 0;
+        for (Chunk chunk : chunks) {
+            chunk.lineBase = lineBase;
+            if (lastEnd > chunk.start) {
+                chunk.repair(source, symbols, lastEnd, lastEndLine);
+            }
+            chunk.checkError(source);
+            chunk.mapSymbols(symbols);
+            TokenBuffer last = chunk.used < chunk.tokens.size() ? chunk.tokens : chunk.prefix;
+            if (last != null && last.size() > 0) {
+                int index = last.size() - 1;
+                int lineDelta = last == chunk.tokens ? lineBase : 0;
+                lastEnd = last.end(index);
+                lastEndLine = endLine(source, last, index) + lineDelta;
+            }
+            chunk.offset = size;
+            size += chunk.count(keepComments);
+            lineBase += chunk.lineBreaks;
+        }
+
+        var out = new TokenBuffer(source, Math.max(size, 1), symbols);
+        invokeAll(pool, chunks, chunk -> {
+            int index = chunk.offset;
+            if (chunk.prefix != null) {
+                index = out.copy(chunk.prefix, 0, index, 0, null, keepComments);
+            }
+            out.copy(chunk.tokens, chunk.used, index, chunk.lineBase, chunk.symbolMap, keepComments);
+            return null;
+        });
+        out.setSize(size);
+        return out;
+    }
+
+    private static List<Chunk> split(CharSequence source, int count) {
+        int length = Math.max(MIN_CHUNK_LENGTH, source.length() / Math.max(count, 1));
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < source.length()) {
+            int end = Math.min(start + length, source.length());
+            while (end < source.length() && source.charAt(end - 1) != '\n') {
+                end++;
+            }
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static void invokeAll(ForkJoinPool pool, List<Chunk> chunks, ChunkTask task) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            tasks.add(() -> task.run(chunk));
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while lexing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the zero based line the given token ends in, relative to the lines of the buffer
+     */
+    private static int endLine(CharSequence source, TokenBuffer tokens, int index) {
+        int line = tokens.line(index) - 1;
+        int end = tokens.end(index);
+        for (int i = tokens.start(index); i < end; i++) {
+            if (isLineBreak(source, i)) {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    private static boolean isLineBreak(CharSequence source, int i) {
+        char c = source.charAt(i);
+        return c == '\n' || (c == '\r' && (i + 1 >= source.length() || source.charAt(i + 1) != '\n'));
+    }
+
+    private interface ChunkTask {
+        Void run(Chunk chunk);
+    }
+
+    private static class Chunk {
+        private final int start;
+        private final int end;
+        private TokenBuffer tokens;
+        private int lineBreaks;
+        private int comments;
+        private IllegalCharacterException error;
+        private RuntimeException failure;
+
+        private int lineBase;
+        private TokenBuffer prefix;
+        private int used;
+        private int[] symbolMap;
+        private int offset;
+
+        Chunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Lexes the tokens starting in this chunk, with lines relative to the chunk, as if no token
+         * started in front of it. Errors are only recorded, as they may be caused by a wrong guess.
+         */
+        void lex(CharSequence source) {
+            for (int i = start; i < end; i++) {
+                if (isLineBreak(source, i)) {
+                    lineBreaks++;
+                }
+            }
+            tokens = new TokenBuffer(source, Math.max(16, (end - start) / 6), new SymbolTable());
+            var lexer = new Lexer(source, true, tokens.getSymbols());
+            lexer.reset(start, 0);
+            try {
+                while (lexer.advance() && lexer.getStart() < end) {
+                    if (lexer.getKind() == TokenKind.COMMENT) {
+                        comments++;
+                    }
+                    tokens.add(lexer);
+                }
+            } catch (IllegalCharacterException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * Lexes the chunk again from the end of a token that reaches into it, until a token matches one
+         * of the speculative ones.
+         */
+        void repair(CharSequence source, SymbolTable symbols, int from, int line) throws IllegalCharacterException {
+            prefix = new TokenBuffer(source, 16, symbols);
+            var lexer = new Lexer(source, true, symbols);
+            lexer.reset(from, line);
+            used = tokens.size();
+            int candidate = 0;
+            while (lexer.advance() && lexer.getStart() < end) {
+                int tokenStart = lexer.getStart();
+                while (candidate < tokens.size() && tokens.start(candidate) < tokenStart) {
+                    candidate++;
+                }
+                if (candidate < tokens.size()
+                        && tokens.start(candidate) == tokenStart
+                        && tokens.kind(candidate) == lexer.getKind()
+                        && tokens.length(candidate) == lexer.getEnd() - tokenStart) {
+                    used = candidate;
+                    return;
+                }
+                prefix.add(lexer);
+            }
+            error = null;
+            failure = null;
+        }
+
+        /**
+         * Rethrows an error of the speculative pass if the sequential lexer would run into it as well. It
+         * is lexed again from a known state so the exception carries the right line.
+         */
+        void checkError(CharSequence source) throws IllegalCharacterException {
+            if (error == null && failure == null) {
+                return;
+            }
+            int from = used < tokens.size() ? tokens.start(used) : start;
+            int line = lineBase + (used < tokens.size() ? tokens.line(used) - 1 : 0);
+            var lexer = new Lexer(source, true, new SymbolTable());
+            lexer.reset(from, line);
+            while (lexer.advance()) {
+                if (lexer.getStart() >= end) {
+                    break;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            throw error;
+        }
+
+        /**
+         * Interns the identifiers of the used tokens into the shared table in the order they appear.
+         */
+        void mapSymbols(SymbolTable symbols) {
+            SymbolTable local = tokens.getSymbols();
+            symbolMap = new int[local.size()];
+            if (used == 0) {
+                for (int id = 0; id < local.size(); id++) {
+                    symbolMap[id] = symbols.intern(local.name(id));
+                }
+                return;
+            }
+            Arrays.fill(symbolMap, -1);
+            for (int i = used; i < tokens.size(); i++) {
+                if (tokens.kind(i) == TokenKind.IDENTIFIER && symbolMap[tokens.value(i)] < 0) {
+                    symbolMap[tokens.value(i)] = symbols.intern(local.name(tokens.value(i)));
+                }
+            }
+        }
+
+        int count(boolean keepComments) {
+            int count = (prefix == null ? 0 : prefix.size()) + tokens.size() - used;
+            if (!keepComments) {
+                if (prefix != null) {
+                    count -= comments(prefix, 0, prefix.size());
+                }
+                count -= comments - comments(tokens, 0, used);
+            }
+            return count;
+        }
+
+        private static int comments(TokenBuffer tokens, int from, int to) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (tokens.kind(i) == TokenKind.COMMENT) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
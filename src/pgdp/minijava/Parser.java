@@ -1,13 +1,17 @@
 package pgdp.minijava;
 
+import pgdp.minijava.ast.SyntaxTreeArena;
 import pgdp.minijava.ast.SyntaxTreeNode;
-import pgdp.minijava.exceptions.IllegalCharacterException;
+import pgdp.minijava.exceptions.UncheckedIllegalCharacterException;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class Parser {
     private Parser() {
@@ -15,8 +19,17 @@ public class Parser {
     }
 
     public static SyntaxTreeNode parseFromFile(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath, Charset.defaultCharset()))) {
-            return parseFromString(br.lines().reduce("", (s, str) -> s.concat(str).concat("\n")));
+        return parseFromFile(filePath, false);
+    }
+
+    /**
+     * @param lean see {@link #parseTokens(TokenSource, Diagnostics, boolean)}
+     */
+    public static SyntaxTreeNode parseFromFile(String filePath, boolean lean) {
+        try {
+            return parseTokens(new LexingTokenSource(SourceReader.read(Path.of(filePath))), null, lean);
+        } catch (UncheckedIllegalCharacterException e) {
+            e.getCause().printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -24,344 +37,964 @@ public class Parser {
     }
 
     public static SyntaxTreeNode parseFromString(String rawCode) {
+        return parse(rawCode);
+    }
+
+    public static SyntaxTreeNode parse(CharSequence source) {
         try {
-            List<Token> tokens = Tokenizer.tokenize(rawCode);
-            tokens = tokens.stream().filter(token -> token.getTokenType() != TokenType.COMMENT).toList();
-            return parseTokens(tokens);
-        } catch (IllegalCharacterException e) {
-            e.printStackTrace();
+            return parseTokens(new LexingTokenSource(source == null ? "" : source));
+        } catch (UncheckedIllegalCharacterException e) {
+            e.getCause().printStackTrace();
         }
         return null;
     }
 
     public static SyntaxTreeNode parseTokens(List<Token> tokens) {
+        return parseTokens(new ListTokenSource(tokens, 0));
+    }
+
+    public static SyntaxTreeNode parseTokens(TokenBuffer tokens) {
+        return parseTokens(new BufferTokenSource(tokens));
+    }
+
+    public static SyntaxTreeNode parseTokens(TokenSource tokens) {
+        return parseTokens(tokens, null);
+    }
+
+    /**
+     * Parses the source without stopping at the first error. Lexical and syntax errors are reported to
+     * the diagnostics, see {@link #parseTokens(TokenSource, Diagnostics)}.
+     *
+     * @return the tree of everything that could be parsed
+     */
+    public static SyntaxTreeNode parse(CharSequence source, Diagnostics diagnostics) {
+        return parseTokens(new LexingTokenSource(source == null ? "" : source, diagnostics), diagnostics);
+    }
+
+    /**
+     * @param diagnostics where syntax errors are reported to instead of being thrown, may be null. After
+     *                    an error the parser skips ahead to the next {@code ;} or {@code }} and goes on
+     *                    with the statement after it.
+     * @return the frozen tree
+     */
+    public static SyntaxTreeNode parseTokens(TokenSource tokens, Diagnostics diagnostics) {
+        return parseTokens(tokens, diagnostics, false);
+    }
+
+    public static SyntaxTreeNode parse(CharSequence source, Diagnostics diagnostics, boolean lean) {
+        return parseTokens(new LexingTokenSource(source == null ? "" : source, diagnostics), diagnostics, lean);
+    }
+
+    /**
+     * @param lean whether to build the lean tree the compiler uses. It leaves out every separator and
+     *             keyword token: statements carry their keyword as value, operators are the value of
+     *             their EXPR or COND and parentheses only shape the tree. Assignments and calls aren't
+     *             wrapped into a STMT. Without it, every token is kept as a SYMBOL for debugging.
+     * @see #parseTokens(TokenSource, Diagnostics)
+     */
+    public static SyntaxTreeNode parseTokens(TokenSource tokens, Diagnostics diagnostics, boolean lean) {
         var root = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
-        var pos = 0;
-        while(pos < tokens.size()) {
-            pos = parseLine(tokens, pos, root);
+        while(tokens.hasNext()) {
+            parseNested(tokens, root, Step.LINE, diagnostics, lean, false);
         }
-        return root;
+        return root.freeze();
     }
 
-    public static int parseLine(List<Token> tokens, int pos, SyntaxTreeNode root) {
-        Token current = tokens.get(pos);
-        if (current.getTokenType() == TokenType.KEYWORD && types.contains(current.getContentAsString())) {
-            pos = parseDeclaration(tokens, pos, root);
-        } else {
-            pos = parseStatement(tokens, pos, root);
+    /**
+     * Parses only the top level of the program. Blocks are matched by their braces and skipped, their
+     * statements are parsed the first time the children of their STMT are asked for, so finding the
+     * declarations and the block structure of a program costs little more than scanning its tokens.
+     * Syntax errors inside a block are only found once it is parsed.
+     *
+     * @param diagnostics see {@link #parseTokens(TokenSource, Diagnostics)}, also used for the blocks
+     *                    parsed later. May be null.
+     * @param lean see {@link #parseTokens(TokenSource, Diagnostics, boolean)}
+     * @return the frozen tree, equal to the one {@link #parseTokens(TokenSource, Diagnostics, boolean)}
+     * parses once its blocks are parsed
+     */
+    public static SyntaxTreeNode parseLazy(TokenBuffer tokens, Diagnostics diagnostics, boolean lean) {
+        var source = new BufferTokenSource(tokens);
+        var root = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        while(source.hasNext()) {
+            parseNested(source, root, Step.LINE, diagnostics, lean, true);
         }
-        return pos;
+        return root.freeze();
+    }
+
+    public static SyntaxTreeArena parseArena(CharSequence source) {
+        return parseArena(new LexingTokenSource(source), null);
+    }
+
+    public static SyntaxTreeArena parseArena(TokenSource tokens, Diagnostics diagnostics) {
+        return parseArena(tokens, diagnostics, false);
+    }
+
+    /**
+     * Parses into a {@link SyntaxTreeArena}. Every top level line is parsed into objects and copied into
+     * the arena right away, so only the objects of a single line are alive at a time.
+     *
+     * @param diagnostics see {@link #parseTokens(TokenSource, Diagnostics)}, may be null
+     * @param lean see {@link #parseTokens(TokenSource, Diagnostics, boolean)}
+     */
+    public static SyntaxTreeArena parseArena(TokenSource tokens, Diagnostics diagnostics, boolean lean) {
+        var arena = new SyntaxTreeArena();
+        var line = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        while(tokens.hasNext()) {
+            parseNested(tokens, line, Step.LINE, diagnostics, lean, false);
+            for (int i = 0; i < line.getNumberChildren(); i++) {
+                arena.addToRoot(line.getChild(i));
+            }
+            line = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        }
+        return arena.trimToSize();
+    }
+
+    public static int parseLine(List<Token> tokens, int pos, SyntaxTreeNode root) {
+        var source = new ListTokenSource(tokens, pos);
+        parseLine(source, root);
+        return source.position();
+    }
+
+    public static void parseLine(TokenSource tokens, SyntaxTreeNode root) {
+        parseLine(tokens, root, false);
+    }
+
+    /**
+     * Parses a declaration or statement with everything nested in it into a single child of the root.
+     *
+     * @param lean see {@link #parseTokens(TokenSource, Diagnostics, boolean)}
+     */
+    public static void parseLine(TokenSource tokens, SyntaxTreeNode root, boolean lean) {
+        parseNested(tokens, root, Step.LINE, null, lean, false);
     }
 
     public static int parseDeclaration(List<Token> tokens, int pos, SyntaxTreeNode root) {
+        var source = new ListTokenSource(tokens, pos);
+        parseDeclaration(source, root);
+        return source.position();
+    }
+
+    public static void parseDeclaration(TokenSource tokens, SyntaxTreeNode root) {
+        parseDeclaration(tokens, root, false);
+    }
+
+    private static void parseDeclaration(TokenSource tokens, SyntaxTreeNode root, boolean lean) {
         SyntaxTreeNode node = new SyntaxTreeNode(SyntaxTreeNode.Type.DECL, "");
-        var type = new SyntaxTreeNode(SyntaxTreeNode.Type.TYPE, tokens.get(pos++).getContentAsString());
-        node.addChild(type);
-        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, tokens.get(pos++).getContentAsString()));
-        while(!tokens.get(pos).getContentAsString().equals(";")) {
-            if(tokens.get(pos).getContentAsString().equals("=")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
-                if(type.getValue().equals("boolean")) {
-                    pos = parseCondition(tokens, pos, node);
+        root.addChild(node);
+        Keyword type = tokens.keyword(0);
+        boolean isBoolean = type == Keyword.BOOLEAN;
+        tokens.advance();
+        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.TYPE, type.getText()));
+        node.addChild(identifier(tokens, SyntaxTreeNode.Type.NAME));
+        while(!tokens.is(0, TokenKind.SEMICOLON)) {
+            if(tokens.is(0, TokenKind.ASSIGN)) {
+                separator(tokens, node, lean);
+                if(isBoolean) {
+                    parseCondition(tokens, node, lean);
                 } else {
-                    pos = parseExpression(tokens, pos, node);
+                    parseExpression(tokens, node, lean);
                 }
                 break;
             }
-            node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
-            node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, tokens.get(pos++).getContentAsString()));
+            if(!tokens.is(0, TokenKind.COMMA)) {
+                break;
+            }
+            separator(tokens, node, lean);
+            node.addChild(identifier(tokens, SyntaxTreeNode.Type.NAME));
         }
-        if(!tokens.get(pos).getContentAsString().equals(";")) {
-            throw new IllegalStateException("Expected semicolon at line " + tokens.get(pos).getLine());
+        if(!tokens.is(0, TokenKind.SEMICOLON)) {
+            throw new IllegalStateException("Expected semicolon at line " + tokens.line(0));
         }
-        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
-        root.addChild(node);
-        return pos;
+        separator(tokens, node, lean);
     }
 
     public static int parseStatement(List<Token> tokens, int pos, SyntaxTreeNode root) {
-        SyntaxTreeNode node = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, "");
-        Token current = tokens.get(pos++);
-        if(current.getTokenType() == TokenType.IDENTIFIER) {
-            pos = parseIdentifierStatement(tokens, pos - 1, node);
-        } else if(current.getTokenType() == TokenType.SEPARATOR) {
-            if(current.getContentAsString().equals(";")){
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-            } else if(current.getContentAsString().equals("{")){
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                pos = parseLine(tokens, pos, node);
-                while(pos < tokens.size() && !(tokens.get(pos).getTokenType() == TokenType.SEPARATOR && tokens.get(pos).getContentAsString().equals("}"))) {
-                    pos = parseLine(tokens, pos, node);
+        var source = new ListTokenSource(tokens, pos);
+        parseStatement(source, root);
+        return source.position();
+    }
+
+    public static void parseStatement(TokenSource tokens, SyntaxTreeNode root) {
+        parseNested(tokens, root, Step.STATEMENT, null, false, false);
+    }
+
+    /**
+     * Parses a line or statement with everything nested in it. Instead of recursing, a statement that
+     * contains others only parses its head and pushes what is left of it onto an explicit stack, so the
+     * nesting depth is only limited by the heap.
+     * <p>
+     * With diagnostics, an error in one step is reported and the parser recovers in panic mode: it
+     * skips the rest of the broken statement and goes on with the steps still on the stack.
+     */
+    private static void parseNested(TokenSource tokens, SyntaxTreeNode root, Step step, Diagnostics diagnostics,
+                                    boolean lean, boolean lazy) {
+        Deque<Pending> stack = new ArrayDeque<>();
+        stack.push(new Pending(step, root));
+        parsePending(tokens, stack, diagnostics, lean, lazy);
+    }
+
+    private static void parsePending(TokenSource tokens, Deque<Pending> stack, Diagnostics diagnostics, boolean lean,
+                                     boolean lazy) {
+        // where the last step started, for errors at the end of the input
+        int line = 0;
+        int column = 0;
+        while(!stack.isEmpty()) {
+            Pending pending = stack.pop();
+            if(diagnostics == null) {
+                parseStep(tokens, pending, stack, diagnostics, lean, lazy);
+                continue;
+            }
+            if(tokens.hasNext()) {
+                line = tokens.line(0);
+                column = tokens.column(0);
+            }
+            try {
+                parseStep(tokens, pending, stack, diagnostics, lean, lazy);
+            } catch (IllegalStateException | UnsupportedOperationException e) {
+                if(!tokens.hasNext()) {
+                    // ran out of tokens, there is nothing left to recover with
+                    diagnostics.error(Diagnostics.Phase.SYNTAX, line, column, e.getMessage());
+                    return;
                 }
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
+                diagnostics.error(Diagnostics.Phase.SYNTAX, tokens.line(0), tokens.column(0), e.getMessage());
+                synchronize(tokens, stack);
             }
-        } else if(current.getTokenType() == TokenType.KEYWORD) {
-            if(!allowedKeywords.contains(current.getContentAsString())) {
-                if(current.getContentAsString().equals("_")) {
-                    throw new IllegalStateException("\"_\" is not a valid identifier!");
+        }
+    }
+
+    /**
+     * Skips tokens up to and including the next {@code ;}, or the {@code }} closing a block that was
+     * opened while skipping. The {@code }} of an enclosing block is left for that block to close.
+     */
+    private static void synchronize(TokenSource tokens, Deque<Pending> stack) {
+        boolean inBlock = inBlock(stack);
+        int depth = 0;
+        while(tokens.hasNext()) {
+            TokenKind current = tokens.kind(0);
+            if(current == TokenKind.RBRACE && depth == 0 && inBlock) {
+                return;
+            }
+            tokens.advance();
+            if(current == TokenKind.LBRACE) {
+                depth++;
+            } else if(current == TokenKind.RBRACE && depth > 0) {
+                depth--;
+                if(depth == 0) {
+                    return;
                 }
-                if(current.getContentAsString().equals("goto")) {
-                    throw new UnsupportedOperationException("Java does not support goto operations");
+            } else if((current == TokenKind.SEMICOLON || current == TokenKind.RBRACE) && depth == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return whether a block is still open, which the next {@code }} closes
+     */
+    private static boolean inBlock(Deque<Pending> stack) {
+        for (Pending pending : stack) {
+            if(pending.step() == Step.BLOCK) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void parseStep(TokenSource tokens, Pending pending, Deque<Pending> stack, Diagnostics diagnostics,
+                                  boolean lean, boolean lazy) {
+        SyntaxTreeNode node = pending.node();
+        switch (pending.step()) {
+            case LINE -> {
+                if(types.contains(tokens.keyword(0))) {
+                    parseDeclaration(tokens, node, lean);
+                } else {
+                    parseStatementHead(tokens, node, stack, diagnostics, lean, lazy);
                 }
-                throw new UnsupportedOperationException("Can't use Java keyword " + current.getContentAsString());
             }
-            if(current.getContentAsString().equals("return")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                current = tokens.get(pos++);
-                if(current.getContentAsString().equals(";")) {
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                    pos++;
+            case STATEMENT -> parseStatementHead(tokens, node, stack, diagnostics, lean, lazy);
+            case BLOCK -> {
+                if(tokens.hasNext() && !tokens.is(0, TokenKind.RBRACE)) {
+                    stack.push(pending);
+                    stack.push(new Pending(Step.LINE, node));
                 } else {
-                    throw new UnsupportedOperationException("Can't return values!");
+                    separator(tokens, node, lean);
                 }
             }
-            if(current.getContentAsString().equals("while")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                current = tokens.get(pos++);
-                if(current.getContentAsString().equals("(")) {
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                    pos = parseCondition(tokens, pos, node);
-                    current = tokens.get(pos);
-                    if(current.getContentAsString().equals(")")) {
-                        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                        pos = parseStatement(tokens, pos + 1, node);
+            case ELSE -> {
+                if(tokens.hasNext() && tokens.keyword(0) == Keyword.ELSE) {
+                    separator(tokens, node, lean);
+                    stack.push(new Pending(Step.STATEMENT, node));
+                }
+            }
+        }
+    }
+
+    private static void parseStatementHead(TokenSource tokens, SyntaxTreeNode root, Deque<Pending> stack,
+                                           Diagnostics diagnostics, boolean lean, boolean lazy) {
+        TokenKind current = tokens.kind(0);
+        if(lean && current == TokenKind.IDENTIFIER) {
+            // only a labeled statement needs a STMT of its own
+            parseIdentifierStatement(tokens, root, stack, true);
+            return;
+        }
+        checkStatementStart(tokens);
+        SyntaxTreeNode node = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, lean ? text(tokens) : "");
+        root.addChild(node);
+        if(current == TokenKind.IDENTIFIER) {
+            parseIdentifierStatement(tokens, node, stack, false);
+        } else if(current == TokenKind.SEMICOLON) {
+            separator(tokens, node, lean);
+        } else if(current == TokenKind.LBRACE) {
+            if(lazy) {
+                node.setBody(new LazyBlock(((BufferTokenSource) tokens).skipBlock(), diagnostics, lean));
+                return;
+            }
+            separator(tokens, node, lean);
+            stack.push(new Pending(Step.BLOCK, node));
+        } else {
+            Keyword keyword = tokens.keyword(0);
+            if(keyword == Keyword.RETURN) {
+                separator(tokens, node, lean);
+                if(tokens.is(0, TokenKind.SEMICOLON)) {
+                    separator(tokens, node, lean);
+                } else {
+                    throw new UnsupportedOperationException("Can't return values!");
+                }
+            } else if(keyword == Keyword.WHILE) {
+                separator(tokens, node, lean);
+                if(tokens.is(0, TokenKind.LPAREN)) {
+                    separator(tokens, node, lean);
+                    parseCondition(tokens, node, lean);
+                    if(tokens.is(0, TokenKind.RPAREN)) {
+                        separator(tokens, node, lean);
+                        stack.push(new Pending(Step.STATEMENT, node));
                     } else {
-                        throw new IllegalStateException("Couldn't close statement brackets (" +current.getLine() +")");
+                        throw new IllegalStateException("Couldn't close statement brackets (" + tokens.line(0) +")");
                     }
                 } else {
-                    throw new IllegalStateException("Couldn't open while brackets (" +current.getLine() +")");
+                    throw new IllegalStateException("Couldn't open while brackets (" + tokens.line(0) +")");
                 }
-            } else if(current.getContentAsString().equals("if")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                current = tokens.get(pos++);
-                if(current.getContentAsString().equals("(")) {
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                    pos = parseCondition(tokens, pos, node);
-                    current = tokens.get(pos++);
-                    if(current.getContentAsString().equals(")")) {
-                        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                        pos = parseStatement(tokens, pos, node);
-                        if(pos < tokens.size()) {
-                            current = tokens.get(pos);
-                            if (current.getContentAsString().equals("else")) {
-                                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                                pos = parseStatement(tokens, pos + 1, node);
-                            }
-                        }
+            } else if(keyword == Keyword.IF) {
+                separator(tokens, node, lean);
+                if(tokens.is(0, TokenKind.LPAREN)) {
+                    separator(tokens, node, lean);
+                    parseCondition(tokens, node, lean);
+                    if(tokens.is(0, TokenKind.RPAREN)) {
+                        separator(tokens, node, lean);
+                        stack.push(new Pending(Step.ELSE, node));
+                        stack.push(new Pending(Step.STATEMENT, node));
                     } else {
-                        throw new IllegalStateException("Couldn't close statement brackets (" +current.getLine() +")");
+                        throw new IllegalStateException("Couldn't close statement brackets (" + tokens.line(0) +")");
                     }
                 } else {
-                    throw new IllegalStateException("Couldn't open if brackets (" +current.getLine() +")");
+                    throw new IllegalStateException("Couldn't open if brackets (" + tokens.line(0) +")");
                 }
             }
         }
-        root.addChild(node);
-        return pos;
     }
 
-    public static int parseCondition(List<Token> tokens, int pos, SyntaxTreeNode root) {
-        var node = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "");
-        Token current = tokens.get(pos++);
-        if(current.getTokenType() == TokenType.OPERATOR) {
-            if(current.getContentAsString().equals("!")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-            }
-            pos = parseCondition(tokens, pos, node);
-        }else if(current.getTokenType() == TokenType.LITERAL) {
-            if(current.getContentAsString().equals("true")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.BOOL, current.getContentAsString()));
-            } else if(current.getContentAsString().equals("false")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.BOOL, current.getContentAsString()));
-            } else {
-                pos = parseExpression(tokens, pos - 1, node);
-                current = tokens.get(pos++);
-                if(current.getTokenType() == TokenType.OPERATOR && current.getContentAsString().matches("==|!=|>|<|<=|>=")) {
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.COMP, current.getContentAsString()));
-                    pos = parseExpression(tokens, pos, node);
+    /**
+     * Throws if the next token can't start a statement, before a STMT is added for it, so the tree the
+     * recovery goes on with has no empty statements. A {@code }} that gets here doesn't close the block
+     * it is in, that is done by the block itself.
+     */
+    private static void checkStatementStart(TokenSource tokens) {
+        TokenKind current = tokens.kind(0);
+        if(current == TokenKind.KEYWORD) {
+            Keyword keyword = tokens.keyword(0);
+            if(!allowedKeywords.contains(keyword)) {
+                if(keyword == Keyword.UNDERSCORE) {
+                    throw new IllegalStateException("\"_\" is not a valid identifier!");
                 }
-            }
-        } else if(current.getTokenType() == TokenType.SEPARATOR) {
-            if(current.getContentAsString().equals("(")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                pos = parseCondition(tokens, pos, node);
-                current = tokens.get(pos++);
-                if(current.getContentAsString().equals(")")) {
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                } else {
-                    throw new IllegalStateException("Couldn't close brackets (" +current.getLine() +")");
+                if(keyword == Keyword.GOTO) {
+                    throw new UnsupportedOperationException("Java does not support goto operations");
                 }
-            } else {
-                throw new IllegalStateException("Couldn't open condition brackets (" +current.getLine() +")");
+                throw new UnsupportedOperationException("Can't use Java keyword " + tokens.text(0));
             }
-        } else if(current.getTokenType() == TokenType.IDENTIFIER &&
-                (tokens.get(pos).getContentAsString().equals(")") || tokens.get(pos).getContentAsString().matches("&&|&|\\|\\||\\|\\^"))){
-            pos = parseExpression(tokens, pos - 1, node);
-        } else if(current.getTokenType() == TokenType.IDENTIFIER) {
-            pos = parseExpression(tokens, pos - 1, node);
-            current = tokens.get(pos++);
-            if (current.getTokenType() == TokenType.OPERATOR && current.getContentAsString().matches("==|!=|<|>|<=|>=")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.COMP, current.getContentAsString()));
-                pos = parseExpression(tokens, pos, node);
-            }
-        } else {
-            throw new IllegalStateException("Unexpected symbol " + current.getContentAsString() + "at line " + current.getLine());
-        }
-        if(pos < tokens.size()) {
-            Token next = tokens.get(pos);
-            if (next.getTokenType() == TokenType.OPERATOR && next.getContentAsString().matches("&&|&|\\|\\||\\|\\^")) {
-                var temp = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "");
-                for (int i = 0; i < node.getNumberChildren(); i++) {
-                    temp.addChild(node.getChild(i));
-                }
-                node = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "");
-                node.addChild(temp);
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, next.getContentAsString()));
-                pos++;
-                pos = parseCondition(tokens, pos, node);
+            if(keyword == Keyword.RETURN || keyword == Keyword.WHILE || keyword == Keyword.IF) {
+                return;
             }
+        } else if(current == TokenKind.IDENTIFIER || current == TokenKind.SEMICOLON || current == TokenKind.LBRACE) {
+            return;
         }
-        root.addChild(node);
-        return pos;
+        // left for the recovery to skip
+        throw new IllegalStateException("Unexpected symbol " + tokens.text(0) + " at line " + tokens.line(0));
+    }
+
+    public static int parseCondition(List<Token> tokens, int pos, SyntaxTreeNode root) {
+        var source = new ListTokenSource(tokens, pos);
+        parseCondition(source, root);
+        return source.position();
+    }
+
+    public static void parseCondition(TokenSource tokens, SyntaxTreeNode root) {
+        parseCondition(tokens, root, false);
+    }
+
+    private static void parseCondition(TokenSource tokens, SyntaxTreeNode root, boolean lean) {
+        root.addChild(asCondition(parseOperand(tokens, true, lean)));
     }
 
     public static int parseIdentifierStatement(List<Token> tokens, int pos, SyntaxTreeNode root) {
-        Token current = tokens.get(pos++);
-        Token next = tokens.get(pos++);
-        if(next.getContentAsString().equals(":")) {
-            root.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.LABEL, current.getContentAsString()));
-            root.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, next.getContentAsString()));
-            pos = parseStatement(tokens, pos, root);
-        } else if(next.getContentAsString().equals("(")){
-            var temp = new SyntaxTreeNode(SyntaxTreeNode.Type.FUNCCALL, "");
-            temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, current.getContentAsString()));
-            temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, next.getContentAsString()));
-            if(!tokens.get(pos).getContentAsString().equals(")")) {
-                pos = parseExpression(tokens, pos, temp);
-                while (!tokens.get(pos).getContentAsString().equals(")")) {
-                    pos = parseExpression(tokens, pos + 1, temp);
-                    temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, tokens.get(pos++).getContentAsString()));
-                }
+        var source = new ListTokenSource(tokens, pos);
+        parseIdentifierStatement(source, root);
+        return source.position();
+    }
+
+    public static void parseIdentifierStatement(TokenSource tokens, SyntaxTreeNode root) {
+        Deque<Pending> stack = new ArrayDeque<>();
+        parseIdentifierStatement(tokens, root, stack, false);
+        parsePending(tokens, stack, null, false, false);
+    }
+
+    /**
+     * @param root the STMT of the statement, in a lean tree the node the statement is added to
+     */
+    private static void parseIdentifierStatement(TokenSource tokens, SyntaxTreeNode root, Deque<Pending> stack,
+                                                 boolean lean) {
+        int line = tokens.line(0);
+        var name = identifier(tokens, SyntaxTreeNode.Type.NAME);
+        TokenKind next = tokens.kind(0);
+        if(next == TokenKind.COLON) {
+            if(lean) {
+                var statement = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, "");
+                root.addChild(statement);
+                root = statement;
             }
-            temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
+            root.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.LABEL, name.getValue(), name.getSymbol()));
+            separator(tokens, root, lean);
+            stack.push(new Pending(Step.STATEMENT, root));
+        } else if(next == TokenKind.LPAREN){
+            var temp = new SyntaxTreeNode(SyntaxTreeNode.Type.FUNCCALL, "");
+            temp.addChild(name);
+            separator(tokens, temp, lean);
+            parseArguments(tokens, temp, lean);
             root.addChild(temp);
-            root.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
-        } else if(next.getContentAsString().equals("=")) {
+            separator(tokens, root, lean);
+        } else if(next == TokenKind.ASSIGN) {
             var temp = new SyntaxTreeNode(SyntaxTreeNode.Type.ASS, "");
-            temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, current.getContentAsString()));
+            temp.addChild(name);
             // =
-            temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, next.getContentAsString()));
-            pos = parseExpression(tokens, pos, temp);
+            separator(tokens, temp, lean);
+            parseExpression(tokens, temp, lean);
             root.addChild(temp);
             // ;
-            root.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
+            separator(tokens, root, lean);
         } else {
-            throw new IllegalStateException("Not a statement (" + current.getLine() + ")");
+            throw new IllegalStateException("Not a statement (" + line + ")");
         }
-        return pos;
+    }
+
+    private static void parseArguments(TokenSource tokens, SyntaxTreeNode call, boolean lean) {
+        if(!tokens.is(0, TokenKind.RPAREN)) {
+            parseExpression(tokens, call, lean);
+            while (tokens.is(0, TokenKind.COMMA)) {
+                separator(tokens, call, lean);
+                parseExpression(tokens, call, lean);
+            }
+        }
+        separator(tokens, call, lean);
     }
 
     public static int parseExpression(List<Token> tokens, int pos, SyntaxTreeNode root) {
-        SyntaxTreeNode node = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
-        Token current = tokens.get(pos++);
-        Token next = tokens.get(pos);
-        if(current.getTokenType() == TokenType.LITERAL) {
-            if(!current.getContentAsString().matches("true|false")) {
-                if (next.getTokenType() == TokenType.OPERATOR && next.getContentAsString().matches("[+\\-*/%&|^]")) {
-                    var temp = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
-                    temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, current.getContentAsString()));
-                    node.addChild(temp);
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, next.getContentAsString()));
-                    pos++;
-                    pos = parseExpression(tokens, pos, node);
-                } else {
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, current.getContentAsString()));
-                }
+        var source = new ListTokenSource(tokens, pos);
+        parseExpression(source, root);
+        return source.position();
+    }
+
+    public static void parseExpression(TokenSource tokens, SyntaxTreeNode root) {
+        parseExpression(tokens, root, false);
+    }
+
+    private static void parseExpression(TokenSource tokens, SyntaxTreeNode root, boolean lean) {
+        root.addChild(asExpression(parseOperand(tokens, false, lean)));
+    }
+
+    /**
+     * Parses int and boolean expressions alike by precedence climbing. The operand is parsed first,
+     * then every following operator binding at least as strong as the minimum binding power is applied,
+     * with its right operand parsed at the next higher binding power.
+     * <p>
+     * Runs of the same associative operator are collected and built into a balanced tree, all other
+     * operators associate to the left.
+     * <p>
+     * Where a recursive descent parser would call itself for a right operand, a parenthesis or a call
+     * argument, a new {@link Operand} frame is pushed onto an explicit stack instead. Its result is handed
+     * back to the frame below once it is done, so deeply nested expressions can't overflow the stack.
+     *
+     * @param condition whether the surrounding context expects a boolean, which decides how bitwise
+     *                  operators on plain names are read
+     * @return an EXPR or a COND node, depending on the kind of the outermost operator
+     */
+    private static SyntaxTreeNode parseOperand(TokenSource tokens, boolean condition, boolean lean) {
+        Deque<Operand> stack = new ArrayDeque<>();
+        var frame = new Operand(1, condition, lean);
+        SyntaxTreeNode result = null;
+        while(true) {
+            Operand child;
+            if(result != null) {
+                child = resume(tokens, frame, result);
+                result = null;
             } else {
-                pos = parseCondition(tokens, pos - 1, node);
+                child = parseUnary(tokens, frame);
             }
-        } else if(current.getTokenType() == TokenType.IDENTIFIER) {
-            if(tokens.get(pos).getTokenType() == TokenType.SEPARATOR && tokens.get(pos).getContentAsString().equals("(")) {
-                var temp = new SyntaxTreeNode(SyntaxTreeNode.Type.FUNCCALL, "");
-                temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, current.getContentAsString()));
-                temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
-                if(!tokens.get(pos).getContentAsString().equals(")")) {
-                    pos = parseExpression(tokens, pos, temp);
-                    while (!tokens.get(pos).getContentAsString().equals(")")) {
-                        pos = parseExpression(tokens, pos + 1, temp);
-                        temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, tokens.get(pos++).getContentAsString()));
-                    }
-                }
-                temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
-                node.addChild(temp);
-            } else {
-                if (next.getTokenType() == TokenType.OPERATOR && next.getContentAsString().matches("[+\\-*/%&|^]")) {
-                    var temp = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
-                    temp.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, current.getContentAsString()));
-                    node.addChild(temp);
-                    pos++;
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, next.getContentAsString()));
-                    pos = parseExpression(tokens, pos, node);
-                } else {
-                    node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, current.getContentAsString()));
-                }
+            if(child == null) {
+                child = parseOperator(tokens, frame);
             }
-        } else if(current.getTokenType() == TokenType.SEPARATOR && current.getContentAsString().equals("(")) {
-            node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-            pos = parseExpression(tokens, pos, node);
-            current = tokens.get(pos++);
-            if(current.getTokenType() == TokenType.SEPARATOR && current.getContentAsString().equals(")")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
+            if(child != null) {
+                stack.push(frame);
+                frame = child;
+            } else if(stack.isEmpty()) {
+                return frame.left;
             } else {
-                throw new IllegalStateException("Couldn't close expression brackets (" +current.getLine() +")");
+                result = frame.left;
+                frame = stack.pop();
             }
-        } else if(current.getTokenType() == TokenType.OPERATOR && current.getContentAsString().equals("-")) {
-            if(tokens.get(pos).getTokenType() == TokenType.LITERAL && !tokens.get(pos).getContentAsString().matches("true|false")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, current.getContentAsString() + tokens.get(pos).getContentAsString()));
-                pos++;
+        }
+    }
+
+    /**
+     * Applies the next operator if it binds strong enough for the frame.
+     *
+     * @return the frame for its right operand, null if the frame is done
+     */
+    private static Operand parseOperator(TokenSource tokens, Operand frame) {
+        if(frame.left == null || !tokens.hasNext()) {
+            return null;
+        }
+        TokenKind operator = tokens.kind(0);
+        int bindingPower = bindingPowers[operator.ordinal()];
+        if(bindingPower == 0 || bindingPower < frame.minBindingPower) {
+            return null;
+        }
+        frame.operator = operator;
+        if(associative.contains(operator)) {
+            frame.waiting = Waiting.RUN;
+            frame.operands = new ArrayList<>();
+            frame.operands.add(frame.left);
+            if(frame.lean) {
+                tokens.advance();
             } else {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                pos = parseExpression(tokens, pos, node);
+                frame.symbols = new ArrayList<>();
+                frame.symbols.add(symbol(tokens));
             }
         } else {
-            pos = parseExpression(tokens, pos, node);
-            if(node.getChild(node.getNumberChildren() - 1).getType() == SyntaxTreeNode.Type.COND) {
-                throw new IllegalStateException();
+            frame.waiting = Waiting.RIGHT;
+            if(frame.lean) {
+                tokens.advance();
+            } else if(comparators.contains(operator)) {
+                frame.pending = new SyntaxTreeNode(SyntaxTreeNode.Type.COMP, operator.getText());
+                tokens.advance();
+            } else {
+                frame.pending = symbol(tokens);
+            }
+        }
+        return new Operand(bindingPower + 1, frame.condition, frame.lean);
+    }
+
+    /**
+     * Hands the result of a nested frame back to the frame that pushed it.
+     *
+     * @return the frame for another nested part, null if the frame can go on with its operators
+     */
+    private static Operand resume(TokenSource tokens, Operand frame, SyntaxTreeNode result) {
+        switch (frame.waiting) {
+            case PAREN -> {
+                if(!tokens.is(0, TokenKind.RPAREN)) {
+                    throw new IllegalStateException("Couldn't close brackets (" + tokens.line(0) +")");
+                }
+                if(frame.lean) {
+                    tokens.advance();
+                    frame.complete(result);
+                    break;
+                }
+                var node = new SyntaxTreeNode(result.getType(), "");
+                node.addChild(frame.pending);
+                node.addChild(result);
+                node.addChild(symbol(tokens));
+                frame.complete(node);
             }
-            current = tokens.get(pos++);
-            if(current.getTokenType() == TokenType.OPERATOR && current.getContentAsString().matches("[+\\-*/%&|^]")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, current.getContentAsString()));
-                pos = parseExpression(tokens, pos, node);
-                if(node.getChild(node.getNumberChildren() - 1).getType() == SyntaxTreeNode.Type.COND) {
-                    throw new IllegalStateException();
+            case ARGUMENT -> {
+                SyntaxTreeNode call = frame.pending;
+                call.addChild(asExpression(result));
+                if(tokens.is(0, TokenKind.COMMA)) {
+                    separator(tokens, call, frame.lean);
+                    return new Operand(1, false, frame.lean);
                 }
-            } else if(tokens.get(pos).getTokenType() == TokenType.SEPARATOR && tokens.get(pos).getContentAsString().equals("(")) {
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
-                node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, tokens.get(pos++).getContentAsString()));
+                separator(tokens, call, frame.lean);
+                var node = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+                node.addChild(call);
+                frame.complete(node);
             }
+            case RUN -> {
+                frame.operands.add(result);
+                if(tokens.hasNext() && tokens.kind(0) == frame.operator) {
+                    if(frame.symbols != null) {
+                        frame.symbols.add(symbol(tokens));
+                    } else {
+                        tokens.advance();
+                    }
+                    return new Operand(bindingPowers[frame.operator.ordinal()] + 1, frame.condition, frame.lean);
+                }
+                frame.left = balance(frame.operator, frame.operands, frame.symbols, 0, frame.operands.size(), frame.condition);
+                frame.operands = null;
+                frame.symbols = null;
+            }
+            case RIGHT -> frame.left = combine(frame.operator, frame.left, frame.pending, result, frame.condition);
         }
-        root.addChild(node);
-        return pos;
-    }
-
-    private final static List<String> types = List.of(
-            "int",
-            "double",
-            "boolean",
-            "char",
-            "byte",
-            "short",
-            "long",
-            "float"
+        frame.waiting = null;
+        frame.pending = null;
+        return null;
+    }
+
+    /**
+     * Builds operands {@code from} to {@code to} joined by the same associative operator into a tree
+     * of logarithmic depth. The operands keep their order, so they are still evaluated left to right.
+     *
+     * @param symbols the operator symbols between the operands, null for a lean tree
+     */
+    private static SyntaxTreeNode balance(TokenKind operator, List<SyntaxTreeNode> operands, List<SyntaxTreeNode> symbols,
+                                          int from, int to, boolean condition) {
+        if(to - from == 1) {
+            return operands.get(from);
+        }
+        int middle = (from + to) >>> 1;
+        SyntaxTreeNode left = balance(operator, operands, symbols, from, middle, condition);
+        SyntaxTreeNode right = balance(operator, operands, symbols, middle, to, condition);
+        return combine(operator, left, symbols == null ? null : symbols.get(middle - 1), right, condition);
+    }
+
+    /**
+     * @param symbol the symbol of the operator, null to keep the operator as value of the node instead
+     *               as in a lean tree
+     */
+    private static SyntaxTreeNode combine(TokenKind operator, SyntaxTreeNode left, SyntaxTreeNode symbol,
+                                          SyntaxTreeNode right, boolean condition) {
+        boolean bool = switch (operator) {
+            case AND_AND, OR_OR, EQ, NEQ, LESS, LEQ, GREATER, GEQ -> true;
+            case AND, OR, XOR -> condition || isCondition(left) || isCondition(right);
+            default -> false;
+        };
+        String value = symbol == null ? operator.getText() : "";
+        SyntaxTreeNode node;
+        if(comparators.contains(operator)) {
+            node = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, value);
+            left = asExpression(left);
+            right = asExpression(right);
+        } else if(bool) {
+            node = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, value);
+            left = asCondition(left);
+            right = asCondition(right);
+        } else {
+            node = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, value);
+            left = asExpression(left);
+            right = asExpression(right);
+        }
+        node.addChild(left);
+        if(symbol != null) {
+            node.addChild(symbol);
+        }
+        node.addChild(right);
+        return node;
+    }
+
+    /**
+     * Parses the operand of a fresh frame with all of its prefix operators, which are collected in a
+     * loop and applied once the operand is complete.
+     *
+     * @return the frame for a parenthesized expression or a call argument, null if the operand is done
+     */
+    private static Operand parseUnary(TokenSource tokens, Operand frame) {
+        while(tokens.is(0, TokenKind.NOT) || (tokens.is(0, TokenKind.MINUS) && !tokens.is(1, TokenKind.NUMBER))) {
+            frame.prefix(symbol(tokens));
+        }
+        if(tokens.is(0, TokenKind.LPAREN)) {
+            frame.waiting = Waiting.PAREN;
+            if(frame.lean) {
+                tokens.advance();
+            } else {
+                frame.pending = symbol(tokens);
+            }
+            return new Operand(1, frame.condition, frame.lean);
+        }
+        if(tokens.is(0, TokenKind.IDENTIFIER)) {
+            var name = identifier(tokens, SyntaxTreeNode.Type.NAME);
+            var node = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+            if(!tokens.hasNext() || !tokens.is(0, TokenKind.LPAREN)) {
+                node.addChild(name);
+                frame.complete(node);
+                return null;
+            }
+            var call = new SyntaxTreeNode(SyntaxTreeNode.Type.FUNCCALL, "");
+            call.addChild(name);
+            separator(tokens, call, frame.lean);
+            if(!tokens.is(0, TokenKind.RPAREN)) {
+                frame.waiting = Waiting.ARGUMENT;
+                frame.pending = call;
+                return new Operand(1, false, frame.lean);
+            }
+            separator(tokens, call, frame.lean);
+            node.addChild(call);
+            frame.complete(node);
+            return null;
+        }
+        frame.complete(parsePrimary(tokens));
+        return null;
+    }
+
+    private static SyntaxTreeNode parsePrimary(TokenSource tokens) {
+        TokenKind current = tokens.kind(0);
+        SyntaxTreeNode node;
+        // literals carry their position too, so the emitter can point at a number that doesn't fit
+        int line = tokens.line(0);
+        int column = tokens.column(0);
+        SyntaxTreeNode literal;
+        if(current == TokenKind.NUMBER) {
+            node = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+            literal = new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, tokens.nextText());
+        } else if(current == TokenKind.MINUS) {
+            tokens.advance();
+            node = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+            literal = new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "-" + tokens.nextText());
+        } else if(current == TokenKind.BOOLEAN) {
+            node = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "");
+            literal = new SyntaxTreeNode(SyntaxTreeNode.Type.BOOL, tokens.nextText());
+        } else {
+            throw new IllegalStateException("Unexpected symbol " + tokens.text(0) + " at line " + tokens.line(0));
+        }
+        literal.setPosition(line, column);
+        node.addChild(literal);
+        return node;
+    }
+
+    private static boolean isCondition(SyntaxTreeNode node) {
+        return node.getType() == SyntaxTreeNode.Type.COND;
+    }
+
+    private static SyntaxTreeNode asCondition(SyntaxTreeNode node) {
+        if(isCondition(node)) {
+            return node;
+        }
+        var wrapper = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "");
+        wrapper.addChild(node);
+        return wrapper;
+    }
+
+    private static SyntaxTreeNode asExpression(SyntaxTreeNode node) {
+        if(node.getType() == SyntaxTreeNode.Type.EXPR) {
+            return node;
+        }
+        var wrapper = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+        wrapper.addChild(node);
+        return wrapper;
+    }
+
+    /**
+     * Consumes the next token as a SYMBOL node. Separators and operators reuse the constant text of
+     * their kind instead of copying it out of the source.
+     */
+    private static SyntaxTreeNode symbol(TokenSource tokens) {
+        var node = new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, text(tokens));
+        tokens.advance();
+        return node;
+    }
+
+    /**
+     * Consumes the next token, which only a debug tree keeps as a SYMBOL of the node.
+     */
+    private static void separator(TokenSource tokens, SyntaxTreeNode node, boolean lean) {
+        if(lean) {
+            tokens.advance();
+        } else {
+            node.addChild(symbol(tokens));
+        }
+    }
+
+    private static String text(TokenSource tokens) {
+        TokenKind kind = tokens.kind(0);
+        if (kind == TokenKind.KEYWORD) {
+            return tokens.keyword(0).getText();
+        }
+        String text = kind.getText();
+        return text == null ? tokens.text(0) : text;
+    }
+
+    /**
+     * Consumes the next token as a node carrying its symbol ID and position. The name is the one
+     * interned in the symbol table, so all nodes of a variable share a single String.
+     */
+    private static SyntaxTreeNode identifier(TokenSource tokens, SyntaxTreeNode.Type type) {
+        if (!tokens.is(0, TokenKind.IDENTIFIER)) {
+            return new SyntaxTreeNode(type, tokens.nextText());
+        }
+        int symbol = tokens.value(0);
+        var node = new SyntaxTreeNode(type, tokens.symbols().name(symbol), symbol);
+        node.setPosition(tokens.line(0), tokens.column(0));
+        tokens.advance();
+        return node;
+    }
+
+    private static final int[] bindingPowers = new int[TokenKind.values().length];
+
+    static {
+        bindingPowers[TokenKind.OR_OR.ordinal()] = 1;
+        bindingPowers[TokenKind.AND_AND.ordinal()] = 2;
+        bindingPowers[TokenKind.OR.ordinal()] = 3;
+        bindingPowers[TokenKind.XOR.ordinal()] = 4;
+        bindingPowers[TokenKind.AND.ordinal()] = 5;
+        bindingPowers[TokenKind.EQ.ordinal()] = 6;
+        bindingPowers[TokenKind.NEQ.ordinal()] = 6;
+        bindingPowers[TokenKind.LESS.ordinal()] = 7;
+        bindingPowers[TokenKind.LEQ.ordinal()] = 7;
+        bindingPowers[TokenKind.GREATER.ordinal()] = 7;
+        bindingPowers[TokenKind.GEQ.ordinal()] = 7;
+        bindingPowers[TokenKind.PLUS.ordinal()] = 8;
+        bindingPowers[TokenKind.MINUS.ordinal()] = 8;
+        bindingPowers[TokenKind.STAR.ordinal()] = 9;
+        bindingPowers[TokenKind.SLASH.ordinal()] = 9;
+        bindingPowers[TokenKind.PERCENT.ordinal()] = 9;
+    }
+
+    private static final Set<TokenKind> associative = EnumSet.of(
+            TokenKind.PLUS,
+            TokenKind.STAR,
+            TokenKind.AND,
+            TokenKind.OR,
+            TokenKind.XOR,
+            TokenKind.AND_AND,
+            TokenKind.OR_OR
+    );
+
+    private static final Set<TokenKind> comparators = EnumSet.of(
+            TokenKind.EQ,
+            TokenKind.NEQ,
+            TokenKind.LESS,
+            TokenKind.GREATER,
+            TokenKind.LEQ,
+            TokenKind.GEQ
+    );
+
+    private final static Set<Keyword> types = EnumSet.of(
+            Keyword.INT,
+            Keyword.DOUBLE,
+            Keyword.BOOLEAN,
+            Keyword.CHAR,
+            Keyword.BYTE,
+            Keyword.SHORT,
+            Keyword.LONG,
+            Keyword.FLOAT
     );
 
-    private static final List<String> allowedKeywords = List.of(
-            "boolean",
-            "else",
-            "for",
-            "if",
-            "int",
-            "return",
-            "while"
+    private static final Set<Keyword> allowedKeywords = EnumSet.of(
+            Keyword.BOOLEAN,
+            Keyword.ELSE,
+            Keyword.FOR,
+            Keyword.IF,
+            Keyword.INT,
+            Keyword.RETURN,
+            Keyword.WHILE
     );
+
+    private enum Step {
+        /**
+         * A declaration or a statement.
+         */
+        LINE,
+        STATEMENT,
+        /**
+         * The rest of a block after its opening brace.
+         */
+        BLOCK,
+        /**
+         * The optional else branch of an if statement.
+         */
+        ELSE
+    }
+
+    private record Pending(Step step, SyntaxTreeNode node) {
+
+    }
+
+    /**
+     * A block skipped by {@link #parseLazy(TokenBuffer, Diagnostics, boolean)}, parsed once its statements
+     * are asked for. The blocks nested in it are skipped again.
+     */
+    private record LazyBlock(BufferTokenSource tokens, Diagnostics diagnostics, boolean lean)
+            implements SyntaxTreeNode.Body {
+        @Override
+        public void build(SyntaxTreeNode node) {
+            separator(tokens, node, lean);
+            parseNested(tokens, node, Step.BLOCK, diagnostics, lean, true);
+        }
+    }
+
+    /**
+     * What the nested frame on top of an {@link Operand} is parsing for it.
+     */
+    private enum Waiting {
+        PAREN,
+        ARGUMENT,
+        RUN,
+        RIGHT
+    }
+
+    /**
+     * One level of {@link #parseOperand(TokenSource, boolean)}: an operand, its pending prefixes and the
+     * operator it is currently waiting on a nested frame for.
+     */
+    private static final class Operand {
+        private final int minBindingPower;
+        private final boolean condition;
+        private final boolean lean;
+        private List<SyntaxTreeNode> prefixes;
+        private SyntaxTreeNode left;
+        private Waiting waiting;
+        /**
+         * The open parenthesis, the call or the operator symbol the nested frame belongs to. A lean
+         * tree only keeps the call.
+         */
+        private SyntaxTreeNode pending;
+        private TokenKind operator;
+        private List<SyntaxTreeNode> operands;
+        private List<SyntaxTreeNode> symbols;
+
+        private Operand(int minBindingPower, boolean condition, boolean lean) {
+            this.minBindingPower = minBindingPower;
+            this.condition = condition;
+            this.lean = lean;
+        }
+
+        void prefix(SyntaxTreeNode symbol) {
+            if(prefixes == null) {
+                prefixes = new ArrayList<>();
+            }
+            prefixes.add(symbol);
+        }
+
+        /**
+         * Applies the prefixes to the operand from the inside out.
+         */
+        void complete(SyntaxTreeNode operand) {
+            if(prefixes != null) {
+                for (int i = prefixes.size() - 1; i >= 0; i--) {
+                    SyntaxTreeNode prefix = prefixes.get(i);
+                    SyntaxTreeNode node;
+                    if(prefix.getValue().equals("!")) {
+                        node = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, lean ? "!" : "");
+                        operand = asCondition(operand);
+                    } else {
+                        node = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, lean ? "-" : "");
+                        operand = asExpression(operand);
+                    }
+                    if(!lean) {
+                        node.addChild(prefix);
+                    }
+                    node.addChild(operand);
+                    operand = node;
+                }
+                prefixes = null;
+            }
+            left = operand;
+        }
+    }
 }
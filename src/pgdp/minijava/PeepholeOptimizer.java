@@ -0,0 +1,197 @@
+package pgdp.minijava;
+
+import java.util.Arrays;
+
+/**
+ * Runs a set of {@link Rule}s over the code until none of them applies any more. Each pass slides a
+ * {@link Window} over the instructions: at every position the rules are tried in order, and the first one
+ * that matches replaces the instructions at the start of the window. The code is compacted in place, so a
+ * rule may only ever shrink it or keep its length. Labels merged by a pass are resolved before the next.
+ */
+public class PeepholeOptimizer {
+    private final Rule[] rules;
+
+    public PeepholeOptimizer(Rule... rules) {
+        this.rules = rules.clone();
+    }
+
+    /**
+     * @return an optimizer running all of the {@link PeepholeRule}s
+     */
+    public static PeepholeOptimizer standard() {
+        return new PeepholeOptimizer(PeepholeRule.values());
+    }
+
+    /**
+     * @return whether the code changed
+     */
+    public boolean optimize(CodeBuffer code) {
+        var window = new Window(code);
+        boolean changed = false;
+        while (window.pass(rules)) {
+            LabelResolver.resolve(code);
+            changed = true;
+        }
+        return changed;
+    }
+
+    public interface Rule {
+        /**
+         * Rewrites the instructions at the start of the window by emitting their replacement into it.
+         *
+         * @return the number of instructions replaced, at least as many as were emitted, or 0 if the rule
+         * doesn't match
+         */
+        int apply(Window window);
+    }
+
+    /**
+     * The instructions from the position of a pass on, and the replacement a rule emits for them.
+     */
+    public static final class Window {
+        private final CodeBuffer code;
+        private int position;
+        private int size;
+        private Opcode[] opcodes = new Opcode[4];
+        private int[] operands = new int[4];
+        private int emitted;
+        /**
+         * For each label the label a jump to it ends up at.
+         */
+        private int[] targets = new int[0];
+
+        private Window(CodeBuffer code) {
+            this.code = code;
+        }
+
+        /**
+         * @return the opcode of the instruction at the offset from the start of the window, null past the
+         * end of the code
+         */
+        public Opcode opcode(int offset) {
+            return position + offset < code.size() ? code.opcode(position + offset) : null;
+        }
+
+        public int operand(int offset) {
+            return code.operand(position + offset);
+        }
+
+        /**
+         * @return whether the instruction at the offset pushes a value without any other effect
+         */
+        public boolean isPush(int offset) {
+            Opcode opcode = opcode(offset);
+            return opcode == Opcode.CONST || opcode == Opcode.LOAD || opcode == Opcode.TRUE || opcode == Opcode.FALSE;
+        }
+
+        /**
+         * @return the label a jump to the label ends up at, following every label that is directly followed
+         * by a JUMP
+         */
+        public int target(int label) {
+            return targets[label];
+        }
+
+        public void emit(Opcode opcode) {
+            emit(opcode, 0);
+        }
+
+        public void emit(Opcode opcode, int operand) {
+            if (emitted == opcodes.length) {
+                opcodes = Arrays.copyOf(opcodes, emitted * 2);
+                operands = Arrays.copyOf(operands, emitted * 2);
+            }
+            opcodes[emitted] = opcode;
+            operands[emitted] = operand;
+            emitted++;
+        }
+
+        /**
+         * @return whether any rule applied
+         */
+        private boolean pass(Rule[] rules) {
+            resolveTargets();
+            boolean changed = false;
+            position = 0;
+            size = 0;
+            while (position < code.size()) {
+                int replaced = 0;
+                for (Rule rule : rules) {
+                    emitted = 0;
+                    replaced = rule.apply(this);
+                    if (replaced > 0) {
+                        break;
+                    }
+                }
+                if (replaced == 0) {
+                    code.set(size++, code.opcode(position), code.operand(position));
+                    position++;
+                    continue;
+                }
+                if (emitted > replaced || position + replaced > code.size()) {
+                    throw new IllegalStateException("A rule may not grow the code or replace past its end");
+                }
+                // the replacement ends before the instructions that are still to be read
+                for (int i = 0; i < emitted; i++) {
+                    code.set(size++, opcodes[i], operands[i]);
+                }
+                position += replaced;
+                changed = true;
+            }
+            code.truncate(size);
+            return changed;
+        }
+
+        /**
+         * Follows the chains of labels that are directly followed by a JUMP. A label on a cycle of such
+         * jumps stays its own target.
+         */
+        private void resolveTargets() {
+            int labels = code.labelCount();
+            int[] next = new int[labels];
+            for (int i = 0; i < labels; i++) {
+                next[i] = i;
+            }
+            for (int i = 0; i < code.size(); i++) {
+                if (code.opcode(i) != Opcode.LABEL) {
+                    continue;
+                }
+                int j = i + 1;
+                while (j < code.size() && code.opcode(j) == Opcode.LABEL) {
+                    j++;
+                }
+                if (j < code.size() && code.opcode(j) == Opcode.JUMP) {
+                    next[code.operand(i)] = code.operand(j);
+                }
+            }
+            targets = new int[labels];
+            Arrays.fill(targets, -1);
+            int[] path = new int[labels];
+            boolean[] onPath = new boolean[labels];
+            for (int i = 0; i < labels; i++) {
+                int length = 0;
+                int label = i;
+                while (targets[label] < 0 && next[label] != label && !onPath[label]) {
+                    onPath[label] = true;
+                    path[length++] = label;
+                    label = next[label];
+                }
+                int target;
+                if (targets[label] >= 0) {
+                    target = targets[label];
+                } else if (onPath[label]) {
+                    target = -1;
+                } else {
+                    target = label;
+                }
+                if (target == label) {
+                    targets[label] = label;
+                }
+                for (int k = 0; k < length; k++) {
+                    targets[path[k]] = target < 0 ? path[k] : target;
+                    onPath[path[k]] = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package pgdp.minijava;
+
+/**
+ * The rules of the {@link PeepholeOptimizer#standard() standard} optimizer. The miniJVM has neither a DUP
+ * nor a jump on true, so every rule gets by with the instructions it has.
+ */
+public enum PeepholeRule implements PeepholeOptimizer.Rule {
+    /**
+     * {@code LOAD n; STORE n} stores the value the slot already holds.
+     */
+    REDUNDANT_STORE {
+        @Override
+        public int apply(PeepholeOptimizer.Window window) {
+            if (window.opcode(0) == Opcode.LOAD && window.opcode(1) == Opcode.STORE
+                    && window.operand(0) == window.operand(1)) {
+                return 2;
+            }
+            return 0;
+        }
+    },
+    /**
+     * {@code CONST 0; ADD}, {@code CONST 0; SUB}, {@code CONST 1; MUL} and {@code CONST 1; DIV} leave the
+     * value as it is.
+     */
+    NEUTRAL_OPERAND {
+        @Override
+        public int apply(PeepholeOptimizer.Window window) {
+            if (window.opcode(0) != Opcode.CONST) {
+                return 0;
+            }
+            int value = window.operand(0);
+            Opcode next = window.opcode(1);
+            if (value == 0 && (next == Opcode.ADD || next == Opcode.SUB)
+                    || value == 1 && (next == Opcode.MUL || next == Opcode.DIV)) {
+                return 2;
+            }
+            return 0;
+        }
+    },
+    /**
+     * Folds a NOT into the instruction in front of it: {@code EQ; NOT} is {@code NEQ}, {@code TRUE; NOT}
+     * is {@code FALSE}, two NOTs cancel out.
+     */
+    NEGATION {
+        @Override
+        public int apply(PeepholeOptimizer.Window window) {
+            if (window.opcode(1) != Opcode.NOT) {
+                return 0;
+            }
+            switch (window.opcode(0)) {
+                case EQ -> window.emit(Opcode.NEQ);
+                case NEQ -> window.emit(Opcode.EQ);
+                case TRUE -> window.emit(Opcode.FALSE);
+                case FALSE -> window.emit(Opcode.TRUE);
+                case NOT -> {
+                }
+                default -> {
+                    return 0;
+                }
+            }
+            return 2;
+        }
+    },
+    /**
+     * Turns {@code a > b}, emitted as {@code LEQ; NOT}, into {@code b < a} when both operands are plain
+     * pushes, and {@code a >= b} into {@code b <= a}.
+     */
+    SWAPPED_COMPARISON {
+        @Override
+        public int apply(PeepholeOptimizer.Window window) {
+            if (!window.isPush(0) || !window.isPush(1) || window.opcode(3) != Opcode.NOT) {
+                return 0;
+            }
+            Opcode comparison = window.opcode(2);
+            if (comparison != Opcode.LEQ && comparison != Opcode.LESS) {
+                return 0;
+            }
+            window.emit(window.opcode(1), window.operand(1));
+            window.emit(window.opcode(0), window.operand(0));
+            window.emit(comparison == Opcode.LEQ ? Opcode.LESS : Opcode.LEQ);
+            return 4;
+        }
+    },
+    /**
+     * {@code TRUE; FJUMP L} never jumps and {@code FALSE; FJUMP L} always does.
+     */
+    CONSTANT_BRANCH {
+        @Override
+        public int apply(PeepholeOptimizer.Window window) {
+            if (window.opcode(1) != Opcode.FJUMP) {
+                return 0;
+            }
+            if (window.opcode(0) == Opcode.TRUE) {
+                return 2;
+            }
+            if (window.opcode(0) == Opcode.FALSE) {
+                window.emit(Opcode.JUMP, window.operand(1));
+                return 2;
+            }
+            return 0;
+        }
+    },
+    /**
+     * {@code JUMP L; L:} jumps to where it would have gone anyway.
+     */
+    JUMP_TO_NEXT {
+        @Override
+        public int apply(PeepholeOptimizer.Window window) {
+            if (window.opcode(0) == Opcode.JUMP && window.opcode(1) == Opcode.LABEL
+                    && window.operand(0) == window.operand(1)) {
+                window.emit(Opcode.LABEL, window.operand(1));
+                return 2;
+            }
+            return 0;
+        }
+    },
+    /**
+     * Sends a jump to a label that is directly followed by a JUMP to the target of that JUMP instead.
+     */
+    JUMP_THREADING {
+        @Override
+        public int apply(PeepholeOptimizer.Window window) {
+            Opcode opcode = window.opcode(0);
+            if (opcode == null || !opcode.isJump() || window.target(window.operand(0)) == window.operand(0)) {
+                return 0;
+            }
+            window.emit(opcode, window.target(window.operand(0)));
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package pgdp.minijava;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Gives variables whose lifetimes don't overlap the same slot. The emitter gives every declared variable
+ * a slot of its own and allocates them one declaration at a time; this pass computes where each slot of
+ * the code is live on the control flow graph, turns that into an interval of instructions and assigns
+ * the slots anew by linear scan. All ALLOCs are replaced by a single one for the whole frame in front of
+ * the code.
+ * <p>
+ * A slot that is read before it is written on some path holds the 0 it was allocated with, so it is live
+ * from the start of the program and never shares its slot with one that is written before.
+ */
+public final class SlotAllocator {
+    private SlotAllocator() {
+
+    }
+
+    /**
+     * @return the number of slots the code allocates afterwards
+     */
+    public static int allocate(CodeBuffer code) {
+        int slots = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Opcode opcode = code.opcode(i);
+            if (opcode == Opcode.LOAD || opcode == Opcode.STORE) {
+                slots = Math.max(slots, code.operand(i) + 1);
+            }
+        }
+        var graph = new FlowGraph(code);
+        int[] starts = new int[slots];
+        int[] ends = new int[slots];
+        Arrays.fill(starts, Integer.MAX_VALUE);
+        Arrays.fill(ends, -1);
+        graph.liveRanges(slots, starts, ends);
+
+        Integer[] order = new Integer[slots];
+        int used = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (ends[slot] >= 0) {
+                order[used++] = slot;
+            }
+        }
+        Arrays.sort(order, 0, used, (a, b) -> starts[a] != starts[b] ? Integer.compare(starts[a], starts[b]) : a - b);
+        int[] assigned = new int[slots];
+        int frame = 0;
+        PriorityQueue<Integer> active = new PriorityQueue<>((a, b) -> Integer.compare(ends[a], ends[b]));
+        PriorityQueue<Integer> free = new PriorityQueue<>();
+        for (int k = 0; k < used; k++) {
+            int slot = order[k];
+            while (!active.isEmpty() && ends[active.peek()] < starts[slot]) {
+                free.add(assigned[active.poll()]);
+            }
+            assigned[slot] = free.isEmpty() ? frame++ : free.poll();
+            active.add(slot);
+        }
+        rewrite(code, assigned, frame);
+        return frame;
+    }
+
+    /**
+     * Renames the slots, drops the ALLOCs and allocates the frame in front of the code.
+     */
+    private static void rewrite(CodeBuffer code, int[] assigned, int frame) {
+        int[] instructions = new int[code.size() * 2];
+        int size = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Opcode opcode = code.opcode(i);
+            if (opcode == Opcode.ALLOC) {
+                continue;
+            }
+            instructions[size * 2] = opcode.ordinal();
+            instructions[size * 2 + 1] = opcode == Opcode.LOAD || opcode == Opcode.STORE
+                    ? assigned[code.operand(i)] : code.operand(i);
+            size++;
+        }
+        code.truncate(0);
+        if (frame > 0) {
+            code.instruction(Opcode.ALLOC, frame);
+        }
+        for (int i = 0; i < size; i++) {
+            code.instruction(Opcode.fromOrdinal(instructions[i * 2]), instructions[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * The basic blocks of the code and the edges between them, in flat arrays.
+     */
+    private static final class FlowGraph {
+        private final CodeBuffer code;
+        private final int[] blockStarts;
+        private final int blockCount;
+        private final int[] blockOf;
+        /**
+         * The predecessors of block b are {@code predecessors[predecessorStarts[b]]} up to
+         * {@code predecessorStarts[b + 1]}.
+         */
+        private final int[] predecessorStarts;
+        private final int[] predecessors;
+
+        FlowGraph(CodeBuffer code) {
+            this.code = code;
+            int size = code.size();
+            int[] positions = new int[code.labelCount()];
+            Arrays.fill(positions, -1);
+            boolean[] leaders = new boolean[size + 1];
+            leaders[0] = true;
+            for (int i = 0; i < size; i++) {
+                Opcode opcode = code.opcode(i);
+                if (opcode == Opcode.LABEL) {
+                    positions[code.operand(i)] = i;
+                    leaders[i] = true;
+                } else if (opcode.isJump() || opcode == Opcode.HALT) {
+                    leaders[i + 1] = true;
+                }
+            }
+            int count = 0;
+            int[] starts = new int[size + 1];
+            blockOf = new int[size];
+            for (int i = 0; i < size; i++) {
+                if (leaders[i]) {
+                    starts[count++] = i;
+                }
+                blockOf[i] = count - 1;
+            }
+            starts[count] = size;
+            blockCount = count;
+            blockStarts = Arrays.copyOf(starts, count + 1);
+
+            // every block has at most two successors: the next block and the target of its jump
+            int[] counts = new int[count + 1];
+            int[] successors = new int[count * 2];
+            for (int b = 0; b < count; b++) {
+                successors[b * 2] = -1;
+                successors[b * 2 + 1] = -1;
+                int last = blockStarts[b + 1] - 1;
+                Opcode opcode = code.opcode(last);
+                if (opcode != Opcode.JUMP && opcode != Opcode.HALT && b + 1 < count) {
+                    successors[b * 2] = b + 1;
+                }
+                if (opcode.isJump() && positions[code.operand(last)] >= 0) {
+                    successors[b * 2 + 1] = blockOf[positions[code.operand(last)]];
+                }
+                for (int k = 0; k < 2; k++) {
+                    if (successors[b * 2 + k] >= 0) {
+                        counts[successors[b * 2 + k] + 1]++;
+                    }
+                }
+            }
+            for (int b = 0; b < count; b++) {
+                counts[b + 1] += counts[b];
+            }
+            predecessorStarts = counts.clone();
+            predecessors = new int[counts[count]];
+            for (int b = 0; b < count; b++) {
+                for (int k = 0; k < 2; k++) {
+                    int successor = successors[b * 2 + k];
+                    if (successor >= 0) {
+                        predecessors[counts[successor]++] = b;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Computes for every slot the first and the last instruction at which it is live or written. A slot
+         * is followed backwards from the blocks that read it before writing it, one slot at a time, so the
+         * cost is the total size of the live ranges rather than blocks times slots.
+         */
+        void liveRanges(int slots, int[] starts, int[] ends) {
+            // the accesses of each slot in order, grouped by slot
+            int[] accessStarts = new int[slots + 1];
+            for (int i = 0; i < code.size(); i++) {
+                Opcode opcode = code.opcode(i);
+                if (opcode == Opcode.LOAD || opcode == Opcode.STORE) {
+                    accessStarts[code.operand(i) + 1]++;
+                }
+            }
+            for (int s = 0; s < slots; s++) {
+                accessStarts[s + 1] += accessStarts[s];
+            }
+            int[] fill = accessStarts.clone();
+            int[] accesses = new int[accessStarts[slots]];
+            for (int i = 0; i < code.size(); i++) {
+                Opcode opcode = code.opcode(i);
+                if (opcode == Opcode.LOAD || opcode == Opcode.STORE) {
+                    accesses[fill[code.operand(i)]++] = i;
+                }
+            }
+
+            // stamps of the slot a block was last marked for, so the marks never need to be cleared
+            int[] written = new int[blockCount];
+            int[] liveIn = new int[blockCount];
+            int[] liveOut = new int[blockCount];
+            Arrays.fill(written, -1);
+            Arrays.fill(liveIn, -1);
+            Arrays.fill(liveOut, -1);
+            int[] work = new int[16];
+            for (int slot = 0; slot < slots; slot++) {
+                int size = 0;
+                int block = -1;
+                for (int a = accessStarts[slot]; a < accessStarts[slot + 1]; a++) {
+                    int i = accesses[a];
+                    starts[slot] = Math.min(starts[slot], i);
+                    ends[slot] = Math.max(ends[slot], i);
+                    if (blockOf[i] == block) {
+                        continue;
+                    }
+                    // the first access of the slot in its block
+                    block = blockOf[i];
+                    if (code.opcode(i) == Opcode.LOAD) {
+                        liveIn[block] = slot;
+                        if (size == work.length) {
+                            work = Arrays.copyOf(work, size * 2);
+                        }
+                        work[size++] = block;
+                    } else {
+                        written[block] = slot;
+                    }
+                }
+                for (int a = accessStarts[slot]; a < accessStarts[slot + 1]; a++) {
+                    if (code.opcode(accesses[a]) == Opcode.STORE) {
+                        written[blockOf[accesses[a]]] = slot;
+                    }
+                }
+                while (size > 0) {
+                    int b = work[--size];
+                    starts[slot] = Math.min(starts[slot], blockStarts[b]);
+                    for (int p = predecessorStarts[b]; p < predecessorStarts[b + 1]; p++) {
+                        int predecessor = predecessors[p];
+                        if (liveOut[predecessor] != slot) {
+                            liveOut[predecessor] = slot;
+                            ends[slot] = Math.max(ends[slot], blockStarts[predecessor + 1] - 1);
+                            starts[slot] = Math.min(starts[slot], blockStarts[predecessor + 1] - 1);
+                        }
+                        if (written[predecessor] != slot && liveIn[predecessor] != slot) {
+                            liveIn[predecessor] = slot;
+                            if (size == work.length) {
+                                work = Arrays.copyOf(work, size * 2);
+                            }
+                            work[size++] = predecessor;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
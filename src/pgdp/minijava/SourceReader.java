@@ -0,0 +1,106 @@
+package pgdp.minijava;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * Loads source files in linear time. The file is memory mapped; pure ASCII files are handed to the
+ * lexer as a view on the mapped bytes without decoding them at all, everything else is decoded in one go.
+ */
+public class SourceReader {
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+
+    private static final Set<Charset> asciiCompatible = Set.of(
+            StandardCharsets.US_ASCII,
+            StandardCharsets.UTF_8,
+            StandardCharsets.ISO_8859_1
+    );
+
+    private SourceReader() {
+
+    }
+
+    public static CharSequence read(Path path) throws IOException {
+        return read(path, Charset.defaultCharset());
+    }
+
+    public static CharSequence read(Path path, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file " + path + " is too large (" + size + " bytes)");
+            }
+            ByteBuffer bytes = size == 0 ? ByteBuffer.allocate(0) : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (asciiCompatible.contains(charset) && isAscii(bytes)) {
+                return new AsciiCharSequence(bytes, 0, (int) size);
+            }
+            return charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(bytes);
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        int limit = bytes.limit();
+        int i = 0;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if ((bytes.getLong(i) & NON_ASCII_MASK) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class AsciiCharSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiCharSequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) bytes.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+            }
+            return new AsciiCharSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] out = new byte[length];
+            bytes.get(offset, out);
+            return new String(out, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -1,41 +1,37 @@
 package pgdp.minijava;
 
 public class Token {
-    private final TokenType tokenType;
-    private final StringBuilder content;
+    private final TokenKind kind;
+    private final String content;
     private final int line;
 
-    public Token(TokenType tokenType, int line) {
-        this(tokenType, "", line);
+    public Token(TokenType tokenType, String text, int line) {
+        this(TokenKind.classify(tokenType, text), text, line);
     }
 
-    public Token(TokenType tokenType, String initialText, int line) {
-        this.tokenType = tokenType;
-        content = new StringBuilder(initialText);
+    public Token(TokenKind kind, String text, int line) {
+        this.kind = kind;
+        this.content = text;
         this.line = line + 1;
     }
 
-    public void addCharacter(char c) {
-        content.append(c);
-    }
-
-    public void addString(String text) {
-        content.append(text);
-    }
-
     public String getContentAsString() {
-        return content.toString();
+        return content;
     }
 
     @Override
     public String toString() {
-       return "(" + tokenType +
+       return "(" + kind.getType() +
             ", " + content +
             ')';
     }
 
     public TokenType getTokenType() {
-        return tokenType;
+        return kind.getType();
+    }
+
+    public TokenKind getKind() {
+        return kind;
     }
 
     public int getLine() {
@@ -0,0 +1,246 @@
+package pgdp.minijava;
+
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.Arrays;
+
+/**
+ * A compact, growable list of tokens stored as parallel arrays. The text of a token is not copied;
+ * it is a slice of the source the buffer was built from.
+ */
+public class TokenBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private CharSequence source;
+    private final SymbolTable symbols;
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] values;
+    private int size;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, INITIAL_CAPACITY);
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this(source, capacity, new SymbolTable());
+    }
+
+    /**
+     * @param symbols the table the IDs of identifier tokens refer to
+     */
+    public TokenBuffer(CharSequence source, int capacity, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+        capacity = Math.max(capacity, 1);
+        kinds = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public static TokenBuffer tokenize(CharSequence source, boolean keepComments) throws IllegalCharacterException {
+        var buffer = new TokenBuffer(source, Math.max(INITIAL_CAPACITY, source.length() / 6));
+        var lexer = new Lexer(source, keepComments, buffer.symbols);
+        while (lexer.advance()) {
+            buffer.add(lexer);
+        }
+        buffer.trimToSize();
+        return buffer;
+    }
+
+    public void add(Lexer lexer) {
+        add(lexer.getKind(), lexer.getStart(), lexer.getEnd() - lexer.getStart(), lexer.getLine(), lexer.getValue());
+    }
+
+    /**
+     * @param line the zero based line of the token
+     */
+    public void add(TokenKind kind, int start, int length, int line, int value) {
+        if (size == kinds.length) {
+            resize(size * 2);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Replaces the tokens from {@code from} to {@code to} with the tokens of another buffer and switches
+     * to the edited source. The tokens behind the replaced range move by the given number of characters
+     * and lines.
+     */
+    void splice(CharSequence source, int from, int to, TokenBuffer replacement, int startDelta, int lineDelta) {
+        int count = replacement.size;
+        int newSize = size - (to - from) + count;
+        if (newSize > kinds.length) {
+            resize(Math.max(newSize, kinds.length * 2));
+        }
+        if (to - from != count) {
+            System.arraycopy(kinds, to, kinds, from + count, size - to);
+            System.arraycopy(starts, to, starts, from + count, size - to);
+            System.arraycopy(lengths, to, lengths, from + count, size - to);
+            System.arraycopy(lines, to, lines, from + count, size - to);
+            System.arraycopy(values, to, values, from + count, size - to);
+        }
+        System.arraycopy(replacement.kinds, 0, kinds, from, count);
+        System.arraycopy(replacement.starts, 0, starts, from, count);
+        System.arraycopy(replacement.lengths, 0, lengths, from, count);
+        System.arraycopy(replacement.lines, 0, lines, from, count);
+        System.arraycopy(replacement.values, 0, values, from, count);
+        if (startDelta != 0 || lineDelta != 0) {
+            for (int i = from + count; i < newSize; i++) {
+                starts[i] += startDelta;
+                lines[i] += lineDelta;
+            }
+        }
+        size = newSize;
+        this.source = source;
+    }
+
+    /**
+     * Copies the tokens of another buffer from the given index on into this buffer, overwriting it from
+     * {@code toIndex} on without changing its size. Lines are moved by the given number of lines and the
+     * values of identifiers are translated through the symbol map if there is one.
+     *
+     * @return the index behind the last copied token
+     */
+    int copy(TokenBuffer from, int fromIndex, int toIndex, int lineDelta, int[] symbolMap, boolean keepComments) {
+        byte comment = (byte) TokenKind.COMMENT.ordinal();
+        byte identifier = (byte) TokenKind.IDENTIFIER.ordinal();
+        for (int i = fromIndex; i < from.size; i++) {
+            byte kind = from.kinds[i];
+            if (kind == comment && !keepComments) {
+                continue;
+            }
+            kinds[toIndex] = kind;
+            starts[toIndex] = from.starts[i];
+            lengths[toIndex] = from.lengths[i];
+            lines[toIndex] = from.lines[i] + lineDelta;
+            values[toIndex] = kind == identifier && symbolMap != null ? symbolMap[from.values[i]] : from.values[i];
+            toIndex++;
+        }
+        return toIndex;
+    }
+
+    void setSize(int size) {
+        if (size > kinds.length) {
+            resize(size);
+        }
+        this.size = size;
+    }
+
+    public void trimToSize() {
+        if (size < kinds.length) {
+            resize(Math.max(size, 1));
+        }
+    }
+
+    private void resize(int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenKind kind(int index) {
+        return TokenKind.fromOrdinal(kinds[checkIndex(index)]);
+    }
+
+    public int start(int index) {
+        return starts[checkIndex(index)];
+    }
+
+    public int length(int index) {
+        return lengths[checkIndex(index)];
+    }
+
+    public int end(int index) {
+        return start(index) + lengths[index];
+    }
+
+    /**
+     * @return the one based line of the token, like {@link Token#getLine()}
+     */
+    public int line(int index) {
+        return lines[checkIndex(index)] + 1;
+    }
+
+    /**
+     * Columns aren't stored, the source is scanned back to the start of the line instead.
+     *
+     * @return the one based column the token starts in
+     */
+    public int column(int index) {
+        int start = start(index);
+        int lineStart = start;
+        while (lineStart > 0 && source.charAt(lineStart - 1) != '\n' && source.charAt(lineStart - 1) != '\r') {
+            lineStart--;
+        }
+        return start - lineStart + 1;
+    }
+
+    /**
+     * @return the value of the token as described by {@link Lexer#getValue()}
+     */
+    public int value(int index) {
+        return values[checkIndex(index)];
+    }
+
+    public String text(int index) {
+        return slice(source, start(index), end(index));
+    }
+
+    public boolean textEquals(int index, String text) {
+        return regionEquals(source, start(index), length(index), text);
+    }
+
+    public Token token(int index) {
+        return new Token(kind(index), text(index), lines[index]);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return index;
+    }
+
+    static String slice(CharSequence source, int start, int end) {
+        if (source instanceof String string) {
+            return string.substring(start, end);
+        }
+        return source.subSequence(start, end).toString();
+    }
+
+    static boolean regionEquals(CharSequence source, int start, int length, String text) {
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
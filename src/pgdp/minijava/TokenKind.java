@@ -0,0 +1,133 @@
+package pgdp.minijava;
+
+public enum TokenKind {
+    IDENTIFIER(TokenType.IDENTIFIER, null),
+    KEYWORD(TokenType.KEYWORD, null),
+    NUMBER(TokenType.LITERAL, null),
+    BOOLEAN(TokenType.LITERAL, null),
+    STRING(TokenType.LITERAL, null),
+    COMMENT(TokenType.COMMENT, null),
+
+    DOT(TokenType.SEPARATOR, "."),
+    COMMA(TokenType.SEPARATOR, ","),
+    COLON(TokenType.SEPARATOR, ":"),
+    SEMICOLON(TokenType.SEPARATOR, ";"),
+    LPAREN(TokenType.SEPARATOR, "("),
+    RPAREN(TokenType.SEPARATOR, ")"),
+    LBRACKET(TokenType.SEPARATOR, "["),
+    RBRACKET(TokenType.SEPARATOR, "]"),
+    LBRACE(TokenType.SEPARATOR, "{"),
+    RBRACE(TokenType.SEPARATOR, "}"),
+
+    ASSIGN(TokenType.OPERATOR, "="),
+    EQ(TokenType.OPERATOR, "=="),
+    NOT(TokenType.OPERATOR, "!"),
+    NEQ(TokenType.OPERATOR, "!="),
+    LESS(TokenType.OPERATOR, "<"),
+    LEQ(TokenType.OPERATOR, "<="),
+    GREATER(TokenType.OPERATOR, ">"),
+    GEQ(TokenType.OPERATOR, ">="),
+    PLUS(TokenType.OPERATOR, "+"),
+    PLUS_PLUS(TokenType.OPERATOR, "++"),
+    PLUS_ASSIGN(TokenType.OPERATOR, "+="),
+    MINUS(TokenType.OPERATOR, "-"),
+    MINUS_MINUS(TokenType.OPERATOR, "--"),
+    MINUS_ASSIGN(TokenType.OPERATOR, "-="),
+    STAR(TokenType.OPERATOR, "*"),
+    STAR_ASSIGN(TokenType.OPERATOR, "*="),
+    SLASH(TokenType.OPERATOR, "/"),
+    SLASH_ASSIGN(TokenType.OPERATOR, "/="),
+    PERCENT(TokenType.OPERATOR, "%"),
+    PERCENT_ASSIGN(TokenType.OPERATOR, "%="),
+    AND(TokenType.OPERATOR, "&"),
+    AND_AND(TokenType.OPERATOR, "&&"),
+    AND_ASSIGN(TokenType.OPERATOR, "&="),
+    OR(TokenType.OPERATOR, "|"),
+    OR_OR(TokenType.OPERATOR, "||"),
+    OR_ASSIGN(TokenType.OPERATOR, "|="),
+    XOR(TokenType.OPERATOR, "^"),
+    XOR_ASSIGN(TokenType.OPERATOR, "^=");
+
+    private static final TokenKind[] values = values();
+    private static final TokenKind[] singleChar = new TokenKind[128];
+    private static final TokenKind[] withEquals = new TokenKind[128];
+    private static final TokenKind[] doubled = new TokenKind[128];
+
+    static {
+        for (TokenKind kind : values) {
+            String text = kind.text;
+            if (text == null) {
+                continue;
+            }
+            char first = text.charAt(0);
+            if (text.length() == 1) {
+                singleChar[first] = kind;
+            } else if (text.charAt(1) == '=') {
+                withEquals[first] = kind;
+            } else {
+                doubled[first] = kind;
+            }
+        }
+    }
+
+    private final TokenType type;
+    private final String text;
+
+    TokenKind(TokenType type, String text) {
+        this.type = type;
+        this.text = text;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    /**
+     * @return the fixed text of separators and operators, null for kinds with variable text
+     */
+    public String getText() {
+        return text;
+    }
+
+    static TokenKind fromOrdinal(int ordinal) {
+        return values[ordinal];
+    }
+
+    /**
+     * Looks up the separator or operator starting with first. If second continues the symbol the
+     * two character kind is returned, otherwise the single character one.
+     */
+    static TokenKind symbol(char first, char second) {
+        if (first >= 128) {
+            return null;
+        }
+        if (second == '=' && withEquals[first] != null) {
+            return withEquals[first];
+        }
+        if (second == first && doubled[first] != null) {
+            return doubled[first];
+        }
+        return singleChar[first];
+    }
+
+    static TokenKind classify(TokenType type, String text) {
+        return switch (type) {
+            case IDENTIFIER -> IDENTIFIER;
+            case KEYWORD -> KEYWORD;
+            case COMMENT -> COMMENT;
+            case LITERAL -> {
+                if (text.equals("true") || text.equals("false")) {
+                    yield BOOLEAN;
+                }
+                yield !text.isEmpty() && (text.charAt(0) == '"' || text.charAt(0) == '\'') ? STRING : NUMBER;
+            }
+            case SEPARATOR, OPERATOR -> {
+                TokenKind kind = text.isEmpty() ? null : symbol(text.charAt(0), text.length() > 1 ? text.charAt(1) : '\0');
+                if (kind == null || kind.type != type || !kind.text.equals(text)) {
+                    throw new IllegalArgumentException("Unknown " + type + " " + text);
+                }
+                yield kind;
+            }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package pgdp.minijava;
+
+/**
+ * A pull based stream of tokens the {@link Parser} reads from. Comments are never handed out.
+ * <p>
+ * Tokens are addressed relative to the current position, where 0 is the next token. Kinds and text
+ * can be compared without allocating a {@link Token}.
+ */
+public interface TokenSource {
+    /**
+     * @return true if there is at least one token left
+     */
+    boolean hasNext();
+
+    /**
+     * @throws IllegalStateException if the source ends before the token
+     */
+    TokenKind kind(int k);
+
+    /**
+     * @throws IllegalStateException if the source ends before the token
+     */
+    String text(int k);
+
+    /**
+     * @throws IllegalStateException if the source ends before the token
+     */
+    boolean textEquals(int k, String text);
+
+    /**
+     * @return the one based line of the token
+     * @throws IllegalStateException if the source ends before the token
+     */
+    int line(int k);
+
+    /**
+     * @return the one based column of the token, 0 if the source doesn't know it
+     * @throws IllegalStateException if the source ends before the token
+     */
+    default int column(int k) {
+        kind(k);
+        return 0;
+    }
+
+    /**
+     * @return the value of the token as described by {@link Lexer#getValue()}
+     * @throws IllegalStateException if the source ends before the token
+     */
+    int value(int k);
+
+    /**
+     * @return the table the values of identifier tokens refer to
+     */
+    SymbolTable symbols();
+
+    /**
+     * Consumes the next token.
+     *
+     * @throws IllegalStateException if there are no tokens left
+     */
+    void advance();
+
+    /**
+     * @return the number of tokens consumed so far
+     */
+    int position();
+
+    default boolean is(int k, TokenKind kind) {
+        return kind(k) == kind;
+    }
+
+    /**
+     * @return the keyword of the token or null if it isn't a keyword
+     */
+    default Keyword keyword(int k) {
+        return kind(k) == TokenKind.KEYWORD ? Keyword.fromOrdinal(value(k)) : null;
+    }
+
+    default String nextText() {
+        String text = text(0);
+        advance();
+        return text;
+    }
+
+    default Token peek(int k) {
+        return new Token(kind(k), text(k), line(k) - 1);
+    }
+
+    default Token peek() {
+        return peek(0);
+    }
+
+    default Token next() {
+        Token token = peek(0);
+        advance();
+        return token;
+    }
+
+    static IllegalStateException unexpectedEnd(int line) {
+        if (line <= 0) {
+            return new IllegalStateException("Unexpected end of input");
+        }
+        return new IllegalStateException("Unexpected end of input at line " + line);
+    }
+}
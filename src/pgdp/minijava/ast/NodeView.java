@@ -0,0 +1,35 @@
+package pgdp.minijava.ast;
+
+/**
+ * Read-only access to a node of an AST, no matter how the tree is stored. The {@link pgdp.minijava.Emitter}
+ * only traverses trees through this interface, so it works on {@link SyntaxTreeNode} objects as well as on
+ * a {@link SyntaxTreeArena}.
+ */
+public interface NodeView {
+    SyntaxTreeNode.Type getType();
+
+    String getValue();
+
+    /**
+     * @return the ID of the identifier in the symbol table of the tree, -1 if there is none
+     */
+    int getSymbol();
+
+    int getNumberChildren();
+
+    NodeView getChild(int id);
+
+    default boolean isLeaf() {
+        return getNumberChildren() == 0;
+    }
+
+    /**
+     * @return the one based line the node starts in, 0 if unknown
+     */
+    int getLine();
+
+    /**
+     * @return the one based column the node starts in, 0 if unknown
+     */
+    int getColumn();
+}
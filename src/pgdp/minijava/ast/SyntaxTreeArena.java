@@ -0,0 +1,292 @@
+package pgdp.minijava.ast;
+
+import pgdp.minijava.SymbolTable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * A compact AST for one compilation. Nodes are int indices into parallel arrays instead of objects:
+ * the ordinal of their type as a byte, their first child, their next sibling and a reference into a
+ * table that interns every node value, so a node takes 13 bytes and equal values share one String.
+ * Node 0 is the PROGRAM root.
+ * <p>
+ * The arena only grows by copying finished {@link SyntaxTreeNode} subtrees into it, see
+ * {@link #addToRoot(SyntaxTreeNode)}. It is read through {@link NodeView}s. Positions aren't kept.
+ */
+public class SyntaxTreeArena {
+    private static final SyntaxTreeNode.Type[] TYPES = SyntaxTreeNode.Type.values();
+    private static final int NONE = -1;
+
+    private final SymbolTable values = new SymbolTable();
+    private byte[] kinds;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] valueRefs;
+    private int size;
+    private int lastRootChild = NONE;
+
+    public SyntaxTreeArena() {
+        this(64);
+    }
+
+    public SyntaxTreeArena(int capacity) {
+        capacity = Math.max(capacity, 1);
+        kinds = new byte[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        valueRefs = new int[capacity];
+        allocate(SyntaxTreeNode.Type.PROGRAM, "", 1);
+    }
+
+    /**
+     * Copies the children of the given PROGRAM node into the arena, see {@link #addToRoot(SyntaxTreeNode)}.
+     */
+    public static SyntaxTreeArena of(SyntaxTreeNode program) {
+        var arena = new SyntaxTreeArena();
+        for (int i = 0; i < program.getNumberChildren(); i++) {
+            arena.addToRoot(program.getChild(i));
+        }
+        return arena.trimToSize();
+    }
+
+    /**
+     * Copies the subtree into the arena and appends it to the children of the root. The children of a
+     * node are stored next to each other. The subtree isn't referenced afterwards.
+     *
+     * @return the index of the copied node
+     */
+    public int addToRoot(SyntaxTreeNode node) {
+        int index = allocate(node.getType(), node.getValue(), 1);
+        if (lastRootChild == NONE) {
+            firstChildren[0] = index;
+        } else {
+            nextSiblings[lastRootChild] = index;
+        }
+        lastRootChild = index;
+
+        Deque<SyntaxTreeNode> nodes = new ArrayDeque<>();
+        int[] indices = new int[16];
+        nodes.push(node);
+        indices[0] = index;
+        while (!nodes.isEmpty()) {
+            SyntaxTreeNode next = nodes.pop();
+            int parent = indices[nodes.size()];
+            int count = next.getNumberChildren();
+            if (count == 0) {
+                continue;
+            }
+            int first = size;
+            for (int i = 0; i < count; i++) {
+                SyntaxTreeNode child = next.getChild(i);
+                allocate(child.getType(), child.getValue(), count - i);
+                nextSiblings[first + i] = i + 1 < count ? first + i + 1 : NONE;
+            }
+            firstChildren[parent] = first;
+            for (int i = count - 1; i >= 0; i--) {
+                if (nodes.size() == indices.length) {
+                    indices = Arrays.copyOf(indices, indices.length * 2);
+                }
+                indices[nodes.size()] = first + i;
+                nodes.push(next.getChild(i));
+            }
+        }
+        return index;
+    }
+
+    private int allocate(SyntaxTreeNode.Type type, String value, int count) {
+        if (size + count > kinds.length) {
+            int capacity = Math.max(kinds.length * 2, size + count);
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            valueRefs = Arrays.copyOf(valueRefs, capacity);
+        }
+        int index = size++;
+        kinds[index] = (byte) type.ordinal();
+        firstChildren[index] = NONE;
+        nextSiblings[index] = NONE;
+        valueRefs[index] = values.intern(value);
+        return index;
+    }
+
+    /**
+     * Shrinks the arrays to the number of nodes.
+     *
+     * @return this arena
+     */
+    public SyntaxTreeArena trimToSize() {
+        if (kinds.length != size) {
+            kinds = Arrays.copyOf(kinds, size);
+            firstChildren = Arrays.copyOf(firstChildren, size);
+            nextSiblings = Arrays.copyOf(nextSiblings, size);
+            valueRefs = Arrays.copyOf(valueRefs, size);
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of nodes, including the root
+     */
+    public int size() {
+        return size;
+    }
+
+    public SyntaxTreeNode.Type type(int node) {
+        return TYPES[kinds[Objects.checkIndex(node, size)]];
+    }
+
+    /**
+     * @return the first child of the node, -1 if it is a leaf
+     */
+    public int firstChild(int node) {
+        return firstChildren[Objects.checkIndex(node, size)];
+    }
+
+    /**
+     * @return the next child of the parent of the node, -1 if it is the last one
+     */
+    public int nextSibling(int node) {
+        return nextSiblings[Objects.checkIndex(node, size)];
+    }
+
+    /**
+     * @return the ID of the value of the node in {@link #getValues()}
+     */
+    public int valueRef(int node) {
+        return valueRefs[Objects.checkIndex(node, size)];
+    }
+
+    public String value(int node) {
+        return values.name(valueRef(node));
+    }
+
+    /**
+     * @return the table interning the values of all nodes
+     */
+    public SymbolTable getValues() {
+        return values;
+    }
+
+    public NodeView root() {
+        return node(0);
+    }
+
+    public NodeView node(int index) {
+        return new Node(this, Objects.checkIndex(index, size));
+    }
+
+    /**
+     * Copies the arena back into {@link SyntaxTreeNode} objects.
+     *
+     * @return the frozen PROGRAM node
+     */
+    public SyntaxTreeNode toTree() {
+        var root = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, value(0));
+        Deque<SyntaxTreeNode> nodes = new ArrayDeque<>();
+        Deque<Integer> indices = new ArrayDeque<>();
+        nodes.push(root);
+        indices.push(0);
+        while (!nodes.isEmpty()) {
+            SyntaxTreeNode parent = nodes.pop();
+            int index = indices.pop();
+            for (int child = firstChildren[index]; child != NONE; child = nextSiblings[child]) {
+                SyntaxTreeNode.Type type = TYPES[kinds[child]];
+                int symbol = type == SyntaxTreeNode.Type.NAME || type == SyntaxTreeNode.Type.LABEL ? valueRefs[child] : -1;
+                var node = new SyntaxTreeNode(type, values.name(valueRefs[child]), symbol);
+                parent.addChild(node);
+                nodes.push(node);
+                indices.push(child);
+            }
+        }
+        return root.freeze();
+    }
+
+    /**
+     * A view of one node of the arena. It remembers the child it handed out last, so walking the children
+     * in order by index takes constant time per child.
+     */
+    private static final class Node implements NodeView {
+        private final SyntaxTreeArena arena;
+        private final int index;
+        private int count = NONE;
+        private int cursor = NONE;
+        private int cursorIndex;
+
+        private Node(SyntaxTreeArena arena, int index) {
+            this.arena = arena;
+            this.index = index;
+        }
+
+        @Override
+        public SyntaxTreeNode.Type getType() {
+            return TYPES[arena.kinds[index]];
+        }
+
+        @Override
+        public String getValue() {
+            return arena.values.name(arena.valueRefs[index]);
+        }
+
+        /**
+         * Names are identified by the ID of their value.
+         */
+        @Override
+        public int getSymbol() {
+            SyntaxTreeNode.Type type = getType();
+            return type == SyntaxTreeNode.Type.NAME || type == SyntaxTreeNode.Type.LABEL ? arena.valueRefs[index] : -1;
+        }
+
+        @Override
+        public int getNumberChildren() {
+            if (count == NONE) {
+                count = 0;
+                for (int child = arena.firstChildren[index]; child != NONE; child = arena.nextSiblings[child]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public NodeView getChild(int id) {
+            Objects.checkIndex(id, getNumberChildren());
+            if (cursor == NONE || id < cursor) {
+                cursor = 0;
+                cursorIndex = arena.firstChildren[index];
+            }
+            while (cursor < id) {
+                cursorIndex = arena.nextSiblings[cursorIndex];
+                cursor++;
+            }
+            return new Node(arena, cursorIndex);
+        }
+
+        @Override
+        public int getLine() {
+            return 0;
+        }
+
+        @Override
+        public int getColumn() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Node node && node.arena == arena && node.index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return "{ " + getType() + ":" + getValue() + " #" + index + " }";
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package pgdp.minijava.ast;
+
+import pgdp.minijava.SymbolTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A compact binary encoding of a syntax tree, so a parsed program can be cached and read back without
+ * lexing and parsing it again. The format is:
+ * <ol>
+ *     <li>the magic bytes {@code MJAT} and the version of the format</li>
+ *     <li>the string table: the number of strings, then the length and the UTF-8 bytes of each</li>
+ *     <li>the number of nodes, then the nodes in postorder. A node is the ordinal of its type, the index
+ *     of its value in the string table and its number of children; NAME and LABEL nodes add their
+ *     symbol plus one, their line and their column.</li>
+ * </ol>
+ * All numbers are unsigned varints with 7 bits per byte. Since a node comes right after its children,
+ * the tree is decoded in a single pass over a {@link ByteBuffer} with one stack of finished nodes.
+ * Decoded trees are frozen and share equal leaves that have no symbol.
+ */
+public final class SyntaxTreeCodec {
+    private static final byte[] MAGIC = {'M', 'J', 'A', 'T'};
+    private static final int VERSION = 1;
+    private static final SyntaxTreeNode.Type[] TYPES = SyntaxTreeNode.Type.values();
+    private static final SyntaxTreeNode[] NO_CHILDREN = {};
+
+    private SyntaxTreeCodec() {
+
+    }
+
+    public static byte[] encode(NodeView tree) {
+        var strings = new SymbolTable();
+        var nodes = new Output();
+        int count = 0;
+        var cursor = new TreeCursor().reset(tree, TreeCursor.Order.POSTORDER);
+        while (cursor.next()) {
+            NodeView node = cursor.node();
+            nodes.varint(node.getType().ordinal());
+            nodes.varint(strings.intern(node.getValue()));
+            nodes.varint(node.getNumberChildren());
+            if (hasSymbol(node.getType())) {
+                nodes.varint(node.getSymbol() + 1);
+                nodes.varint(node.getLine());
+                nodes.varint(node.getColumn());
+            }
+            count++;
+        }
+
+        var out = new Output();
+        out.bytes(MAGIC, MAGIC.length);
+        out.varint(VERSION);
+        out.varint(strings.size());
+        for (int i = 0; i < strings.size(); i++) {
+            byte[] bytes = strings.name(i).getBytes(StandardCharsets.UTF_8);
+            out.varint(bytes.length);
+            out.bytes(bytes, bytes.length);
+        }
+        out.varint(count);
+        out.bytes(nodes.buffer, nodes.size);
+        return out.toByteArray();
+    }
+
+    public static void write(NodeView tree, Path path) throws IOException {
+        Files.write(path, encode(tree));
+    }
+
+    /**
+     * Reads a tree from a memory mapped file.
+     */
+    public static SyntaxTreeNode read(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static SyntaxTreeNode decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes a tree from the position of the buffer on, which is left behind the tree.
+     *
+     * @return the frozen tree
+     * @throws IllegalStateException if the buffer doesn't hold an encoded tree
+     */
+    public static SyntaxTreeNode decode(ByteBuffer buffer) {
+        for (byte magic : MAGIC) {
+            if (!buffer.hasRemaining() || buffer.get() != magic) {
+                throw new IllegalStateException("Not an encoded syntax tree");
+            }
+        }
+        int version = varint(buffer);
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported syntax tree version " + version);
+        }
+        String[] strings = new String[varint(buffer)];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int length = varint(buffer);
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int count = varint(buffer);
+        // frozen nodes don't know their parent, so equal leaves without a symbol are decoded only once
+        SyntaxTreeNode[] leaves = new SyntaxTreeNode[strings.length * TYPES.length];
+        SyntaxTreeNode[] stack = new SyntaxTreeNode[16];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int type = varint(buffer);
+            int value = varint(buffer);
+            int children = varint(buffer);
+            if (type >= TYPES.length || value >= strings.length || children > size) {
+                throw new IllegalStateException("Malformed syntax tree at node " + i);
+            }
+            int symbol = -1;
+            int line = 0;
+            int column = 0;
+            if (hasSymbol(TYPES[type])) {
+                symbol = varint(buffer) - 1;
+                line = varint(buffer);
+                column = varint(buffer);
+            }
+            SyntaxTreeNode node;
+            if (children == 0 && !hasSymbol(TYPES[type])) {
+                int leaf = value * TYPES.length + type;
+                node = leaves[leaf];
+                if (node == null) {
+                    node = new SyntaxTreeNode(TYPES[type], strings[value], -1, NO_CHILDREN, 0, 0);
+                    leaves[leaf] = node;
+                }
+            } else {
+                size -= children;
+                SyntaxTreeNode[] nodes = Arrays.copyOfRange(stack, size, size + children);
+                node = new SyntaxTreeNode(TYPES[type], strings[value], symbol, nodes, line, column);
+            }
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size * 2);
+            }
+            stack[size++] = node;
+        }
+        if (size != 1) {
+            throw new IllegalStateException("Malformed syntax tree with " + size + " roots");
+        }
+        return stack[0];
+    }
+
+    private static boolean hasSymbol(SyntaxTreeNode.Type type) {
+        return type == SyntaxTreeNode.Type.NAME || type == SyntaxTreeNode.Type.LABEL;
+    }
+
+    private static int varint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    /**
+     * A growable byte array to encode into.
+     */
+    private static final class Output {
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void bytes(byte[] bytes, int length) {
+            ensure(length);
+            System.arraycopy(bytes, 0, buffer, size, length);
+            size += length;
+        }
+
+        private void ensure(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package pgdp.minijava.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Creates immutable, hash-consed nodes: a node with the same type, value, symbol and children as one
+ * created before is that node, so structurally equal subtrees like every {@code divisor * divisor} of a
+ * program are stored once. Since the children of a node are shared the same way, two nodes of a factory
+ * are equal exactly if they are the same object.
+ * <p>
+ * Nodes of a factory are frozen, carry their structural hash and have no position, as they can stand
+ * for several places in the source.
+ */
+public class SyntaxTreeFactory {
+    private static final SyntaxTreeNode[] NO_CHILDREN = new SyntaxTreeNode[0];
+
+    private SyntaxTreeNode[] table = new SyntaxTreeNode[64];
+    private int size;
+
+    public SyntaxTreeNode leaf(SyntaxTreeNode.Type type, String value) {
+        return node(type, value, -1, NO_CHILDREN);
+    }
+
+    /**
+     * @param children nodes of this factory, other nodes are {@link #intern(SyntaxTreeNode) interned} first
+     */
+    public SyntaxTreeNode node(SyntaxTreeNode.Type type, String value, int symbol, SyntaxTreeNode... children) {
+        children = children.clone();
+        for (int i = 0; i < children.length; i++) {
+            children[i] = intern(Objects.requireNonNull(children[i]));
+        }
+        return share(type, value, symbol, children);
+    }
+
+    /**
+     * Replaces the tree by the shared nodes of this factory, creating the ones that don't exist yet.
+     * The tree is walked without recursing, and a node of this factory is returned as it is.
+     *
+     * @return the shared node equal to the tree
+     */
+    public SyntaxTreeNode intern(SyntaxTreeNode tree) {
+        if (find(tree) == tree) {
+            return tree;
+        }
+        // the path to the node being interned, with the shared nodes of the children visited so far
+        List<SyntaxTreeNode> nodes = new ArrayList<>();
+        List<SyntaxTreeNode[]> shared = new ArrayList<>();
+        nodes.add(tree);
+        shared.add(new SyntaxTreeNode[tree.getNumberChildren()]);
+        int[] next = new int[16];
+        while (true) {
+            int depth = nodes.size() - 1;
+            SyntaxTreeNode node = nodes.get(depth);
+            SyntaxTreeNode[] children = shared.get(depth);
+            if (next[depth] < children.length) {
+                SyntaxTreeNode child = Objects.requireNonNull(node.getChild(next[depth]));
+                if (child.isLeaf()) {
+                    children[next[depth]++] = share(child.getType(), child.getValue(), child.getSymbol(), NO_CHILDREN);
+                    continue;
+                }
+                if (find(child) == child) {
+                    children[next[depth]++] = child;
+                    continue;
+                }
+                if (depth + 1 == next.length) {
+                    next = Arrays.copyOf(next, next.length * 2);
+                }
+                next[depth + 1] = 0;
+                nodes.add(child);
+                shared.add(new SyntaxTreeNode[child.getNumberChildren()]);
+                continue;
+            }
+            SyntaxTreeNode result = share(node.getType(), node.getValue(), node.getSymbol(), children);
+            nodes.remove(depth);
+            shared.remove(depth);
+            if (depth == 0) {
+                return result;
+            }
+            shared.get(depth - 1)[next[depth - 1]++] = result;
+        }
+    }
+
+    /**
+     * @return the number of distinct nodes created
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param children shared nodes, the array is kept by the new node
+     */
+    private SyntaxTreeNode share(SyntaxTreeNode.Type type, String value, int symbol, SyntaxTreeNode[] children) {
+        int hash = SyntaxTreeNode.shallowHash(type, value);
+        for (SyntaxTreeNode child : children) {
+            hash = SyntaxTreeNode.combineHash(hash, child.hashCode());
+        }
+        hash = SyntaxTreeNode.finishHash(hash);
+        int mask = table.length - 1;
+        for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+            SyntaxTreeNode candidate = table[i];
+            if (candidate == null) {
+                var node = new SyntaxTreeNode(type, value, symbol, children, hash);
+                table[i] = node;
+                if (++size * 2 > table.length) {
+                    grow();
+                }
+                return node;
+            }
+            if (candidate.hashCode() == hash && matches(candidate, type, value, symbol, children)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * @return the shared node with the same type, value, symbol and children objects, null if there is none
+     */
+    private SyntaxTreeNode find(SyntaxTreeNode node) {
+        if (!node.isFrozen()) {
+            return null;
+        }
+        int hash = node.hashCode();
+        int mask = table.length - 1;
+        for (int i = mix(hash) & mask; table[i] != null; i = (i + 1) & mask) {
+            if (table[i] == node) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(SyntaxTreeNode node, SyntaxTreeNode.Type type, String value, int symbol,
+                                   SyntaxTreeNode[] children) {
+        if (node.getType() != type || node.getSymbol() != symbol || !Objects.equals(node.getValue(), value)
+                || node.getNumberChildren() != children.length) {
+            return false;
+        }
+        for (int i = 0; i < children.length; i++) {
+            if (node.getChild(i) != children[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        SyntaxTreeNode[] old = table;
+        table = new SyntaxTreeNode[old.length * 2];
+        int mask = table.length - 1;
+        for (SyntaxTreeNode node : old) {
+            if (node != null) {
+                int i = mix(node.hashCode()) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = node;
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
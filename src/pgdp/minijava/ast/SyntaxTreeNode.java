@@ -2,36 +2,173 @@ package pgdp.minijava.ast;
 
 import java.util.*;
 
-public class SyntaxTreeNode implements Iterable<SyntaxTreeNode>{
+/**
+ * A node of the AST. Nodes start out as builders: children are appended into an array that grows
+ * geometrically, so adding n children costs amortized O(n). Once the tree is complete,
+ * {@link #freeze()} trims every array to its exact size and makes the tree immutable.
+ * <p>
+ * Frozen nodes cache their structural hash, and a {@link SyntaxTreeFactory} can share structurally
+ * equal subtrees between trees.
+ * <p>
+ * The children of a node can also be left to a {@link Body} that builds them the first time they are
+ * asked for. Lazy nodes aren't safe to share between threads before that.
+ */
+public class SyntaxTreeNode implements NodeView, Iterable<SyntaxTreeNode>{
     // TODO: Replace generic class with FactoryPattern
     //  -> move emitter logic to nodes
 
+    private static final SyntaxTreeNode[] NO_CHILDREN = new SyntaxTreeNode[0];
+    private static final int INITIAL_CAPACITY = 4;
+
     private SyntaxTreeNode[] children;
+    private int childCount;
+    private boolean frozen;
     private final String value;
     private final Type type;
+    private final int symbol;
+    private int line;
+    private int column;
+    /**
+     * The structural hash once it is known, 0 if it hasn't been computed or the node isn't frozen.
+     */
+    private int hash;
+    /**
+     * Builds the children once they are needed, null if they are built already.
+     */
+    private Body body;
 
     public SyntaxTreeNode(Type type, String value) {
-        this.children = new SyntaxTreeNode[]{};
+        this(type, value, -1);
+    }
+
+    /**
+     * @param symbol the ID of the identifier in the symbol table it was parsed with, -1 if there is none
+     */
+    public SyntaxTreeNode(Type type, String value, int symbol) {
+        this.children = NO_CHILDREN;
+        this.value = value;
+        this.type = type;
+        this.symbol = symbol;
+    }
+
+    /**
+     * Creates a frozen node, see {@link SyntaxTreeFactory}.
+     */
+    SyntaxTreeNode(Type type, String value, int symbol, SyntaxTreeNode[] children, int hash) {
+        this(type, value, symbol, children, 0, 0);
+        this.hash = hash;
+    }
+
+    /**
+     * Creates a frozen node at the given position, see {@link SyntaxTreeCodec}.
+     *
+     * @param children the children, the array is kept by the node
+     */
+    SyntaxTreeNode(Type type, String value, int symbol, SyntaxTreeNode[] children, int line, int column) {
+        this.children = children.length == 0 ? NO_CHILDREN : children;
+        this.childCount = children.length;
         this.value = value;
         this.type = type;
+        this.symbol = symbol;
+        this.frozen = true;
+        this.line = line;
+        this.column = column;
     }
 
     public SyntaxTreeNode getChild(int id) {
-        return children[id];
+        expand();
+        return children[Objects.checkIndex(id, childCount)];
     }
 
-    public void addChild(SyntaxTreeNode node) {
+    /**
+     * Leaves the children of this node to the body, which adds them the first time any of them is asked
+     * for. Freezing the node doesn't build them; the node is frozen again once they are built.
+     *
+     * @throws IllegalStateException if the node is frozen or already has children
+     */
+    public void setBody(Body body) {
+        if(frozen || childCount > 0 || this.body != null) {
+            throw new IllegalStateException("Can't set the body of a node with children");
+        }
+        this.body = body;
+    }
 
-        children = (Arrays.copyOf(this.children, this.children.length + 1));
-        children[children.length - 1] = node;
+    /**
+     * @return true if the children of the node are still left to its body
+     */
+    public boolean isLazy() {
+        return body != null;
+    }
+
+    private void expand() {
+        if (body == null) {
+            return;
+        }
+        Body pending = body;
+        body = null;
+        boolean wasFrozen = frozen;
+        frozen = false;
+        try {
+            pending.build(this);
+        } finally {
+            if (wasFrozen) {
+                freeze();
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the node has been frozen
+     */
+    public void addChild(SyntaxTreeNode node) {
+        if(frozen) {
+            throw new IllegalStateException("Can't add children to a frozen node");
+        }
+        expand();
+        if(childCount == children.length) {
+            children = Arrays.copyOf(children, Math.max(INITIAL_CAPACITY, childCount * 2));
+        }
+        children[childCount++] = node;
     }
 
     public int getNumberChildren() {
-        return children.length;
+        expand();
+        return childCount;
     }
 
     public boolean isLeaf() {
-        return children.length == 0;
+        return getNumberChildren() == 0;
+    }
+
+    /**
+     * Trims the child arrays of the whole subtree to their exact size and makes it immutable. Nodes that
+     * are already frozen are skipped along with their subtrees.
+     *
+     * @return this node
+     */
+    public SyntaxTreeNode freeze() {
+        Deque<SyntaxTreeNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            SyntaxTreeNode node = stack.pop();
+            if (node == null || node.frozen) {
+                continue;
+            }
+            node.frozen = true;
+            if (node.children.length != node.childCount) {
+                node.children = node.childCount == 0 ? NO_CHILDREN : Arrays.copyOf(node.children, node.childCount);
+            }
+            for (SyntaxTreeNode child : node.children) {
+                if (child != null) {
+                    stack.push(child);
+                }
+            }
+        }
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
     }
 
     public String getValue() {
@@ -42,6 +179,44 @@ public class SyntaxTreeNode implements Iterable<SyntaxTreeNode>{
         return type;
     }
 
+    /**
+     * @return the ID of the identifier in the symbol table it was parsed with, -1 if there is none
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Sets where the node starts in the source, for diagnostics.
+     *
+     * @throws IllegalStateException if the node has been frozen
+     */
+    public void setPosition(int line, int column) {
+        if(frozen) {
+            throw new IllegalStateException("Can't move a frozen node");
+        }
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * @return the one based line the node starts in, 0 if unknown
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the one based column the node starts in, 0 if unknown
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Compares the trees node by node with an explicit stack, so deep trees can't overflow the call
+     * stack. Shared subtrees are equal right away, subtrees whose cached hashes differ aren't.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -50,58 +225,154 @@ public class SyntaxTreeNode implements Iterable<SyntaxTreeNode>{
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
-        SyntaxTreeNode that = (SyntaxTreeNode) o;
-        return Arrays.equals(children, that.children) && Objects.equals(value, that.value) && type == that.type;
+        // pairs of nodes still to compare, children may be null
+        List<SyntaxTreeNode> stack = new ArrayList<>();
+        stack.add(this);
+        stack.add((SyntaxTreeNode) o);
+        while (!stack.isEmpty()) {
+            SyntaxTreeNode that = stack.remove(stack.size() - 1);
+            SyntaxTreeNode node = stack.remove(stack.size() - 1);
+            if (node == that) {
+                continue;
+            }
+            if (node != null && that != null) {
+                node.expand();
+                that.expand();
+            }
+            if (node == null || that == null || node.getClass() != that.getClass()
+                    || node.type != that.type || !Objects.equals(node.value, that.value)
+                    || node.childCount != that.childCount
+                    || (node.hash != 0 && that.hash != 0 && node.hash != that.hash)) {
+                return false;
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                stack.add(node.children[i]);
+                stack.add(that.children[i]);
+            }
+        }
+        return true;
     }
 
+    /**
+     * @return a hash of the type and value of every node of the tree, consistent with
+     * {@link #equals(Object)}. It is computed without recursing and cached in frozen nodes.
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(value, type);
+        if (hash != 0) {
+            return hash;
+        }
+        // the path to the node being hashed, with the next child to visit and the hash so far
+        SyntaxTreeNode[] nodes = new SyntaxTreeNode[16];
+        int[] next = new int[16];
+        int[] hashes = new int[16];
+        int depth = 0;
+        nodes[0] = this;
+        hashes[0] = shallowHash(type, value);
+        expand();
+        while (true) {
+            SyntaxTreeNode node = nodes[depth];
+            if (next[depth] < node.childCount) {
+                SyntaxTreeNode child = node.children[next[depth]++];
+                if (child == null || child.hash != 0) {
+                    hashes[depth] = combineHash(hashes[depth], child == null ? 0 : child.hash);
+                    continue;
+                }
+                if (++depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                    hashes = Arrays.copyOf(hashes, depth * 2);
+                }
+                nodes[depth] = child;
+                next[depth] = 0;
+                hashes[depth] = shallowHash(child.type, child.value);
+                child.expand();
+                continue;
+            }
+            int result = finishHash(hashes[depth]);
+            if (node.frozen) {
+                node.hash = result;
+            }
+            nodes[depth] = null;
+            if (depth-- == 0) {
+                return result;
+            }
+            hashes[depth] = combineHash(hashes[depth], result);
+        }
     }
 
+    static int shallowHash(Type type, String value) {
+        return 31 * type.ordinal() + Objects.hashCode(value);
+    }
+
+    static int combineHash(int hash, int childHash) {
+        return 31 * hash + childHash;
+    }
+
+    /**
+     * Keeps 0 free to mark hashes that aren't known yet.
+     */
+    static int finishHash(int hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Prints the tree without recursing: the stack holds the nodes still to print and the text that
+     * closes the nodes printed so far.
+     */
     @Override
     public String toString() {
         StringBuilder out = new StringBuilder();
-        if(children.length != 0) {
-            out.append("[");
-            for (SyntaxTreeNode node : children) {
-                out.append(node.toString()).append(", ");
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Object next = stack.pop();
+            if (!(next instanceof SyntaxTreeNode node)) {
+                out.append(next);
+                continue;
+            }
+            out.append("{ ").append(node.type).append(":").append(node.value);
+            node.expand();
+            if (node.childCount == 0) {
+                out.append(" }");
+                continue;
+            }
+            out.append(" [");
+            stack.push("] }");
+            for (int i = node.childCount - 1; i >= 0; i--) {
+                stack.push(node.children[i]);
+                if (i > 0) {
+                    stack.push(", ");
+                }
             }
-            out = new StringBuilder(out.substring(0, out.length() - 2));
-            out.append("]");
-            return "{ " + type + ":" + value + " " + out + " }";
         }
-        return "{ " + type + ":" + value + " }";
+        return out.toString();
     }
 
+    /**
+     * @return the nodes of the tree in preorder, this node first
+     */
     @Override
     public Iterator<SyntaxTreeNode> iterator() {
         return new NodeIterator(this);
     }
 
     private static class NodeIterator implements Iterator<SyntaxTreeNode> {
-        ArrayList<NodeIterator> iterators = new ArrayList<>();
-        boolean outThis = false;
-        SyntaxTreeNode node;
+        private final TreeCursor cursor = new TreeCursor();
+        private boolean advanced;
+        private boolean hasNext;
 
         public NodeIterator(SyntaxTreeNode node) {
-            for (int i = 0; i < node.getNumberChildren(); i++) {
-                iterators.add(new NodeIterator(node.getChild(i)));
-            }
-            this.node = node;
+            cursor.reset(node, TreeCursor.Order.PREORDER);
         }
 
         @Override
         public boolean hasNext() {
-            if(!outThis) {
-                return true;
+            if(!advanced) {
+                hasNext = cursor.next();
+                advanced = true;
             }
-            for (NodeIterator iterator : iterators) {
-                if(iterator.hasNext()) {
-                    return true;
-                }
-            }
-            return false;
+            return hasNext;
         }
 
         @Override
@@ -109,18 +380,21 @@ public class SyntaxTreeNode implements Iterable<SyntaxTreeNode>{
             if(!hasNext()) {
                 throw new NoSuchElementException();
             }
-            if(!outThis) {
-                return node;
-            }
-            for (NodeIterator iterator : iterators) {
-                if(iterator.hasNext()) {
-                    return iterator.next();
-                }
-            }
-            throw new NoSuchElementException();
+            advanced = false;
+            return (SyntaxTreeNode) cursor.node();
         }
     }
 
+    /**
+     * Builds the children of a lazy node, see {@link #setBody(Body)}.
+     */
+    public interface Body {
+        /**
+         * Adds the children to the node.
+         */
+        void build(SyntaxTreeNode node);
+    }
+
     public enum Type {
         PROGRAM,
         DECL,
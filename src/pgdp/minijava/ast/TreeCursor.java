@@ -0,0 +1,174 @@
+package pgdp.minijava.ast;
+
+import java.util.Arrays;
+
+/**
+ * Walks a tree in preorder or postorder without recursing. The path from the root to the current node
+ * is kept in two arrays that only grow with the depth of the tree and are reused after a
+ * {@link #reset(NodeView, Order)}, so walking {@link SyntaxTreeNode}s doesn't allocate per node.
+ * <pre>{@code
+ * var cursor = new TreeCursor().reset(root, TreeCursor.Order.PREORDER);
+ * while (cursor.next()) {
+ *     NodeView node = cursor.node();
+ * }
+ * }</pre>
+ */
+public final class TreeCursor {
+    private NodeView[] path = new NodeView[16];
+    /**
+     * For every node on the path the index of the next child to visit.
+     */
+    private int[] indices = new int[16];
+    private int depth = -1;
+    private Order order = Order.PREORDER;
+    private boolean started;
+
+    /**
+     * Starts over at the given root. The node returned last is forgotten.
+     *
+     * @return this cursor
+     */
+    public TreeCursor reset(NodeView root, Order order) {
+        Arrays.fill(path, 0, depth + 1, null);
+        this.order = order;
+        this.started = false;
+        depth = -1;
+        if (root != null) {
+            push(root);
+        }
+        return this;
+    }
+
+    /**
+     * Moves on to the next node.
+     *
+     * @return false once all nodes have been visited
+     */
+    public boolean next() {
+        if (depth < 0) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            if (order == Order.POSTORDER) {
+                descend();
+            }
+            return true;
+        }
+        if (order == Order.POSTORDER) {
+            pop();
+            if (depth < 0) {
+                return false;
+            }
+            descend();
+            return true;
+        }
+        while (indices[depth] >= path[depth].getNumberChildren()) {
+            pop();
+            if (depth < 0) {
+                return false;
+            }
+        }
+        NodeView node = path[depth];
+        push(node.getChild(indices[depth]++));
+        return true;
+    }
+
+    /**
+     * Pushes the next unvisited child and its first descendants, for postorder.
+     */
+    private void descend() {
+        while (indices[depth] < path[depth].getNumberChildren()) {
+            NodeView node = path[depth];
+            push(node.getChild(indices[depth]++));
+        }
+    }
+
+    private void push(NodeView node) {
+        if (++depth == path.length) {
+            path = Arrays.copyOf(path, depth * 2);
+            indices = Arrays.copyOf(indices, depth * 2);
+        }
+        path[depth] = node;
+        indices[depth] = 0;
+    }
+
+    private void pop() {
+        path[depth--] = null;
+    }
+
+    /**
+     * In preorder, doesn't visit the children of the current node.
+     */
+    public void skipChildren() {
+        indices[depth] = path[depth].getNumberChildren();
+    }
+
+    /**
+     * @return the current node
+     */
+    public NodeView node() {
+        return path[depth];
+    }
+
+    /**
+     * @return the parent of the current node, null for the root
+     */
+    public NodeView parent() {
+        return depth > 0 ? path[depth - 1] : null;
+    }
+
+    /**
+     * @return the index of the current node among the children of its parent, 0 for the root
+     */
+    public int index() {
+        return depth > 0 ? indices[depth - 1] - 1 : 0;
+    }
+
+    /**
+     * @return the depth of the current node, 0 for the root
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Walks the tree in preorder and calls the visitor for every node: {@link TreeVisitor#visit(NodeView)}
+     * when it is reached and {@link TreeVisitor#leave(NodeView)} once its children are done. While a
+     * callback runs, {@link #node()}, {@link #parent()}, {@link #index()} and {@link #depth()} describe the
+     * node passed to it.
+     */
+    public void walk(NodeView root, TreeVisitor visitor) {
+        reset(root, Order.PREORDER);
+        if (root == null) {
+            return;
+        }
+        started = true;
+        if (!visitor.visit(root)) {
+            skipChildren();
+        }
+        while (depth >= 0) {
+            NodeView node = path[depth];
+            if (indices[depth] < node.getNumberChildren()) {
+                push(node.getChild(indices[depth]++));
+                if (!visitor.visit(path[depth])) {
+                    skipChildren();
+                }
+            } else {
+                visitor.leave(node);
+                pop();
+            }
+        }
+    }
+
+    public enum Order {
+        /**
+         * Every node comes before its children.
+         */
+        PREORDER,
+        /**
+         * Every node comes after its children.
+         */
+        POSTORDER
+    }
+}
@@ -0,0 +1,93 @@
+package pgdp.minijava.ast;
+
+/**
+ * Callbacks for a walk over a tree with {@link TreeCursor#walk(NodeView, TreeVisitor)}, one for every
+ * type of node. Each of them returns whether the children of the node should be visited, which they are
+ * by default.
+ */
+public interface TreeVisitor {
+    default boolean visitProgram(NodeView node) {
+        return true;
+    }
+
+    default boolean visitDeclaration(NodeView node) {
+        return true;
+    }
+
+    default boolean visitName(NodeView node) {
+        return true;
+    }
+
+    default boolean visitNumber(NodeView node) {
+        return true;
+    }
+
+    default boolean visitBool(NodeView node) {
+        return true;
+    }
+
+    default boolean visitExpression(NodeView node) {
+        return true;
+    }
+
+    default boolean visitCondition(NodeView node) {
+        return true;
+    }
+
+    default boolean visitComparator(NodeView node) {
+        return true;
+    }
+
+    default boolean visitType(NodeView node) {
+        return true;
+    }
+
+    default boolean visitStatement(NodeView node) {
+        return true;
+    }
+
+    default boolean visitLabel(NodeView node) {
+        return true;
+    }
+
+    default boolean visitSymbol(NodeView node) {
+        return true;
+    }
+
+    default boolean visitFunctionCall(NodeView node) {
+        return true;
+    }
+
+    default boolean visitAssignment(NodeView node) {
+        return true;
+    }
+
+    /**
+     * Called once the children of the node are done, or skipped.
+     */
+    default void leave(NodeView node) {
+
+    }
+
+    /**
+     * Calls the callback for the type of the node.
+     */
+    default boolean visit(NodeView node) {
+        return switch (node.getType()) {
+            case PROGRAM -> visitProgram(node);
+            case DECL -> visitDeclaration(node);
+            case NAME -> visitName(node);
+            case NUMBER -> visitNumber(node);
+            case BOOL -> visitBool(node);
+            case EXPR -> visitExpression(node);
+            case COND -> visitCondition(node);
+            case COMP -> visitComparator(node);
+            case TYPE -> visitType(node);
+            case STMT -> visitStatement(node);
+            case LABEL -> visitLabel(node);
+            case SYMBOL -> visitSymbol(node);
+            case FUNCCALL -> visitFunctionCall(node);
+            case ASS -> visitAssignment(node);
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package pgdp.minijava.exceptions;
+
+public class UncheckedIllegalCharacterException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedIllegalCharacterException(IllegalCharacterException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized IllegalCharacterException getCause() {
+        return (IllegalCharacterException) super.getCause();
+    }
+}
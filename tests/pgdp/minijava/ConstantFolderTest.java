@@ -0,0 +1,83 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.ast.SyntaxTreeNode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantFolderTest {
+    private static String fold(String source) {
+        return Emitter.emit(ConstantFolder.fold(Parser.parse(source, null, true)));
+    }
+
+    @Test
+    public void testArithmetic() {
+        assertEquals("CONST -5\nWRITE\nHALT", fold("write(1 + 2 * -3);"));
+        assertEquals("CONST 3\nWRITE\nHALT", fold("write((10 - 4) / 2 % 4);"));
+        assertEquals("CONST -2147483648\nWRITE\nHALT", fold("write(2147483647 + 1);"));
+        assertEquals("CONST 7\nWRITE\nHALT", fold("write(-(-7));"));
+        assertEquals("CONST 1\nCONST 0\nDIV\nWRITE\nHALT", fold("write(1 / (2 - 2));"));
+    }
+
+    @Test
+    public void testIdentities() {
+        assertEquals("ALLOC 1\nLOAD 0\nCONST 2\nADD\nSTORE 0\nHALT", fold("int a; a = (a * 1 + 0) * (3 - 2) + 2;"));
+        assertEquals("ALLOC 1\nCONST 0\nSTORE 0\nHALT", fold("int a; a = (a + 1) * 0;"));
+        assertEquals("ALLOC 1\nREAD\nCONST 0\nMUL\nSTORE 0\nHALT", fold("int a; a = readInt() * 0;"));
+        assertEquals("ALLOC 1\nLOAD 0\nCONST 0\nDIV\nCONST 0\nMUL\nSTORE 0\nHALT", fold("int a; a = a / 0 * 0;"));
+    }
+
+    @Test
+    public void testConditions() {
+        assertEquals("ALLOC 1\nLOAD 0\nSTORE 0\nHALT", fold("boolean b; b = !!(true && b) || false;"));
+        assertEquals("ALLOC 1\nFALSE\nSTORE 0\nHALT", fold("boolean b; b = b && 1 + 1 > 2;"));
+        assertEquals("ALLOC 1\nTRUE\nSTORE 0\nHALT", fold("boolean b; b = !(3 == 4) | b;"));
+        assertEquals("ALLOC 1\nREAD\nCONST 1\nLESS\nTRUE\nOR\nSTORE 0\nHALT", fold("boolean b; b = readInt() < 1 || true;"));
+    }
+
+    @Test
+    public void testUndeclaredVariables() {
+        for (String source : new String[]{"int x; x = y * 0; write(x);", "boolean b; b = false && c; write(1);",
+                "int x; x = 0 * y; write(x);", "boolean b; b = true || c; write(1);"}) {
+            var diagnostics = new Diagnostics();
+            assertNull(Compiler.compile(source, diagnostics, false, true));
+            assertEquals(1, diagnostics.errorCount());
+            assertTrue(diagnostics.getDiagnostics().get(0).message().endsWith("hasn't been defined in this context"));
+        }
+        assertThrows(IllegalStateException.class, () -> Emitter.checkVariables(Parser.parse("int x; x = y * 0;", null, true), null));
+    }
+
+    @Test
+    public void testUnchanged() {
+        SyntaxTreeNode tree = Parser.parse("int a; a = readInt(); while (a > 0) { a = a - 1; }", null, true);
+        assertSame(tree, ConstantFolder.fold(tree));
+        SyntaxTreeNode debug = Parser.parse("int a; a = 1 + 2;", null, false);
+        assertSame(debug, ConstantFolder.fold(debug));
+    }
+
+    @Test
+    public void testSameBehaviour() {
+        String source = """
+                int a, b;
+                a = readInt();
+                b = 2 * 3 - 6;
+                while (a * 1 > b + 0 && !(1 > 2)) {
+                    write(a * (4 - 3) + b * a);
+                    a = a - (1 + 0);
+                }
+                if (true || readInt() == 0) {
+                    write(100 / (5 - 3));
+                }
+                """;
+        CodeBuffer code = Emitter.emitCode(Parser.parse(source, null, true));
+        CodeBuffer folded = Emitter.emitCode(ConstantFolder.fold(Parser.parse(source, null, true)));
+        assertTrue(folded.size() < code.size());
+        var jvm = new MiniJvm(100_000);
+        for (int a = -3; a < 10; a++) {
+            var expected = jvm.run(code, a, 5);
+            long executed = jvm.getExecuted();
+            assertEquals(expected, jvm.run(folded, a, 5));
+            assertTrue(jvm.getExecuted() < executed);
+        }
+    }
+}
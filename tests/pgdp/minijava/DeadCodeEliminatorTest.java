@@ -0,0 +1,81 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadCodeEliminatorTest {
+    @Test
+    public void testUnreachableBlocks() {
+        var diagnostics = new Diagnostics();
+        String code = Compiler.compile("""
+                int a;
+                a = readInt();
+                while (false) {
+                    write(a);
+                }
+                if (1 < 2) {
+                    write(1);
+                } else {
+                    write(2);
+                }
+                x: if (a == 0) {
+                    return;
+                } else {
+                    return;
+                }
+                write(3);
+                """, diagnostics, false, true);
+        assertEquals("""
+                ALLOC 1
+                READ
+                STORE 0
+                CONST 1
+                WRITE
+                LOAD 0
+                CONST 0
+                EQ
+                FJUMP else1
+                HALT
+                else1:
+                HALT""", code);
+        assertFalse(diagnostics.hasErrors());
+        assertEquals(3, diagnostics.getDiagnostics().size());
+        for (Diagnostics.Diagnostic diagnostic : diagnostics.getDiagnostics()) {
+            assertEquals(Diagnostics.Severity.WARNING, diagnostic.severity());
+        }
+    }
+
+    @Test
+    public void testHaltJumps() {
+        var code = new CodeBuffer();
+        int end = code.newLabel("end", -1);
+        code.instruction(Opcode.READ);
+        code.instruction(Opcode.FJUMP, end);
+        code.instruction(Opcode.JUMP, end);
+        code.label(end);
+        code.instruction(Opcode.HALT);
+        assertTrue(DeadCodeEliminator.eliminate(code, new Diagnostics()));
+        assertEquals("READ\nFJUMP end\nHALT\nend:\nHALT", code.toString());
+        assertFalse(DeadCodeEliminator.eliminate(code, new Diagnostics()));
+    }
+
+    @Test
+    public void testInfiniteLoop() {
+        var diagnostics = new Diagnostics();
+        String code = Compiler.compile("int a; while (true) { a = a + 1; } write(a);", diagnostics, false, true);
+        assertEquals("ALLOC 1\nwhile0:\nLOAD 0\nCONST 1\nADD\nSTORE 0\nJUMP while0", code);
+        assertEquals(1, diagnostics.getDiagnostics().size());
+    }
+
+    @Test
+    public void testReachableCodeIsKept() {
+        var diagnostics = new Diagnostics();
+        String source = "int a; a = readInt(); while (a > 0) { if (a % 2 == 0) { write(a); } a = a - 1; }";
+        CodeBuffer code = Emitter.emitCode(Parser.parse(source, null, true));
+        String before = code.toString();
+        assertFalse(DeadCodeEliminator.eliminate(code, diagnostics));
+        assertEquals(before, code.toString());
+        assertTrue(diagnostics.getDiagnostics().isEmpty());
+    }
+}
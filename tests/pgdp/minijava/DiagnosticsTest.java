@@ -0,0 +1,117 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagnosticsTest {
+    @Test
+    public void testAllErrorsInOnePass() {
+        var source = """
+                int a;
+                a = 1 + ;
+                b = 2 # 3;
+                while (a < ) { a = a + 1; }
+                int c d;
+                { c = x; }
+                write("oops);
+                """;
+        var diagnostics = new Diagnostics();
+        assertNull(Compiler.compile(source, diagnostics));
+        assertEquals(List.of(
+                "2:9: error: Unexpected symbol ; at line 2",
+                "3:7: error: Illegal character #",
+                "4:12: error: Unexpected symbol ) at line 4",
+                "5:7: error: Expected semicolon at line 5",
+                "7:7: error: Unclosed literal \"",
+                "7:1: error: Unexpected end of input at line 7",
+                "3:1: error: b hasn't been defined in this context",
+                "6:7: error: x hasn't been defined in this context"
+        ), diagnostics.toString().lines().toList());
+        assertEquals(8, diagnostics.errorCount());
+        assertEquals(Diagnostics.Phase.LEXICAL, diagnostics.getDiagnostics().get(1).phase());
+        assertEquals(Diagnostics.Phase.SEMANTIC, diagnostics.getDiagnostics().get(7).phase());
+    }
+
+    @Test
+    public void testRecoveryKeepsBlocks() {
+        var diagnostics = new Diagnostics();
+        var tree = Parser.parse("int a; while (a < 3) { a = ; a = a + 1; } write(a);", diagnostics);
+        assertEquals(1, diagnostics.errorCount());
+        // the broken assignment is skipped up to its semicolon, the loop and the write are kept
+        assertEquals(3, tree.getNumberChildren());
+        var body = tree.getChild(1).getChild(4);
+        assertEquals("}", body.getChild(body.getNumberChildren() - 1).getValue());
+
+        diagnostics = new Diagnostics();
+        Parser.parse("int a;\nwhile (a < 3) { a = a + 1;", diagnostics);
+        assertEquals("2:17: error: Unexpected end of input at line 2\n", diagnostics.toString());
+    }
+
+    @Test
+    public void testUnmatchedBrace() {
+        var diagnostics = new Diagnostics();
+        assertNull(Compiler.compile("}}}\nint a; a = 1; write(b);", diagnostics));
+        assertEquals(List.of(
+                "1:1: error: Unexpected symbol } at line 1",
+                "1:2: error: Unexpected symbol } at line 1",
+                "1:3: error: Unexpected symbol } at line 1",
+                "2:21: error: b hasn't been defined in this context"
+        ), diagnostics.toString().lines().toList());
+        assertEquals(Diagnostics.Phase.SYNTAX, diagnostics.getDiagnostics().get(0).phase());
+    }
+
+    @Test
+    public void testStrayTokens() {
+        for (boolean debug : new boolean[]{false, true}) {
+            var diagnostics = new Diagnostics();
+            assertNull(Compiler.compile("int a;\n+ a;\nelse { a = 1; }\nwrite(a);", diagnostics, debug));
+            assertEquals(List.of(
+                    "2:1: error: Unexpected symbol + at line 2",
+                    "3:1: error: Unexpected symbol else at line 3"
+            ), diagnostics.toString().lines().toList());
+            assertEquals(Diagnostics.Phase.SYNTAX, diagnostics.getDiagnostics().get(1).phase());
+        }
+    }
+
+    @Test
+    public void testEmitterErrorPositions() {
+        for (boolean debug : new boolean[]{false, true}) {
+            var diagnostics = new Diagnostics();
+            assertNull(Compiler.compile("int x;\nx = 99999999999;", diagnostics, debug));
+            assertEquals("2:5: error: Invalid number 99999999999\n", diagnostics.toString());
+
+            diagnostics = new Diagnostics();
+            assertNull(Compiler.compile("int x;\n  write();", diagnostics, debug));
+            assertEquals("2:3: error: write expects a value\n", diagnostics.toString());
+
+            diagnostics = new Diagnostics();
+            assertNull(Compiler.compile("int x; x = 1;\nx = foo();", diagnostics, debug));
+            assertEquals("2:5: error: This compiler does not support CALL and RET\n", diagnostics.toString());
+        }
+    }
+
+    @Test
+    public void testValidProgram() {
+        var diagnostics = new Diagnostics();
+        var source = "int a; a = readInt(); while (a > 0) { write(a); a = a - 1; }";
+        assertEquals(Emitter.emit(Parser.parseFromString(source)), Compiler.compile(source, diagnostics));
+        assertFalse(diagnostics.hasErrors());
+        assertEquals("[]", diagnostics.toJson());
+    }
+
+    @Test
+    public void testJson() {
+        var diagnostics = new Diagnostics();
+        diagnostics.error(Diagnostics.Phase.SYNTAX, 3, 14, "Unexpected symbol \" at line 3");
+        diagnostics.warning(Diagnostics.Phase.SEMANTIC, 0, 0, "tab\there");
+        assertEquals("[{\"severity\":\"error\",\"phase\":\"syntax\",\"line\":3,\"column\":14,"
+                + "\"message\":\"Unexpected symbol \\\" at line 3\"},"
+                + "{\"severity\":\"warning\",\"phase\":\"semantic\",\"line\":0,\"column\":0,"
+                + "\"message\":\"tab\\there\"}]", diagnostics.toJson());
+        assertTrue(diagnostics.hasErrors());
+        assertEquals(1, diagnostics.errorCount());
+    }
+}
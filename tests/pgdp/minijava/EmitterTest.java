@@ -0,0 +1,90 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmitterTest {
+    @Test
+    public void testInstructionSink() {
+        var tree = Parser.parse("int a = 2; while (a > 0) { a = a - 1; }", null, true);
+        List<String> calls = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        Emitter.emit(tree, new InstructionSink() {
+            @Override
+            public int newLabel(String name, int number) {
+                labels.add(name + number);
+                return labels.size() - 1;
+            }
+
+            @Override
+            public void instruction(Opcode opcode) {
+                calls.add(opcode.name());
+            }
+
+            @Override
+            public void instruction(Opcode opcode, int operand) {
+                switch (opcode.getOperand()) {
+                    case LABEL -> calls.add(opcode == Opcode.LABEL ? labels.get(operand) + ":" : opcode + "->" + labels.get(operand));
+                    default -> calls.add(opcode + "(" + operand + ")");
+                }
+            }
+        });
+        assertEquals(List.of("ALLOC(1)", "CONST(2)", "STORE(0)", "while0:", "LOAD(0)", "CONST(0)", "LEQ", "NOT",
+                "FJUMP->whileEnd0", "LOAD(0)", "CONST(1)", "SUB", "STORE(0)", "JUMP->while0", "whileEnd0:", "HALT"),
+                calls);
+    }
+
+    @Test
+    public void testCodeBuffer() throws IOException {
+        var tree = Parser.parse("int a; int b; x: while (true) { if (a < 1) { a = -1; } } write(a);", null, true);
+        CodeBuffer code = Emitter.emitCode(tree);
+        assertEquals(16, code.size());
+        assertEquals(Opcode.ALLOC, code.opcode(0));
+        assertEquals(2, code.operand(0));
+        assertEquals(Opcode.LABEL, code.opcode(1));
+        assertEquals("while", code.labelName(code.operand(1)));
+        assertEquals(Opcode.JUMP, code.opcode(11));
+        assertEquals(code.operand(1), code.operand(11));
+        var out = new StringWriter();
+        code.writeTo(out);
+        assertEquals(Emitter.emit(tree), out.toString());
+        assertEquals("""
+                ALLOC 2
+                while0:
+                TRUE
+                FJUMP whileEnd0
+                LOAD 0
+                CONST 1
+                LESS
+                FJUMP else0
+                CONST -1
+                STORE 0
+                else0:
+                JUMP while0
+                whileEnd0:
+                LOAD 0
+                WRITE
+                HALT""", out.toString());
+    }
+
+    @Test
+    public void testCleanUpMergesRuns() {
+        var tree = Parser.parse("int a; int b; int c; x: y: while (true) { } write(a);", null, true);
+        assertEquals("""
+                ALLOC 3
+                while0:
+                TRUE
+                FJUMP whileEnd0
+                JUMP while0
+                whileEnd0:
+                LOAD 0
+                WRITE
+                HALT""", Emitter.emit(tree));
+    }
+}
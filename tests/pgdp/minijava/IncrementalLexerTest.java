@@ -0,0 +1,91 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalLexerTest {
+    private static final String PROGRAM = """
+            int a, b; // counters
+            a = readInt();
+            /* sum up
+               everything */ b = 0;
+            while (a >= 1) {
+                b = b + a * 2;\r
+                a = a - 1;
+            }
+            write(b);
+            """;
+
+    @Test
+    public void testSimpleEdits() throws IllegalCharacterException {
+        assertRelexed(PROGRAM, PROGRAM.indexOf("b + a"), 1, "sum");
+        assertRelexed(PROGRAM, PROGRAM.indexOf(">="), 2, "<");
+        assertRelexed(PROGRAM, PROGRAM.indexOf("readInt"), 0, "\n\n");
+        assertRelexed(PROGRAM, 0, 0, "boolean c;");
+        assertRelexed(PROGRAM, PROGRAM.length(), 0, "c = 1;");
+        assertRelexed(PROGRAM, 0, PROGRAM.length(), "");
+    }
+
+    @Test
+    public void testCommentEdits() throws IllegalCharacterException {
+        assertRelexed(PROGRAM, PROGRAM.indexOf("a = readInt"), 0, "/*");
+        assertRelexed(PROGRAM, PROGRAM.indexOf("*/"), 2, "");
+        assertRelexed(PROGRAM, PROGRAM.indexOf("// counters"), 1, "");
+        assertRelexed(PROGRAM, PROGRAM.indexOf("everything"), 0, "*/ a = 1; /*");
+    }
+
+    @Test
+    public void testRandomEdits() throws IllegalCharacterException {
+        String[] snippets = {"", " ", "\n", "\r\n", "x", "12", "=", "/*", "*/", "//", "while", "(", ";"};
+        for (boolean keepComments : new boolean[]{true, false}) {
+            var random = new Random(42);
+            String source = PROGRAM;
+            TokenBuffer tokens = TokenBuffer.tokenize(source, keepComments);
+            for (int i = 0; i < 500; i++) {
+                int offset = random.nextInt(source.length() + 1);
+                int removed = random.nextInt(Math.min(4, source.length() - offset) + 1);
+                String inserted = snippets[random.nextInt(snippets.length)];
+                String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+                tokens = IncrementalLexer.relex(tokens, offset, removed, inserted, keepComments);
+                assertSameTokens(TokenBuffer.tokenize(edited, keepComments), tokens);
+                source = edited;
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidEdit() throws IllegalCharacterException {
+        var tokens = TokenBuffer.tokenize("a = 1;", false);
+        assertThrows(IllegalArgumentException.class, () -> IncrementalLexer.relex(tokens, 4, 5, "", false));
+    }
+
+    private static void assertRelexed(String source, int offset, int removed, String inserted)
+            throws IllegalCharacterException {
+        String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+        for (boolean keepComments : new boolean[]{true, false}) {
+            var relexed = IncrementalLexer.relex(TokenBuffer.tokenize(source, keepComments), offset, removed,
+                    inserted, keepComments);
+            assertEquals(edited, relexed.getSource().toString());
+            assertSameTokens(TokenBuffer.tokenize(edited, keepComments), relexed);
+        }
+    }
+
+    private static void assertSameTokens(TokenBuffer expected, TokenBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.kind(i), actual.kind(i));
+            assertEquals(expected.start(i), actual.start(i));
+            assertEquals(expected.text(i), actual.text(i));
+            assertEquals(expected.line(i), actual.line(i));
+            if (expected.kind(i) == TokenKind.IDENTIFIER) {
+                assertEquals(actual.text(i), actual.getSymbols().name(actual.value(i)));
+            } else {
+                assertEquals(expected.value(i), actual.value(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.ast.SyntaxTreeNode;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalParserTest {
+    private static final String PROGRAM = """
+            int a, b; // counters
+            a = readInt(); b = 0;
+            /* sum up
+               everything */
+            while (a >= 1) {
+                b = b + a * 2;
+                a = a - 1;
+            }
+            write(b);
+            c: { int c = b; write(c); }
+            """;
+
+    @Test
+    public void testReusesUnchangedLines() throws IllegalCharacterException {
+        for (boolean lean : new boolean[]{false, true}) {
+            var parser = new IncrementalParser(PROGRAM, lean);
+            SyntaxTreeNode before = parser.getTree();
+            assertEquals(6, before.getNumberChildren());
+
+            // an edit inside the loop only parses the loop again
+            String source = edit(parser, PROGRAM, PROGRAM.indexOf("a * 2"), 1, "b", lean);
+            SyntaxTreeNode after = parser.getTree();
+            assertEquals(1, parser.getParsedLines());
+            for (int i = 0; i < after.getNumberChildren(); i++) {
+                if (i == 3) {
+                    assertNotSame(before.getChild(i), after.getChild(i));
+                } else {
+                    assertSame(before.getChild(i), after.getChild(i));
+                }
+            }
+
+            // moving the second statement of a line to another column parses it again
+            source = edit(parser, source, source.indexOf("readInt"), 0, "  ", lean);
+            assertEquals(2, parser.getParsedLines());
+
+            // a new line break moves every line behind it
+            edit(parser, source, source.indexOf("write(b)"), 0, "\n", lean);
+            assertEquals(2, parser.getParsedLines());
+        }
+    }
+
+    @Test
+    public void testMovedLines() throws IllegalCharacterException {
+        for (boolean lean : new boolean[]{false, true}) {
+            // a line moved down by one line and left by 31 columns, which a hash of its position can't tell apart
+            String source = "int x, y;\nx = 1;" + " ".repeat(25) + "y = 2;\n";
+            var parser = new IncrementalParser(source, lean);
+            edit(parser, source, source.indexOf("y = 2"), 0, "\n", lean);
+
+            // and moved back up
+            source = "int x, y;\nx = 1;\ny = 2;\n";
+            parser = new IncrementalParser(source, lean);
+            edit(parser, source, source.indexOf("\ny = 2"), 1, " ".repeat(25), lean);
+        }
+    }
+
+    @Test
+    public void testRecoversFromErrors() throws IllegalCharacterException {
+        var parser = new IncrementalParser(PROGRAM, true);
+        int offset = PROGRAM.indexOf("b = 0");
+        // a block that isn't closed
+        assertThrows(IllegalStateException.class, () -> parser.edit(offset, 0, "{"));
+        assertNull(parser.getTree());
+        parser.edit(offset, 1, "");
+        assertSameTree(Parser.parse(PROGRAM, null, true), parser.getTree());
+    }
+
+    @Test
+    public void testRandomEdits() throws IllegalCharacterException {
+        String[] snippets = {"", " ", "\n", "x", "12", "=", "/*", "*/", "{", "}", ";", "a = 1;", "b = a + 2;"};
+        for (boolean lean : new boolean[]{false, true}) {
+            var random = new Random(42);
+            String source = PROGRAM;
+            var parser = new IncrementalParser(source, lean);
+            for (int i = 0; i < 500; i++) {
+                int offset = random.nextInt(source.length() + 1);
+                int removed = random.nextInt(Math.min(4, source.length() - offset) + 1);
+                String inserted = snippets[random.nextInt(snippets.length)];
+                String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+                SyntaxTreeNode expected;
+                try {
+                    expected = Parser.parse(edited, null, lean);
+                } catch (IllegalStateException | UnsupportedOperationException e) {
+                    expected = null;
+                }
+                if (expected == null) {
+                    assertThrows(RuntimeException.class, () -> parser.edit(offset, removed, inserted));
+                    // go on from a source that parses
+                    parser.edit(offset, inserted.length(), source.substring(offset, offset + removed));
+                } else {
+                    parser.edit(offset, removed, inserted);
+                    assertSameTree(expected, parser.getTree());
+                    source = edited;
+                }
+            }
+        }
+    }
+
+    private static String edit(IncrementalParser parser, String source, int offset, int removed, String inserted,
+                               boolean lean) throws IllegalCharacterException {
+        String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+        parser.edit(offset, removed, inserted);
+        assertSameTree(Parser.parse(edited, null, lean), parser.getTree());
+        return edited;
+    }
+
+    private static void assertSameTree(SyntaxTreeNode expected, SyntaxTreeNode actual) {
+        assertEquals(expected, actual);
+        Iterator<SyntaxTreeNode> nodes = actual.iterator();
+        for (SyntaxTreeNode node : expected) {
+            SyntaxTreeNode other = nodes.next();
+            assertEquals(node.getLine(), other.getLine());
+            assertEquals(node.getColumn(), other.getColumn());
+            assertEquals(node.getSymbol() < 0, other.getSymbol() < 0);
+        }
+    }
+}
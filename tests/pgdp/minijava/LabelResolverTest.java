@@ -0,0 +1,39 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LabelResolverTest {
+    @Test
+    public void testRunOfLabels() {
+        var code = new CodeBuffer();
+        int a = code.newLabel("a", -1);
+        int b = code.newLabel("b", -1);
+        int c = code.newLabel("c", -1);
+        code.instruction(Opcode.JUMP, a);
+        code.label(a);
+        code.label(b);
+        code.label(c);
+        code.instruction(Opcode.FJUMP, b);
+        code.instruction(Opcode.JUMP, c);
+        LabelResolver.resolve(code);
+        assertEquals("JUMP c\nc:\nFJUMP c\nJUMP c", code.toString());
+    }
+
+    @Test
+    public void testPrefixNamedLabels() {
+        // whileEnd1 is merged into while2, which must leave whileEnd10 alone
+        var source = new StringBuilder("int a;");
+        for (int i = 0; i < 12; i++) {
+            source.append(" while (a < ").append(i).append(") { a = a + 1; }");
+        }
+        String code = Emitter.emit(Parser.parse(source, null, true));
+        assertTrue(code.contains("FJUMP while2\n"));
+        assertTrue(code.contains("FJUMP while11\n"));
+        assertTrue(code.contains("FJUMP whileEnd11\n"));
+        assertTrue(code.contains("JUMP while10\n"));
+        assertFalse(code.contains("while20"));
+        assertFalse(code.contains("whileEnd1\n"));
+    }
+}
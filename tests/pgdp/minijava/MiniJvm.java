@@ -0,0 +1,128 @@
+package pgdp.minijava;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs code on a minimal miniJVM, to check that optimized code still does what the original did. The
+ * variables live at the bottom of the stack, below the values, and may only be used once allocated.
+ * Booleans are 0 and 1, READ takes the given inputs in order and reads 0 once they are used up.
+ */
+public class MiniJvm {
+    private final int maxSteps;
+    private final List<Integer> output = new ArrayList<>();
+    private long executed;
+    private int footprint;
+
+    /**
+     * @param maxSteps the number of instructions after which a program is taken to loop forever
+     */
+    public MiniJvm(int maxSteps) {
+        this.maxSteps = maxSteps;
+    }
+
+    public List<Integer> run(CodeBuffer code, int... input) {
+        int[] positions = new int[code.labelCount()];
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == Opcode.LABEL) {
+                positions[code.operand(i)] = i;
+            }
+        }
+        output.clear();
+        executed = 0;
+        footprint = 0;
+        int[] stack = new int[16];
+        int sp = 0;
+        int allocated = 0;
+        int read = 0;
+        int pc = 0;
+        while (pc < code.size()) {
+            Opcode opcode = code.opcode(pc);
+            int operand = code.operand(pc);
+            pc++;
+            if (opcode == Opcode.LABEL) {
+                continue;
+            }
+            if (++executed > maxSteps) {
+                throw new IllegalStateException("Exceeded " + maxSteps + " steps");
+            }
+            int needed = sp + (opcode == Opcode.ALLOC ? operand : 1);
+            if (needed >= stack.length) {
+                stack = Arrays.copyOf(stack, needed * 2);
+            }
+            switch (opcode) {
+                case CONST -> stack[sp++] = operand;
+                case LOAD -> stack[sp++] = stack[slot(operand, allocated)];
+                case STORE -> stack[slot(operand, allocated)] = stack[--sp];
+                case ALLOC -> {
+                    if (sp != allocated) {
+                        throw new IllegalStateException("ALLOC with values on the stack");
+                    }
+                    Arrays.fill(stack, sp, sp + operand, 0);
+                    sp += operand;
+                    allocated = sp;
+                }
+                case ADD, SUB, MUL, DIV, MOD, AND, OR, EQ, NEQ, LESS, LEQ -> {
+                    int b = stack[--sp];
+                    int a = stack[--sp];
+                    stack[sp++] = binary(opcode, a, b);
+                }
+                case NEG -> stack[sp - 1] = -stack[sp - 1];
+                case NOT -> stack[sp - 1] = stack[sp - 1] == 0 ? 1 : 0;
+                case TRUE -> stack[sp++] = 1;
+                case FALSE -> stack[sp++] = 0;
+                case READ -> stack[sp++] = read < input.length ? input[read++] : 0;
+                case WRITE -> output.add(stack[--sp]);
+                case JUMP -> pc = positions[operand];
+                case FJUMP -> {
+                    if (stack[--sp] == 0) {
+                        pc = positions[operand];
+                    }
+                }
+                case HALT -> pc = code.size();
+                default -> throw new IllegalStateException("Unexpected opcode " + opcode);
+            }
+            footprint = Math.max(footprint, sp);
+        }
+        return List.copyOf(output);
+    }
+
+    private static int slot(int slot, int allocated) {
+        if (slot >= allocated) {
+            throw new IllegalStateException("Slot " + slot + " isn't allocated");
+        }
+        return slot;
+    }
+
+    private static int binary(Opcode opcode, int a, int b) {
+        return switch (opcode) {
+            case ADD -> a + b;
+            case SUB -> a - b;
+            case MUL -> a * b;
+            case DIV -> a / b;
+            case MOD -> a % b;
+            case AND -> a & b;
+            case OR -> a | b;
+            case EQ -> a == b ? 1 : 0;
+            case NEQ -> a != b ? 1 : 0;
+            case LESS -> a < b ? 1 : 0;
+            case LEQ -> a <= b ? 1 : 0;
+            default -> throw new IllegalStateException("Not a binary operation " + opcode);
+        };
+    }
+
+    /**
+     * @return the number of instructions the last run executed, labels not included
+     */
+    public long getExecuted() {
+        return executed;
+    }
+
+    /**
+     * @return the most cells of the stack the last run used at once, variables included
+     */
+    public int getFootprint() {
+        return footprint;
+    }
+}
@@ -0,0 +1,74 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelLexerTest {
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @Test
+    public void testSameAsSequential() throws IllegalCharacterException {
+        String source = program(2_000, false);
+        for (boolean keepComments : new boolean[]{true, false}) {
+            assertSameTokens(TokenBuffer.tokenize(source, keepComments), ParallelLexer.tokenize(source, keepComments, pool));
+        }
+    }
+
+    @Test
+    public void testCommentsAcrossChunks() throws IllegalCharacterException {
+        var out = new StringBuilder();
+        out.append("int a; /* starts here\r\n");
+        // a comment much longer than a chunk, with text that looks like broken code
+        for (int i = 0; i < 20_000; i++) {
+            out.append("  don't \"lex this ").append(i).append(" ä\n");
+        }
+        out.append("*/ a = 1;\n");
+        out.append(program(1_000, true));
+        String source = out.toString();
+        for (boolean keepComments : new boolean[]{true, false}) {
+            assertSameTokens(TokenBuffer.tokenize(source, keepComments), ParallelLexer.tokenize(source, keepComments, pool));
+        }
+    }
+
+    @Test
+    public void testErrorsAreReported() {
+        String source = program(1_000, false) + "write(\"unterminated);\n" + program(1_000, false);
+        var expected = assertThrows(IllegalCharacterException.class, () -> TokenBuffer.tokenize(source, false));
+        var actual = assertThrows(IllegalCharacterException.class, () -> ParallelLexer.tokenize(source, false, pool));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    private static String program(int blocks, boolean comments) {
+        var out = new StringBuilder();
+        for (int b = 0; b < blocks; b++) {
+            out.append("block").append(b).append(": {\n");
+            out.append("    int x").append(b % 37).append(" = readInt(); // first\n");
+            if (comments) {
+                out.append("    /* a comment\n       over two lines */\n");
+            }
+            out.append("    while (x <= ").append(b).append(" && !done) { x = x * 2 - 1; }\r\n");
+            out.append("    write(\"/* not a comment\");\n");
+            out.append("}\n");
+        }
+        return out.toString();
+    }
+
+    private static void assertSameTokens(TokenBuffer expected, TokenBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getSymbols().size(), actual.getSymbols().size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.kind(i), actual.kind(i));
+            assertEquals(expected.start(i), actual.start(i));
+            assertEquals(expected.length(i), actual.length(i));
+            assertEquals(expected.line(i), actual.line(i));
+            assertEquals(expected.value(i), actual.value(i));
+        }
+        for (int id = 0; id < expected.getSymbols().size(); id++) {
+            assertEquals(expected.getSymbols().name(id), actual.getSymbols().name(id));
+        }
+    }
+}
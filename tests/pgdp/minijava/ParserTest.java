@@ -497,4 +497,196 @@ class ParserTest {
         assertEquals(expectedTree, tree);
         assertEquals(5, pos);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPrecedence() throws IllegalCharacterException {
+        // a - b - c associates to the left, * binds stronger than +
+        var tokens = Tokenizer.tokenize("a - b - c * d");
+        var tree = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        var pos = Parser.parseExpression(tokens, 0, tree);
+        var expectedTree = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        var left = binary(SyntaxTreeNode.Type.EXPR, name("a"), "-", name("b"));
+        expectedTree.addChild(binary(SyntaxTreeNode.Type.EXPR, left, "-",
+                binary(SyntaxTreeNode.Type.EXPR, name("c"), "*", name("d"))));
+        assertEquals(expectedTree, tree);
+        assertEquals(7, pos);
+
+        // && binds stronger than ||, ! binds strongest
+        tokens = Tokenizer.tokenize("!a && b || c < 1");
+        tree = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        pos = Parser.parseCondition(tokens, 0, tree);
+        expectedTree = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        var not = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "");
+        not.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, "!"));
+        not.addChild(condition(name("a")));
+        var comparison = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "");
+        comparison.addChild(name("c"));
+        comparison.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.COMP, "<"));
+        var one = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+        one.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "1"));
+        comparison.addChild(one);
+        expectedTree.addChild(binary(SyntaxTreeNode.Type.COND,
+                binary(SyntaxTreeNode.Type.COND, not, "&&", condition(name("b"))), "||", comparison));
+        assertEquals(expectedTree, tree);
+        assertEquals(8, pos);
+
+        assertEquals("CONST 10\nCONST 4\nSUB\nCONST 3\nSUB\nWRITE\nHALT", Emitter.emit(Parser.parseFromString("write(10 - 4 - 3);")));
+        assertEquals("ALLOC 1\nTRUE\nNOT\nSTORE 0\nHALT", Emitter.emit(Parser.parseFromString("boolean b; b = !true;")));
+    }
+
+    @Test
+    public void testLongExpressions() {
+        var text = new StringBuilder("int a; a = 1");
+        for (int i = 0; i < 100_000; i++) {
+            text.append(" + a");
+        }
+        text.append(";");
+        var tree = Parser.parseFromString(text.toString());
+        var expression = tree.getChild(1).getChild(0).getChild(2);
+        int depth = 0;
+        while (expression.getNumberChildren() == 3) {
+            expression = expression.getChild(0);
+            depth++;
+        }
+        assertTrue(depth <= 17, "depth " + depth);
+        assertTrue(Emitter.emit(tree).endsWith("ADD\nSTORE 0\nHALT"));
+    }
+
+    @Test
+    public void testDeepNesting() {
+        int depth = 100_000;
+        var text = new StringBuilder("int x; x = 0;\n");
+        text.append("while (x < 1) {\n".repeat(depth));
+        text.append("x = ").append("-(".repeat(depth)).append("x").append(")".repeat(depth)).append(" + 1;\n");
+        text.append("if (!(!(x == 1))) { write(x); } else { ; }\n");
+        text.append("}\n".repeat(depth));
+        var tree = Parser.parseFromString(text.toString());
+        var same = Parser.parseFromString(text.toString());
+        assertEquals(tree, same);
+        assertEquals(tree.toString(), same.toString());
+        assertTrue(tree.toString().endsWith("{ SYMBOL:} }] }] }] }"));
+
+        var loop = tree.getChild(2);
+        for (int i = 0; i < depth; i++) {
+            assertEquals("while", loop.getChild(0).getValue());
+            loop = loop.getChild(4).getChild(1);
+        }
+        assertEquals(SyntaxTreeNode.Type.ASS, loop.getChild(0).getType());
+
+        String code = Emitter.emit(tree);
+        assertTrue(code.startsWith("ALLOC 1\nCONST 0\nSTORE 0\nwhile0:\nLOAD 0\nCONST 1\nLESS\nFJUMP whileEnd0\nwhile1:\n"));
+        assertTrue(code.contains("LOAD 0\n" + "NEG\n".repeat(depth) + "CONST 1\nADD\nSTORE 0\n"));
+        assertTrue(code.endsWith("JUMP while1\nwhileEnd1:\nJUMP while0\nwhileEnd0:\nHALT"));
+    }
+
+    @Test
+    public void testLeanTree() {
+        var text = "int a = 1; outer: while (a < 3) { a = (a + 1) * -a; } if (!(a == 4)) write(a); else ;";
+        var tree = Parser.parse(text, null, true);
+
+        var expectedTree = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        var declaration = new SyntaxTreeNode(SyntaxTreeNode.Type.DECL, "");
+        declaration.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.TYPE, "int"));
+        declaration.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, "a"));
+        var one = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+        one.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "1"));
+        declaration.addChild(one);
+        expectedTree.addChild(declaration);
+
+        var labeled = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, "");
+        labeled.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.LABEL, "outer"));
+        var loop = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, "while");
+        var three = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+        three.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "3"));
+        loop.addChild(lean(SyntaxTreeNode.Type.COND, name("a"), "<", three));
+        var block = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, "{");
+        var assignment = new SyntaxTreeNode(SyntaxTreeNode.Type.ASS, "");
+        assignment.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, "a"));
+        var negated = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "-");
+        negated.addChild(name("a"));
+        assignment.addChild(lean(SyntaxTreeNode.Type.EXPR, lean(SyntaxTreeNode.Type.EXPR, name("a"), "+", one), "*", negated));
+        block.addChild(assignment);
+        loop.addChild(block);
+        labeled.addChild(loop);
+        expectedTree.addChild(labeled);
+
+        var branch = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, "if");
+        var four = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+        four.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "4"));
+        var not = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "!");
+        not.addChild(lean(SyntaxTreeNode.Type.COND, name("a"), "==", four));
+        branch.addChild(not);
+        var call = new SyntaxTreeNode(SyntaxTreeNode.Type.FUNCCALL, "");
+        call.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, "write"));
+        call.addChild(name("a"));
+        branch.addChild(call);
+        branch.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, ";"));
+        expectedTree.addChild(branch);
+        assertEquals(expectedTree, tree);
+
+        var debug = Parser.parseFromString(text);
+        assertEquals(Emitter.emit(debug), Emitter.emit(tree));
+        assertEquals(Emitter.emit(debug), Compiler.compile(text, new Diagnostics()));
+        assertEquals(Emitter.emit(debug), Compiler.compile(text, new Diagnostics(), true));
+    }
+
+    @Test
+    public void testLazyBlocks() throws IllegalCharacterException {
+        var text = "int a; while (a < 3) { a = a + 1; { int b = a; if (b > 1) { write(b); } } } { a = ; }";
+        var tokens = TokenBuffer.tokenize(text, false);
+        for (boolean lean : new boolean[] {false, true}) {
+            var diagnostics = new Diagnostics();
+            var tree = Parser.parseLazy(tokens, diagnostics, lean);
+            assertEquals(3, tree.getNumberChildren());
+            var broken = tree.getChild(2);
+            assertTrue(broken.isLazy());
+            assertFalse(diagnostics.hasErrors());
+
+            // the body of the broken block is only parsed when it is asked for
+            var eager = Parser.parse(text, new Diagnostics(), lean);
+            assertEquals(eager.getChild(2).getNumberChildren(), broken.getNumberChildren());
+            assertFalse(broken.isLazy());
+            assertTrue(broken.isFrozen());
+            assertEquals(1, diagnostics.errorCount());
+
+            var loop = tree.getChild(1);
+            var block = lean ? loop.getChild(1) : loop.getChild(4);
+            assertTrue(block.isLazy());
+            assertEquals(eager, tree);
+            assertFalse(block.isLazy());
+        }
+
+        var program = "int a = 1; while (a < 3) { a = a + 1; { write(a); } }";
+        var lazy = Parser.parseLazy(TokenBuffer.tokenize(program, false), null, true);
+        assertEquals(Compiler.compile(program, new Diagnostics()), Emitter.emit(lazy));
+        assertThrows(IllegalStateException.class,
+                () -> Parser.parseLazy(TokenBuffer.tokenize("int a; { a = 1;", false), null, true));
+    }
+
+    private static SyntaxTreeNode lean(SyntaxTreeNode.Type type, SyntaxTreeNode left, String operator, SyntaxTreeNode right) {
+        var node = new SyntaxTreeNode(type, operator);
+        node.addChild(left);
+        node.addChild(right);
+        return node;
+    }
+
+    private static SyntaxTreeNode name(String name) {
+        var node = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, name));
+        return node;
+    }
+
+    private static SyntaxTreeNode condition(SyntaxTreeNode expression) {
+        var node = new SyntaxTreeNode(SyntaxTreeNode.Type.COND, "");
+        node.addChild(expression);
+        return node;
+    }
+
+    private static SyntaxTreeNode binary(SyntaxTreeNode.Type type, SyntaxTreeNode left, String operator, SyntaxTreeNode right) {
+        var node = new SyntaxTreeNode(type, "");
+        node.addChild(left);
+        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, operator));
+        node.addChild(right);
+        return node;
+    }
+}
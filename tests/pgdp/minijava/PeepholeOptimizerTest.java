@@ -0,0 +1,132 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeepholeOptimizerTest {
+    private static final String PROGRAM = """
+            int a, b, c;
+            a = readInt();
+            b = readInt();
+            while (a > 0) {
+                c = c + 0;
+                if (a >= b) {
+                    write(a * 1);
+                } else {
+                }
+                if (!(a != b)) {
+                    write(0);
+                }
+                a = a - 1;
+            }
+            while (false) {
+                write(b);
+            }
+            write(c);
+            """;
+
+    @Test
+    public void testRules() {
+        var code = new CodeBuffer();
+        int start = code.newLabel("start", -1);
+        int middle = code.newLabel("middle", -1);
+        int end = code.newLabel("end", -1);
+        code.label(start);
+        code.instruction(Opcode.LOAD, 0);
+        code.instruction(Opcode.STORE, 0);
+        code.instruction(Opcode.LOAD, 0);
+        code.instruction(Opcode.CONST, 1);
+        code.instruction(Opcode.LEQ);
+        code.instruction(Opcode.NOT);
+        code.instruction(Opcode.FJUMP, middle);
+        code.instruction(Opcode.TRUE);
+        code.instruction(Opcode.NOT);
+        code.instruction(Opcode.NOT);
+        code.instruction(Opcode.FJUMP, end);
+        code.label(middle);
+        code.instruction(Opcode.JUMP, end);
+        code.instruction(Opcode.CONST, 2);
+        code.instruction(Opcode.WRITE);
+        code.label(end);
+        code.instruction(Opcode.HALT);
+        assertTrue(PeepholeOptimizer.standard().optimize(code));
+        assertEquals("""
+                start:
+                CONST 1
+                LOAD 0
+                LESS
+                FJUMP end
+                middle:
+                JUMP end
+                CONST 2
+                WRITE
+                end:
+                HALT""", code.toString());
+        assertFalse(PeepholeOptimizer.standard().optimize(code));
+    }
+
+    @Test
+    public void testJumpCycle() {
+        var code = new CodeBuffer();
+        int a = code.newLabel("a", -1);
+        int b = code.newLabel("b", -1);
+        code.instruction(Opcode.READ);
+        code.instruction(Opcode.FJUMP, a);
+        code.instruction(Opcode.HALT);
+        code.label(a);
+        code.instruction(Opcode.JUMP, b);
+        code.instruction(Opcode.HALT);
+        code.label(b);
+        code.instruction(Opcode.JUMP, a);
+        assertFalse(PeepholeOptimizer.standard().optimize(code));
+        assertEquals("READ\nFJUMP a\nHALT\na:\nJUMP b\nHALT\nb:\nJUMP a", code.toString());
+    }
+
+    @Test
+    public void testCustomRule() {
+        PeepholeOptimizer.Rule doubleNegation = window -> {
+            if (window.opcode(0) == Opcode.NEG && window.opcode(1) == Opcode.NEG) {
+                return 2;
+            }
+            return 0;
+        };
+        CodeBuffer code = Emitter.emitCode(Parser.parse("write(-(-readInt()));", null, true));
+        assertEquals("READ\nNEG\nNEG\nWRITE\nHALT", code.toString());
+        assertTrue(new PeepholeOptimizer(doubleNegation).optimize(code));
+        assertEquals("READ\nWRITE\nHALT", code.toString());
+    }
+
+    @Test
+    public void testSameBehaviour() throws IOException {
+        var jvm = new MiniJvm(1_000_000);
+        for (String source : new String[]{PROGRAM, Files.readString(Path.of("resources/prim.java")),
+                Files.readString(Path.of("resources/input.java"))}) {
+            CodeBuffer code = Emitter.emitCode(Parser.parse(source, null, true));
+            CodeBuffer optimized = Emitter.emitCode(Parser.parse(source, null, true));
+            PeepholeOptimizer.standard().optimize(optimized);
+            assertTrue(optimized.size() <= code.size());
+            for (int a = -2; a < 30; a++) {
+                var expected = jvm.run(code, a, 3);
+                long executed = jvm.getExecuted();
+                assertEquals(expected, jvm.run(optimized, a, 3));
+                assertTrue(jvm.getExecuted() <= executed);
+            }
+        }
+    }
+
+    @Test
+    public void testCompile() {
+        var diagnostics = new Diagnostics();
+        String optimized = Compiler.compile(PROGRAM, diagnostics, false, true);
+        assertFalse(diagnostics.hasErrors());
+        assertTrue(optimized.lines().count() < Compiler.compile(PROGRAM, diagnostics, false).lines().count());
+        assertFalse(optimized.contains("NOT"));
+        assertFalse(optimized.contains("CONST 0\nADD"));
+        assertEquals(Compiler.compile(PROGRAM, diagnostics, false), Compiler.compile(PROGRAM, diagnostics, false, false));
+    }
+}
@@ -0,0 +1,152 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotAllocatorTest {
+    private static final String PROGRAM = """
+            int n, sum, half, last;
+            n = readInt();
+            {
+                int square;
+                square = n * n;
+                write(square);
+            }
+            {
+                int cube;
+                cube = n * n * n;
+                sum = cube;
+            }
+            while (n > 0) {
+                half = n / 2;
+                sum = sum + half;
+                n = n - 1;
+            }
+            last = readInt();
+            write(sum + last);
+            """;
+
+    @Test
+    public void testSiblingBlocks() {
+        CodeBuffer code = Emitter.emitCode(Parser.parse("""
+                int a;
+                a = readInt();
+                { int b; b = a * 2; write(b); }
+                { int c; c = a + 1; write(c); }
+                """, null, true));
+        assertEquals(2, SlotAllocator.allocate(code));
+        assertEquals("""
+                ALLOC 2
+                READ
+                STORE 0
+                LOAD 0
+                CONST 2
+                MUL
+                STORE 1
+                LOAD 1
+                WRITE
+                LOAD 0
+                CONST 1
+                ADD
+                STORE 0
+                LOAD 0
+                WRITE
+                HALT""", code.toString());
+    }
+
+    @Test
+    public void testUninitializedRead() {
+        CodeBuffer code = Emitter.emitCode(Parser.parse("""
+                int a, b;
+                b = readInt();
+                write(b);
+                write(a);
+                """, null, true));
+        assertEquals(2, SlotAllocator.allocate(code));
+        assertEquals("ALLOC 2\nREAD\nSTORE 1\nLOAD 1\nWRITE\nLOAD 0\nWRITE\nHALT", code.toString());
+    }
+
+    @Test
+    public void testLoop() {
+        CodeBuffer code = Emitter.emitCode(Parser.parse("""
+                int i, t, u;
+                i = readInt();
+                while (i > 0) {
+                    t = i * 2;
+                    write(t);
+                    i = i - 1;
+                }
+                u = readInt();
+                write(u);
+                """, null, true));
+        assertEquals(2, SlotAllocator.allocate(code));
+        assertEquals(List.of(6, 4, 2, 5), new MiniJvm(1_000).run(code, 3, 5));
+    }
+
+    @Test
+    public void testNestedBlocks() {
+        CodeBuffer code = Emitter.emitCode(Parser.parse("""
+                int a;
+                a = readInt();
+                outer: {
+                    int b;
+                    b = a + 1;
+                    write(b);
+                }
+                """, null, true));
+        assertThrows(IllegalStateException.class, () -> new MiniJvm(1_000).run(code, 2));
+        assertEquals(1, SlotAllocator.allocate(code));
+        assertEquals(List.of(3), new MiniJvm(1_000).run(code, 2));
+    }
+
+    @Test
+    public void testNoVariables() {
+        CodeBuffer code = Emitter.emitCode(Parser.parse("write(1);", null, true));
+        assertEquals(0, SlotAllocator.allocate(code));
+        assertEquals("CONST 1\nWRITE\nHALT", code.toString());
+    }
+
+    @Test
+    public void testSameBehaviour() throws IOException {
+        var jvm = new MiniJvm(1_000_000);
+        for (String source : new String[]{PROGRAM, Files.readString(Path.of("resources/prim.java")),
+                Files.readString(Path.of("resources/input.java"))}) {
+            CodeBuffer code = Emitter.emitCode(Parser.parse(source, null, true));
+            CodeBuffer allocated = Emitter.emitCode(Parser.parse(source, null, true));
+            int frame = SlotAllocator.allocate(allocated);
+            assertTrue(frame <= allocations(code));
+            assertEquals(frame, allocations(allocated));
+            for (int a = -2; a < 30; a++) {
+                var expected = jvm.run(code, a, 3);
+                int footprint = jvm.getFootprint();
+                assertEquals(expected, jvm.run(allocated, a, 3));
+                assertTrue(jvm.getFootprint() <= footprint);
+            }
+        }
+    }
+
+    @Test
+    public void testCompile() {
+        var diagnostics = new Diagnostics();
+        String optimized = Compiler.compile(PROGRAM, diagnostics, false, true);
+        assertFalse(diagnostics.hasErrors());
+        assertTrue(optimized.startsWith("ALLOC 3\n"));
+        assertEquals(1, optimized.lines().filter(line -> line.startsWith("ALLOC")).count());
+    }
+
+    private static int allocations(CodeBuffer code) {
+        int total = 0;
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == Opcode.ALLOC) {
+                total += code.operand(i);
+            }
+        }
+        return total;
+    }
+}
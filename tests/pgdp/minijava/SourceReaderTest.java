@@ -0,0 +1,32 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceReaderTest {
+    @Test
+    public void testRead() throws IOException {
+        Path file = Files.createTempFile("minijava", ".java");
+        try {
+            Files.writeString(file, "int i;\r\ni = 1;\n", StandardCharsets.UTF_8);
+            CharSequence source = SourceReader.read(file, StandardCharsets.UTF_8);
+            assertEquals("int i;\r\ni = 1;\n", source.toString());
+            assertEquals("i = 1", source.subSequence(8, 13).toString());
+
+            Files.writeString(file, "// Grüße\nwrite(1);", StandardCharsets.UTF_8);
+            source = SourceReader.read(file, StandardCharsets.UTF_8);
+            assertEquals("// Grüße\nwrite(1);", source.toString());
+
+            Files.writeString(file, "");
+            assertEquals(0, SourceReader.read(file).length());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
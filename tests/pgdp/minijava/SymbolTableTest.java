@@ -0,0 +1,98 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.ast.SyntaxTreeNode;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+    @Test
+    public void testInterning() {
+        var symbols = new SymbolTable();
+        String source = "alpha beta alpha gamma beta";
+        assertEquals(0, symbols.intern(source, 0, 5));
+        assertEquals(1, symbols.intern(source, 6, 10));
+        assertEquals(0, symbols.intern(source, 11, 16));
+        assertEquals(2, symbols.intern(source, 17, 22));
+        assertEquals(1, symbols.intern("beta"));
+        assertEquals(3, symbols.size());
+        assertEquals("gamma", symbols.name(2));
+        assertEquals(-1, symbols.lookup("delta"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(3 + i, symbols.intern("v" + i));
+        }
+        assertEquals(2, symbols.lookup("gamma"));
+        assertEquals(503, symbols.lookup("v500"));
+    }
+
+    @Test
+    public void testKeywordLookup() {
+        for (Keyword keyword : Keyword.values()) {
+            assertSame(keyword, Keyword.lookup(keyword.getText()));
+            assertSame(keyword, Keyword.lookup("(" + keyword.getText() + ")", 1, keyword.getText().length()));
+        }
+        assertNull(Keyword.lookup("whil"));
+        assertNull(Keyword.lookup("integer"));
+        assertNull(Keyword.lookup("True"));
+        assertNull(Keyword.lookup(""));
+    }
+
+    @Test
+    public void testLexerAssignsIds() throws IllegalCharacterException {
+        var tokens = TokenBuffer.tokenize("int x, y; x = y + x; while (x) {}", false);
+        assertEquals(Keyword.INT.ordinal(), tokens.value(0));
+        assertEquals(0, tokens.value(1));
+        assertEquals(1, tokens.value(3));
+        assertEquals(0, tokens.value(5));
+        assertEquals(1, tokens.value(7));
+        assertEquals(0, tokens.value(9));
+        assertEquals(Keyword.WHILE.ordinal(), tokens.value(11));
+        assertEquals(2, tokens.getSymbols().size());
+    }
+
+    @Test
+    public void testParserKeepsIds() {
+        var tree = Parser.parseFromString("int a; int b; a = b; b = a;");
+        var first = tree.getChild(0).getChild(1);
+        var assigned = tree.getChild(2).getChild(0).getChild(0);
+        assertEquals(SyntaxTreeNode.Type.NAME, assigned.getType());
+        assertEquals(first.getSymbol(), assigned.getSymbol());
+        assertSame(first.getValue(), assigned.getValue());
+        assertNotEquals(first.getSymbol(), tree.getChild(1).getChild(1).getSymbol());
+    }
+
+    @Test
+    public void testEmitHandBuiltTree() {
+        var parsed = Parser.parseFromString("int a; int b; b = 2; a = b;");
+        var tree = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        tree.addChild(declaration("a"));
+        tree.addChild(declaration("b"));
+        tree.addChild(assignment("b", new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "2")));
+        tree.addChild(assignment("a", new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, "b")));
+        assertEquals(parsed, tree);
+        assertEquals(Emitter.emit(parsed), Emitter.emit(tree));
+        assertEquals("ALLOC 2\nCONST 2\nSTORE 1\nLOAD 1\nSTORE 0\nHALT", Emitter.emit(tree));
+    }
+
+    private static SyntaxTreeNode declaration(String name) {
+        var node = new SyntaxTreeNode(SyntaxTreeNode.Type.DECL, "");
+        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.TYPE, "int"));
+        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, name));
+        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, ";"));
+        return node;
+    }
+
+    private static SyntaxTreeNode assignment(String name, SyntaxTreeNode value) {
+        var node = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, "");
+        var assignment = new SyntaxTreeNode(SyntaxTreeNode.Type.ASS, "");
+        assignment.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NAME, name));
+        assignment.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, "="));
+        var expression = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+        expression.addChild(value);
+        assignment.addChild(expression);
+        node.addChild(assignment);
+        node.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, ";"));
+        return node;
+    }
+}
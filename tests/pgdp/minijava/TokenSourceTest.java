@@ -0,0 +1,39 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenSourceTest {
+    @Test
+    public void testLookahead() {
+        var source = new LexingTokenSource("a /* skipped */ = b; // skipped\nwrite(a);");
+        assertEquals("a", source.peek().getContentAsString());
+        assertEquals("b", source.peek(2).getContentAsString());
+        assertEquals("a", source.next().getContentAsString());
+        assertEquals("=", source.next().getContentAsString());
+        assertEquals(2, source.position());
+        assertEquals("write", source.peek(2).getContentAsString());
+        for (int i = 0; i < 7; i++) {
+            assertTrue(source.hasNext());
+            source.next();
+        }
+        assertFalse(source.hasNext());
+        assertThrows(IllegalStateException.class, source::next);
+    }
+
+    @Test
+    public void testListSourceSkipsComments() throws IllegalCharacterException {
+        var tokens = Tokenizer.tokenize("// comment\ni = 1;");
+        var source = new ListTokenSource(tokens, 0);
+        assertEquals(1, source.position());
+        assertEquals("=", source.peek(1).getContentAsString());
+    }
+
+    @Test
+    public void testStreamingParseMatchesListParse() throws IllegalCharacterException {
+        var text = "int i = 0; /* loop */ while(i < 10) { i = i + 1; } write(i);";
+        assertEquals(Parser.parseTokens(Tokenizer.tokenize(text)), Parser.parseFromString(text));
+    }
+}
@@ -0,0 +1,110 @@
+package pgdp.minijava;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenizerTest {
+    @Test
+    public void testTokenTypes() throws IllegalCharacterException {
+        var tokens = Tokenizer.tokenize("int i = -10;\nwhile(true) write(i);");
+        assertTokens(tokens,
+                TokenType.KEYWORD, "int", 1,
+                TokenType.IDENTIFIER, "i", 1,
+                TokenType.OPERATOR, "=", 1,
+                TokenType.OPERATOR, "-", 1,
+                TokenType.LITERAL, "10", 1,
+                TokenType.SEPARATOR, ";", 1,
+                TokenType.KEYWORD, "while", 2,
+                TokenType.SEPARATOR, "(", 2,
+                TokenType.LITERAL, "true", 2,
+                TokenType.SEPARATOR, ")", 2,
+                TokenType.IDENTIFIER, "write", 2,
+                TokenType.SEPARATOR, "(", 2,
+                TokenType.IDENTIFIER, "i", 2,
+                TokenType.SEPARATOR, ")", 2,
+                TokenType.SEPARATOR, ";", 2);
+    }
+
+    @Test
+    public void testOperators() throws IllegalCharacterException {
+        var tokens = Tokenizer.tokenize("a<=b&&c||!d>=e!=f==g<-h++ +=");
+        assertTokens(tokens,
+                TokenType.IDENTIFIER, "a", 1,
+                TokenType.OPERATOR, "<=", 1,
+                TokenType.IDENTIFIER, "b", 1,
+                TokenType.OPERATOR, "&&", 1,
+                TokenType.IDENTIFIER, "c", 1,
+                TokenType.OPERATOR, "||", 1,
+                TokenType.OPERATOR, "!", 1,
+                TokenType.IDENTIFIER, "d", 1,
+                TokenType.OPERATOR, ">=", 1,
+                TokenType.IDENTIFIER, "e", 1,
+                TokenType.OPERATOR, "!=", 1,
+                TokenType.IDENTIFIER, "f", 1,
+                TokenType.OPERATOR, "==", 1,
+                TokenType.IDENTIFIER, "g", 1,
+                TokenType.OPERATOR, "<", 1,
+                TokenType.OPERATOR, "-", 1,
+                TokenType.IDENTIFIER, "h", 1,
+                TokenType.OPERATOR, "++", 1,
+                TokenType.OPERATOR, "+=", 1);
+    }
+
+    @Test
+    public void testComments() throws IllegalCharacterException {
+        var tokens = Tokenizer.tokenize("// line\ni = 1; // trailing\n/* block\n spanning */ j = 2;");
+        assertTokens(tokens,
+                TokenType.COMMENT, "// line", 1,
+                TokenType.IDENTIFIER, "i", 2,
+                TokenType.OPERATOR, "=", 2,
+                TokenType.LITERAL, "1", 2,
+                TokenType.SEPARATOR, ";", 2,
+                TokenType.COMMENT, "// trailing", 2,
+                TokenType.COMMENT, "/* block\n spanning */", 3,
+                TokenType.IDENTIFIER, "j", 4,
+                TokenType.OPERATOR, "=", 4,
+                TokenType.LITERAL, "2", 4,
+                TokenType.SEPARATOR, ";", 4);
+    }
+
+    @Test
+    public void testIllegalCharacter() {
+        var e = assertThrows(IllegalCharacterException.class, () -> Tokenizer.tokenize("int i;\ni = #;"));
+        assertEquals("Illegal character # at pos 4 at line 1", e.getMessage());
+        assertThrows(IllegalCharacterException.class, () -> Tokenizer.tokenize("write(\"open);"));
+    }
+
+    @Test
+    public void testTokenBuffer() throws IllegalCharacterException {
+        var tokens = TokenBuffer.tokenize("x = 42 + y; // done\nwrite(x);", false);
+        assertEquals(11, tokens.size());
+        assertEquals(TokenKind.IDENTIFIER, tokens.kind(0));
+        assertEquals(TokenKind.ASSIGN, tokens.kind(1));
+        assertEquals(TokenKind.NUMBER, tokens.kind(2));
+        // numbers are only converted once they are emitted
+        assertEquals("42", tokens.text(2));
+        assertEquals(0, tokens.value(2));
+        assertEquals(TokenKind.PLUS, tokens.kind(3));
+        assertTrue(tokens.textEquals(4, "y"));
+        assertFalse(tokens.textEquals(4, "yy"));
+        assertEquals(4, tokens.start(2));
+        assertEquals(2, tokens.length(2));
+        assertEquals("write", tokens.text(6));
+        assertEquals(2, tokens.line(6));
+        assertEquals(TokenType.SEPARATOR, tokens.token(10).getTokenType());
+    }
+
+    private static void assertTokens(List<Token> tokens, Object... expected) {
+        assertEquals(expected.length / 3, tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            assertEquals(expected[3 * i], token.getTokenType());
+            assertEquals(expected[3 * i + 1], token.getContentAsString());
+            assertEquals(expected[3 * i + 2], token.getLine());
+        }
+    }
+}
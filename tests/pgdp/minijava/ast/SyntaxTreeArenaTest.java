@@ -0,0 +1,59 @@
+package pgdp.minijava.ast;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.Emitter;
+import pgdp.minijava.Parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntaxTreeArenaTest {
+    private static final String PROGRAM = """
+            int i, j, n;
+            n = readInt();
+            i = 0;
+            outer: while (i < n) {
+                j = -(i * 2) + 1;
+                if (!(j >= 3) && i != 4) { write(j); } else { write(i % 3); }
+                i = i + 1;
+            }
+            """;
+
+    @Test
+    public void testSameTree() {
+        var tree = Parser.parseFromString(PROGRAM);
+        var arena = Parser.parseArena(PROGRAM);
+        assertEquals(tree, arena.toTree());
+        assertEquals(tree, SyntaxTreeArena.of(tree).toTree());
+        assertEquals(tree.toString(), arena.toTree().toString());
+    }
+
+    @Test
+    public void testEmitFromArena() {
+        var arena = Parser.parseArena(PROGRAM);
+        assertEquals(Emitter.emit(Parser.parseFromString(PROGRAM)), Emitter.emit(arena.root()));
+    }
+
+    @Test
+    public void testNavigation() {
+        var arena = Parser.parseArena("int a; a = 12;");
+        NodeView root = arena.root();
+        assertEquals(SyntaxTreeNode.Type.PROGRAM, root.getType());
+        assertEquals(2, root.getNumberChildren());
+
+        NodeView assignment = root.getChild(1).getChild(0);
+        assertEquals(SyntaxTreeNode.Type.ASS, assignment.getType());
+        NodeView name = assignment.getChild(0);
+        assertEquals("a", name.getValue());
+        assertEquals(arena.getValues().lookup("a"), name.getSymbol());
+        assertEquals(name.getSymbol(), root.getChild(0).getChild(1).getSymbol());
+        assertEquals("12", assignment.getChild(2).getChild(0).getValue());
+        assertEquals(-1, assignment.getChild(2).getSymbol());
+        assertThrows(IndexOutOfBoundsException.class, () -> assignment.getChild(3));
+
+        // the int level API sees the same structure
+        int statement = arena.nextSibling(arena.firstChild(0));
+        assertEquals(SyntaxTreeNode.Type.STMT, arena.type(statement));
+        assertEquals(-1, arena.nextSibling(statement));
+        assertEquals(";", arena.value(arena.nextSibling(arena.firstChild(statement))));
+    }
+}
@@ -0,0 +1,91 @@
+package pgdp.minijava.ast;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.Emitter;
+import pgdp.minijava.Parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntaxTreeCodecTest {
+    private static final String PROGRAM = """
+            int i, j, n;
+            boolean b = true;
+            n = readInt();
+            loop: while (i < n && !b) {
+                j = -(i * 2) + 1;
+                if (j >= 3) { write(j); } else { ; }
+                i = i + 1;
+            }
+            return;
+            """;
+
+    @Test
+    public void testRoundTrip() {
+        for (boolean lean : new boolean[]{false, true}) {
+            var tree = Parser.parse(PROGRAM, null, lean);
+            var decoded = SyntaxTreeCodec.decode(SyntaxTreeCodec.encode(tree));
+            assertEquals(tree, decoded);
+            assertEquals(tree.toString(), decoded.toString());
+            assertTrue(decoded.isFrozen());
+            assertEquals(Emitter.emit(tree), Emitter.emit(decoded));
+
+            var loop = tree.getChild(3);
+            var decodedLoop = decoded.getChild(3);
+            assertEquals(loop.getChild(0).getSymbol(), decodedLoop.getChild(0).getSymbol());
+            // n of n = readInt();
+            var name = lean ? tree.getChild(2).getChild(0) : tree.getChild(2).getChild(0).getChild(0);
+            var decodedName = lean ? decoded.getChild(2).getChild(0) : decoded.getChild(2).getChild(0).getChild(0);
+            assertEquals("n", decodedName.getValue());
+            assertEquals(name.getSymbol(), decodedName.getSymbol());
+            assertEquals(3, decodedName.getLine());
+            assertEquals(name.getColumn(), decodedName.getColumn());
+        }
+
+        // the arena and trees built by hand
+        var arena = Parser.parseArena(PROGRAM);
+        assertEquals(arena.toTree(), SyntaxTreeCodec.decode(SyntaxTreeCodec.encode(arena.root())));
+        var leaf = new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "äöü €");
+        assertEquals(leaf, SyntaxTreeCodec.decode(SyntaxTreeCodec.encode(leaf)));
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        var tree = Parser.parseFromString(PROGRAM);
+        var path = Files.createTempFile("tree", ".ast");
+        try {
+            SyntaxTreeCodec.write(tree, path);
+            assertEquals(tree, SyntaxTreeCodec.read(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testBuffer() {
+        var first = SyntaxTreeCodec.encode(Parser.parseFromString("int a;"));
+        var second = SyntaxTreeCodec.encode(Parser.parseFromString("a = 1;"));
+        var buffer = ByteBuffer.allocateDirect(first.length + second.length).put(first).put(second).flip();
+        assertEquals(Parser.parseFromString("int a;"), SyntaxTreeCodec.decode(buffer));
+        assertEquals(Parser.parseFromString("a = 1;"), SyntaxTreeCodec.decode(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testMalformed() {
+        assertThrows(IllegalStateException.class, () -> SyntaxTreeCodec.decode(new byte[]{1, 2, 3}));
+        var bytes = SyntaxTreeCodec.encode(Parser.parseFromString("int a; a = 1;"));
+        bytes[4] = 9;
+        assertThrows(IllegalStateException.class, () -> SyntaxTreeCodec.decode(bytes));
+    }
+
+    @Test
+    public void testDeepTree() {
+        int depth = 100_000;
+        var tree = Parser.parseFromString("int x; x = " + "-(".repeat(depth) + "x" + ")".repeat(depth) + ";");
+        assertEquals(tree, SyntaxTreeCodec.decode(SyntaxTreeCodec.encode(tree)));
+    }
+}
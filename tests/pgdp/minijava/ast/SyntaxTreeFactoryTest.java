@@ -0,0 +1,86 @@
+package pgdp.minijava.ast;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.Emitter;
+import pgdp.minijava.Parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntaxTreeFactoryTest {
+    @Test
+    public void testSharedSubtrees() {
+        var text = "int d, n; n = readInt(); d = 2; while (d * d <= n) { n = n - 1; d = d * d; }";
+        var tree = Parser.parseFromString(text);
+        var factory = new SyntaxTreeFactory();
+        var shared = factory.intern(tree);
+
+        assertEquals(tree, shared);
+        assertEquals(tree.hashCode(), shared.hashCode());
+        assertSame(shared, factory.intern(shared));
+        assertSame(shared, factory.intern(Parser.parseFromString(text)));
+
+        // both d * d are the same node
+        var loop = shared.getChild(3);
+        var square = loop.getChild(2).getChild(0);
+        var assignment = loop.getChild(4).getChild(2).getChild(0);
+        assertEquals("*", square.getChild(1).getValue());
+        assertSame(square, assignment.getChild(2));
+        assertTrue(factory.size() < count(tree));
+
+        assertEquals(Emitter.emit(tree), Emitter.emit(shared));
+    }
+
+    @Test
+    public void testNodes() {
+        var factory = new SyntaxTreeFactory();
+        var one = factory.leaf(SyntaxTreeNode.Type.NUMBER, "1");
+        assertSame(one, factory.leaf(SyntaxTreeNode.Type.NUMBER, "1"));
+        assertNotSame(one, factory.leaf(SyntaxTreeNode.Type.BOOL, "1"));
+
+        var expression = factory.node(SyntaxTreeNode.Type.EXPR, "", -1, one);
+        var built = new SyntaxTreeNode(SyntaxTreeNode.Type.EXPR, "");
+        built.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "1"));
+        assertSame(expression, factory.node(SyntaxTreeNode.Type.EXPR, "", -1, built.getChild(0)));
+        assertSame(expression, factory.intern(built));
+        assertEquals(built.hashCode(), expression.hashCode());
+        assertTrue(expression.isFrozen());
+        assertThrows(IllegalStateException.class, () -> expression.addChild(one));
+
+        // names of different symbols stay apart
+        assertNotSame(factory.node(SyntaxTreeNode.Type.NAME, "a", 0), factory.node(SyntaxTreeNode.Type.NAME, "a", 1));
+    }
+
+    @Test
+    public void testStructuralHash() {
+        var a = Parser.parseFromString("int a; a = 1 + 2;");
+        var b = Parser.parseFromString("int a; a = 1 + 2;");
+        var c = Parser.parseFromString("int a; a = 2 + 1;");
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a.hashCode(), c.hashCode());
+        assertNotEquals(a, c);
+
+        // unfrozen trees are hashed too, but not cached
+        var root = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        int empty = root.hashCode();
+        root.addChild(a.getChild(0));
+        assertNotEquals(empty, root.hashCode());
+    }
+
+    @Test
+    public void testDeepTree() {
+        int depth = 100_000;
+        var text = "int x; x = " + "-(".repeat(depth) + "x" + ")".repeat(depth) + ";";
+        var factory = new SyntaxTreeFactory();
+        var shared = factory.intern(Parser.parseFromString(text));
+        assertEquals(Parser.parseFromString(text).hashCode(), shared.hashCode());
+        assertSame(shared, factory.intern(Parser.parseFromString(text)));
+    }
+
+    private static int count(NodeView node) {
+        int count = 1;
+        for (int i = 0; i < node.getNumberChildren(); i++) {
+            count += count(node.getChild(i));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,51 @@
+package pgdp.minijava.ast;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.Parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntaxTreeNodeTest {
+    @Test
+    public void testFreeze() {
+        var root = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        var statement = new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, "");
+        statement.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.SYMBOL, ";"));
+        root.addChild(statement);
+        var copy = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        copy.addChild(statement);
+
+        assertSame(root, root.freeze());
+        assertTrue(root.isFrozen());
+        assertTrue(statement.isFrozen());
+        assertFalse(copy.isFrozen());
+        assertEquals(root, copy);
+        assertEquals(1, root.getNumberChildren());
+        assertThrows(IndexOutOfBoundsException.class, () -> root.getChild(1));
+        assertThrows(IllegalStateException.class, () -> root.addChild(statement));
+        assertThrows(IllegalStateException.class, () -> statement.setPosition(1, 1));
+        copy.addChild(statement);
+        assertEquals(2, copy.getNumberChildren());
+    }
+
+    @Test
+    public void testManyChildren() {
+        var root = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+        for (int i = 0; i < 1_000_000; i++) {
+            root.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "1"));
+        }
+        var last = new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "2");
+        root.addChild(last);
+        root.freeze();
+        assertEquals(1_000_001, root.getNumberChildren());
+        assertSame(last, root.getChild(1_000_000));
+        assertTrue(root.getChild(0).isLeaf());
+    }
+
+    @Test
+    public void testParsedTreesAreFrozen() {
+        var tree = Parser.parseFromString("int a; a = 1; while (a < 3) { a = a + 1; }");
+        assertTrue(tree.isFrozen());
+        assertTrue(tree.getChild(2).getChild(0).isFrozen());
+    }
+}
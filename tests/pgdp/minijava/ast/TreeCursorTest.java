@@ -0,0 +1,120 @@
+package pgdp.minijava.ast;
+
+import org.junit.jupiter.api.Test;
+import pgdp.minijava.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeCursorTest {
+    // a = b + 1;
+    private static final SyntaxTreeNode TREE = Parser.parse("a = b + 1;", null, true);
+
+    @Test
+    public void testPreorder() {
+        var cursor = new TreeCursor().reset(TREE, TreeCursor.Order.PREORDER);
+        assertEquals(List.of("PROGRAM", "ASS", "NAME:a", "EXPR:+", "EXPR", "NAME:b", "EXPR", "NUMBER:1"), names(cursor));
+        assertFalse(cursor.next());
+
+        // skipping the children of the sum
+        cursor.reset(TREE, TreeCursor.Order.PREORDER);
+        List<String> names = new ArrayList<>();
+        while (cursor.next()) {
+            names.add(name(cursor.node()));
+            if (cursor.node().getValue().equals("+")) {
+                assertEquals(2, cursor.depth());
+                assertEquals(1, cursor.index());
+                assertEquals(SyntaxTreeNode.Type.ASS, cursor.parent().getType());
+                cursor.skipChildren();
+            }
+        }
+        assertEquals(List.of("PROGRAM", "ASS", "NAME:a", "EXPR:+"), names);
+    }
+
+    @Test
+    public void testPostorder() {
+        var cursor = new TreeCursor().reset(TREE, TreeCursor.Order.POSTORDER);
+        assertEquals(List.of("NAME:a", "NAME:b", "EXPR", "NUMBER:1", "EXPR", "EXPR:+", "ASS", "PROGRAM"), names(cursor));
+
+        var leaf = new SyntaxTreeNode(SyntaxTreeNode.Type.NUMBER, "1");
+        assertEquals(List.of("NUMBER:1"), names(cursor.reset(leaf, TreeCursor.Order.POSTORDER)));
+        assertEquals(List.of(), names(cursor.reset(null, TreeCursor.Order.POSTORDER)));
+    }
+
+    @Test
+    public void testVisitor() {
+        List<String> events = new ArrayList<>();
+        var cursor = new TreeCursor();
+        cursor.walk(TREE, new TreeVisitor() {
+            @Override
+            public boolean visitName(NodeView node) {
+                events.add(node.getValue() + "@" + cursor.depth());
+                return true;
+            }
+
+            @Override
+            public boolean visitExpression(NodeView node) {
+                events.add("expression" + node.getValue());
+                return node.getValue().isEmpty() || cursor.index() == 1;
+            }
+
+            @Override
+            public void leave(NodeView node) {
+                if (node.getType() == SyntaxTreeNode.Type.ASS) {
+                    events.add("done");
+                }
+            }
+        });
+        assertEquals(List.of("a@2", "expression+", "expression", "b@4", "expression", "done"), events);
+    }
+
+    @Test
+    public void testIterator() {
+        List<String> names = new ArrayList<>();
+        for (SyntaxTreeNode node : TREE) {
+            names.add(name(node));
+        }
+        assertEquals(List.of("PROGRAM", "ASS", "NAME:a", "EXPR:+", "EXPR", "NAME:b", "EXPR", "NUMBER:1"), names);
+
+        var iterator = TREE.getChild(0).getChild(0).iterator();
+        assertTrue(iterator.hasNext());
+        assertTrue(iterator.hasNext());
+        assertEquals("a", iterator.next().getValue());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    public void testDeepTree() {
+        int depth = 100_000;
+        var tree = Parser.parseFromString("int x; x = " + "-(".repeat(depth) + "x" + ")".repeat(depth) + ";");
+        var cursor = new TreeCursor().reset(tree, TreeCursor.Order.POSTORDER);
+        int count = 0;
+        int deepest = 0;
+        while (cursor.next()) {
+            count++;
+            deepest = Math.max(deepest, cursor.depth());
+        }
+        int preorder = 0;
+        for (SyntaxTreeNode ignored : tree) {
+            preorder++;
+        }
+        assertEquals(count, preorder);
+        assertTrue(deepest > 2 * depth);
+    }
+
+    private static List<String> names(TreeCursor cursor) {
+        List<String> names = new ArrayList<>();
+        while (cursor.next()) {
+            names.add(name(cursor.node()));
+        }
+        return names;
+    }
+
+    private static String name(NodeView node) {
+        return node.getValue().isEmpty() ? node.getType().name() : node.getType() + ":" + node.getValue();
+    }
+}
@@ -0,0 +1,94 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.Emitter;
+import pgdp.minijava.Parser;
+import pgdp.minijava.ast.SyntaxTreeArena;
+import pgdp.minijava.ast.SyntaxTreeNode;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * Compares the {@link SyntaxTreeNode} objects with the {@link SyntaxTreeArena} for one large generated
+ * program: the heap retained per node by the finished tree, and the collections and GC time spent
+ * parsing and emitting it a few times.
+ * <p>
+ * Run with an optional number of generated blocks as argument.
+ */
+public class ArenaBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        String source = ProgramGenerator.generate(blocks);
+        SyntaxTreeArena arena = Parser.parseArena(source);
+        int nodes = arena.size();
+        if (nodes != count(Parser.parseFromString(source))) {
+            throw new IllegalStateException("The arena has a different number of nodes");
+        }
+        System.out.printf("%d chars, %d nodes%n", source.length(), nodes);
+        System.out.printf("%10s %16s %14s %14s%n", "tree", "bytes per node", "collections", "GC time [ms]");
+        measure("objects", nodes, () -> Parser.parseFromString(source), tree -> Emitter.emit(tree));
+        measure("arena", nodes, () -> Parser.parseArena(source), tree -> Emitter.emit(tree.root()));
+    }
+
+    private static <T> void measure(String name, int nodes, Supplier<T> parse, Emission<T> emit) {
+        long before = usedHeap();
+        T tree = parse.get();
+        long retained = usedHeap() - before;
+        emit.emit(tree);
+        tree = null;
+
+        long collections = collections();
+        long time = gcTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            emit.emit(parse.get());
+        }
+        System.out.printf("%10s %16.1f %14d %14d%n", name, (double) retained / nodes,
+                collections() - collections, gcTime() - time);
+    }
+
+    private static int count(SyntaxTreeNode root) {
+        int count = 0;
+        var stack = new ArrayDeque<SyntaxTreeNode>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            SyntaxTreeNode node = stack.pop();
+            count++;
+            for (int i = 0; i < node.getNumberChildren(); i++) {
+                stack.push(node.getChild(i));
+            }
+        }
+        return count;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += bean.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += bean.getCollectionTime();
+        }
+        return time;
+    }
+
+    private interface Emission<T> {
+        void emit(T tree);
+    }
+}
@@ -0,0 +1,72 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.CodeBuffer;
+import pgdp.minijava.ConstantFolder;
+import pgdp.minijava.Emitter;
+import pgdp.minijava.MiniJvm;
+import pgdp.minijava.Parser;
+import pgdp.minijava.ast.SyntaxTreeNode;
+
+/**
+ * Regression benchmark for the {@link ConstantFolder}. Generates programs of doubling size whose loop is
+ * full of literal arithmetic, the way generated code tends to be, and compares the size of the code and
+ * the number of instructions a {@link MiniJvm} executes with and without folding. Folding should take a
+ * fraction of the time parsing does.
+ * <p>
+ * Run with an optional maximum number of statements as argument.
+ */
+public class ConstantFoldingBenchmark {
+    public static void main(String[] args) {
+        int maxStatements = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        var jvm = new MiniJvm(Integer.MAX_VALUE);
+        System.out.printf("%10s %10s %10s %12s %12s %12s %12s%n", "statements", "size", "folded", "executed",
+                "folded", "parse [ms]", "fold [ms]");
+        for (int statements = 100; statements <= maxStatements; statements *= 4) {
+            String source = generate(statements);
+            SyntaxTreeNode tree = null;
+            SyntaxTreeNode folded = null;
+            double parse = Double.MAX_VALUE;
+            double fold = Double.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                tree = Parser.parse(source, null, true);
+                parse = Math.min(parse, (System.nanoTime() - start) / 1e6);
+                start = System.nanoTime();
+                folded = ConstantFolder.fold(tree);
+                fold = Math.min(fold, (System.nanoTime() - start) / 1e6);
+            }
+
+            CodeBuffer code = Emitter.emitCode(tree);
+            CodeBuffer foldedCode = Emitter.emitCode(folded);
+            var output = jvm.run(code, 10);
+            long executed = jvm.getExecuted();
+            if (!output.equals(jvm.run(foldedCode, 10))) {
+                throw new IllegalStateException("The folded program prints something else");
+            }
+            System.out.printf("%10d %10d %10d %12d %12d %12.1f %12.1f%n", statements, code.size(),
+                    foldedCode.size(), executed, jvm.getExecuted(), parse, fold);
+        }
+    }
+
+    private static String generate(int statements) {
+        StringBuilder out = new StringBuilder();
+        out.append("int n, x, y;\n");
+        out.append("boolean debug;\n");
+        out.append("n = readInt();\n");
+        out.append("debug = 1 > 2;\n");
+        out.append("while (n > 0 * 5) {\n");
+        for (int s = 0; s < statements; s++) {
+            int k = s % 13;
+            switch (s % 4) {
+                case 0 -> out.append("    x = x + (").append(k).append(" * 4 - 2) * (").append(k).append(" % 7 + 1);\n");
+                case 1 -> out.append("    y = y * 1 + x / (").append(k).append(" + 1) - 0;\n");
+                case 2 -> out.append("    if (debug && x > ").append(k).append(" * 1000) {\n        write(x);\n    }\n");
+                default -> out.append("    x = x % (").append(k + 1000).append(" * 3 + -(-").append(k).append("));\n");
+            }
+        }
+        out.append("    n = n - (2 - 1);\n");
+        out.append("}\n");
+        out.append("write(x + y);\n");
+        return out.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.CodeBuffer;
+import pgdp.minijava.DeadCodeEliminator;
+import pgdp.minijava.Diagnostics;
+import pgdp.minijava.Emitter;
+import pgdp.minijava.Parser;
+import pgdp.minijava.PeepholeOptimizer;
+
+/**
+ * Regression benchmark for the {@link DeadCodeEliminator}. Generates programs of doubling size in which
+ * most blocks are guarded by constant flags, as generated code with debugging or tracing switched off
+ * tends to be, and compares the size of the code and of its text before and after removing what can't be
+ * reached, along with the time that takes.
+ * <p>
+ * Run with an optional maximum number of blocks as argument.
+ */
+public class DeadCodeBenchmark {
+    public static void main(String[] args) {
+        int maxBlocks = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        System.out.printf("%10s %12s %12s %12s %12s %12s %10s%n", "blocks", "size", "eliminated", "chars",
+                "eliminated", "time [ms]", "warnings");
+        for (int blocks = 1_000; blocks <= maxBlocks; blocks *= 2) {
+            String source = generate(blocks);
+            CodeBuffer code = Emitter.emitCode(Parser.parse(source, null, true));
+            int size = code.size();
+            int chars = code.toString().length();
+            double best = Double.MAX_VALUE;
+            var diagnostics = new Diagnostics();
+            for (int round = 0; round < 5; round++) {
+                code = Emitter.emitCode(Parser.parse(source, null, true));
+                PeepholeOptimizer.standard().optimize(code);
+                diagnostics = new Diagnostics();
+                long start = System.nanoTime();
+                DeadCodeEliminator.eliminate(code, diagnostics);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%10d %12d %12d %12d %12d %12.2f %10d%n", blocks, size, code.size(), chars,
+                    code.toString().length(), best, diagnostics.getDiagnostics().size());
+        }
+    }
+
+    private static String generate(int blocks) {
+        StringBuilder out = new StringBuilder();
+        out.append("int n, sum;\n");
+        out.append("n = readInt();\n");
+        for (int b = 0; b < blocks; b++) {
+            if (b % 4 == 0) {
+                out.append("sum = sum + n * ").append(b % 89).append(";\n");
+                continue;
+            }
+            out.append(b % 4 == 1 ? "if (false) {\n" : b % 4 == 2 ? "while (false) {\n" : "if (true) {} else {\n");
+            out.append("    write(sum);\n");
+            out.append("    sum = sum - n / ").append(b % 89 + 1).append(";\n");
+            out.append("}\n");
+        }
+        out.append("write(sum);\n");
+        return out.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.IncrementalLexer;
+import pgdp.minijava.TokenBuffer;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+/**
+ * Regression benchmark for {@link IncrementalLexer}. Types a word into the middle of generated sources
+ * of doubling size, one character per edit, and compares re-lexing the edit with lexing the whole file.
+ * Only moving the tail of the token arrays grows with the file, the lexing itself stays constant.
+ * <p>
+ * Run with an optional maximum source size in characters as argument.
+ */
+public class IncrementalLexerBenchmark {
+    private static final String TYPED = "counter";
+
+    public static void main(String[] args) throws IllegalCharacterException {
+        int maxChars = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        System.out.printf("%12s %14s %18s%n", "chars", "full [ms]", "per edit [ms]");
+        for (int blocks = 1_000; ; blocks *= 2) {
+            String source = ProgramGenerator.generate(blocks);
+            if (source.length() > maxChars) {
+                break;
+            }
+            int offset = source.indexOf("divisor = 2;", source.length() / 2);
+
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 3; i++) {
+                long start = System.nanoTime();
+                TokenBuffer.tokenize(source, false);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double full = best / 1e6;
+
+            // the editor owns the text, so building the edited sources isn't part of the measurement
+            String[] edits = new String[TYPED.length()];
+            for (int i = 0; i < edits.length; i++) {
+                edits[i] = source.substring(0, offset) + TYPED.substring(0, i + 1) + source.substring(offset);
+            }
+            TokenBuffer tokens = TokenBuffer.tokenize(source, false);
+            long start = System.nanoTime();
+            for (int i = 0; i < edits.length; i++) {
+                tokens = IncrementalLexer.relex(tokens, edits[i], offset + i, 0, 1, false);
+            }
+            double perEdit = (System.nanoTime() - start) / 1e6 / edits.length;
+
+            if (tokens.size() != TokenBuffer.tokenize(edits[edits.length - 1], false).size()) {
+                throw new IllegalStateException("Re-lexed tokens differ from a full lex");
+            }
+            System.out.printf("%12d %14.1f %18.2f%n", source.length(), full, perEdit);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.IncrementalLexer;
+import pgdp.minijava.IncrementalParser;
+import pgdp.minijava.Parser;
+import pgdp.minijava.TokenBuffer;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+/**
+ * Regression benchmark for {@link IncrementalParser}. Types a word into a line in the middle of generated
+ * sources of doubling size, one character per edit, and compares the time per edit with re-lexing alone
+ * and with parsing the whole file. Re-parsing the edited line should take well under a millisecond.
+ * <p>
+ * Run with an optional maximum number of lines as argument.
+ */
+public class IncrementalParserBenchmark {
+    private static final String TYPED = "counter";
+
+    public static void main(String[] args) throws IllegalCharacterException {
+        int maxLines = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        System.out.printf("%10s %12s %14s %14s %14s%n", "lines", "full [ms]", "relex [ms]", "edit [ms]",
+                "reparse [ms]");
+        for (int blocks = 1_000; blocks * 15 <= maxLines; blocks *= 2) {
+            String source = ProgramGenerator.generate(blocks);
+            int offset = source.indexOf("divisor = 2;", source.length() / 2);
+
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 3; i++) {
+                long start = System.nanoTime();
+                Parser.parse(source, null, true);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double full = best / 1e6;
+
+            // the editor owns the text, so building the edited sources isn't part of the measurement
+            String[] edits = new String[TYPED.length()];
+            for (int i = 0; i < edits.length; i++) {
+                edits[i] = source.substring(0, offset) + TYPED.substring(0, i + 1) + source.substring(offset);
+            }
+            double relex = Double.MAX_VALUE;
+            double edit = Double.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                TokenBuffer tokens = TokenBuffer.tokenize(source, false);
+                long start = System.nanoTime();
+                for (int i = 0; i < edits.length; i++) {
+                    IncrementalLexer.relex(tokens, edits[i], offset + i, 0, 1, false);
+                }
+                relex = Math.min(relex, (System.nanoTime() - start) / 1e6 / edits.length);
+
+                var parser = new IncrementalParser(source, true);
+                start = System.nanoTime();
+                for (int i = 0; i < edits.length; i++) {
+                    parser.edit(edits[i], offset + i, 0, 1);
+                }
+                edit = Math.min(edit, (System.nanoTime() - start) / 1e6 / edits.length);
+                if (!parser.getTree().equals(Parser.parse(edits[edits.length - 1], null, true))) {
+                    throw new IllegalStateException("Re-parsed tree differs from a full parse");
+                }
+            }
+            System.out.printf("%10d %12.1f %14.3f %14.3f %14.3f%n", source.lines().count(), full, relex, edit,
+                    edit - relex);
+        }
+    }
+}
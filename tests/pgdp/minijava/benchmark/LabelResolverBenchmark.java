@@ -0,0 +1,57 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.CodeBuffer;
+import pgdp.minijava.LabelResolver;
+import pgdp.minijava.Opcode;
+
+/**
+ * Regression benchmark for {@link LabelResolver}. Resolves code of doubling size in which every loop is
+ * labeled and directly followed by the next one, so the end of a loop, the label of the next one and
+ * its start are merged into one. Resolving a million instructions should take milliseconds, not
+ * seconds.
+ * <p>
+ * Run with an optional maximum number of instructions as argument.
+ */
+public class LabelResolverBenchmark {
+    public static void main(String[] args) {
+        int maxInstructions = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        System.out.printf("%12s %12s %14s%n", "instructions", "labels", "resolve [ms]");
+        for (int loops = 1 << 10; loops * 7 <= maxInstructions; loops *= 2) {
+            double best = Double.MAX_VALUE;
+            int size = 0;
+            int labels = 0;
+            for (int round = 0; round < 5; round++) {
+                CodeBuffer code = generate(loops);
+                size = code.size();
+                labels = code.labelCount();
+                long start = System.nanoTime();
+                LabelResolver.resolve(code);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+                if (code.size() != size - (loops * 2 - 1)) {
+                    throw new IllegalStateException("Expected " + (loops * 2 - 1) + " labels to be merged");
+                }
+            }
+            System.out.printf("%12d %12d %14.3f%n", size, labels, best);
+        }
+    }
+
+    /**
+     * The code of {@code x0: while (true) { } x1: while (true) { } ...}, seven instructions per loop.
+     */
+    private static CodeBuffer generate(int loops) {
+        var code = new CodeBuffer();
+        for (int i = 0; i < loops; i++) {
+            int user = code.newLabel("x", i);
+            int start = code.newLabel("while", i);
+            int end = code.newLabel("whileEnd", i);
+            code.label(user);
+            code.label(start);
+            code.instruction(Opcode.TRUE);
+            code.instruction(Opcode.FJUMP, end);
+            code.instruction(Opcode.JUMP, user);
+            code.instruction(Opcode.JUMP, start);
+            code.label(end);
+        }
+        return code;
+    }
+}
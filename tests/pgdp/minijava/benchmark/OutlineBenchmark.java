@@ -0,0 +1,56 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.BufferTokenSource;
+import pgdp.minijava.Parser;
+import pgdp.minijava.TokenBuffer;
+import pgdp.minijava.ast.SyntaxTreeNode;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+/**
+ * Builds the outline of a generated program, its top level declarations and labels, from a lazy tree
+ * and from a fully parsed one, next to the time it takes to scan the tokens. The lazy outline should
+ * cost about as much as the scan.
+ * <p>
+ * Run with an optional number of lines as argument.
+ */
+public class OutlineBenchmark {
+    public static void main(String[] args) throws IllegalCharacterException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String source = ProgramGenerator.generate(lines / 14);
+        System.out.printf("%d lines%n", source.lines().count());
+        System.out.printf("%12s %12s %12s %12s%n", "scan [ms]", "lazy [ms]", "full [ms]", "outline");
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            TokenBuffer tokens = TokenBuffer.tokenize(source, false);
+            long scan = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int lazy = outline(Parser.parseLazy(tokens, null, true));
+            long lazyTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int full = outline(Parser.parseTokens(new BufferTokenSource(tokens), null, true));
+            long fullTime = System.nanoTime() - start;
+            if (lazy != full) {
+                throw new IllegalStateException("The outlines differ");
+            }
+            System.out.printf("%12.1f %12.1f %12.1f %12d%n", scan / 1e6, lazyTime / 1e6, fullTime / 1e6, lazy);
+        }
+    }
+
+    /**
+     * @return the number of top level declarations and labels
+     */
+    private static int outline(SyntaxTreeNode tree) {
+        int entries = 0;
+        for (int i = 0; i < tree.getNumberChildren(); i++) {
+            SyntaxTreeNode line = tree.getChild(i);
+            if (line.getType() == SyntaxTreeNode.Type.DECL
+                    || line.getType() == SyntaxTreeNode.Type.STMT && line.getValue().isEmpty()
+                    && line.getChild(0).getType() == SyntaxTreeNode.Type.LABEL) {
+                entries++;
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,52 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.ParallelLexer;
+import pgdp.minijava.TokenBuffer;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark for {@link ParallelLexer}. Lexes one large generated source sequentially and with pools of
+ * 1, 2, 4 and 8 threads and prints the speedup over the sequential lexer.
+ * <p>
+ * Run with an optional source size in characters as argument; needs a heap of about ten times that.
+ */
+public class ParallelLexerBenchmark {
+    public static void main(String[] args) throws IllegalCharacterException {
+        int chars = args.length > 0 ? Integer.parseInt(args[0]) : 100_000_000;
+        String source = ProgramGenerator.generateOfSize(chars);
+        System.out.printf("%d chars, %d cores%n", source.length(), Runtime.getRuntime().availableProcessors());
+
+        int expected = TokenBuffer.tokenize(source, false).size();
+        double sequential = time(() -> TokenBuffer.tokenize(source, false));
+        System.out.printf("%10s %12s %10s%n", "threads", "time [ms]", "speedup");
+        System.out.printf("%10s %12.1f %10s%n", "-", sequential, "1.00x");
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            var pool = new ForkJoinPool(threads);
+            try {
+                if (ParallelLexer.tokenize(source, false, pool).size() != expected) {
+                    throw new IllegalStateException("Parallel lexer produced a different token count");
+                }
+                double parallel = time(() -> ParallelLexer.tokenize(source, false, pool));
+                System.out.printf("%10d %12.1f %9.2fx%n", threads, parallel, sequential / parallel);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static double time(Lexing lexing) throws IllegalCharacterException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            lexing.lex();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    private interface Lexing {
+        TokenBuffer lex() throws IllegalCharacterException;
+    }
+}
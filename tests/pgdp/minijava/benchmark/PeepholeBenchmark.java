@@ -0,0 +1,65 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.CodeBuffer;
+import pgdp.minijava.Emitter;
+import pgdp.minijava.MiniJvm;
+import pgdp.minijava.Parser;
+import pgdp.minijava.PeepholeOptimizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Regression benchmark for the {@link PeepholeOptimizer}. Runs the programs in {@code resources} and one
+ * full of comparisons on a {@link MiniJvm} before and after optimizing them, and compares the number of
+ * instructions in the code and executed for the same inputs. The optimized code has to print the same.
+ */
+public class PeepholeBenchmark {
+    private static final String COMPARISONS = """
+            int i, j, n, hits;
+            n = readInt();
+            i = 0;
+            while (n > i) {
+                j = n;
+                while (j >= i) {
+                    if (!(i * j % 7 != 3)) {
+                        hits = hits + 1;
+                    } else {
+                    }
+                    j = j - 1;
+                }
+                i = i + 1;
+            }
+            write(hits);
+            """;
+
+    public static void main(String[] args) throws IOException {
+        var jvm = new MiniJvm(Integer.MAX_VALUE);
+        System.out.printf("%-14s %10s %10s %14s %14s %12s%n", "program", "size", "optimized", "executed",
+                "optimized", "time [ms]");
+        List<String> names = List.of("prim.java", "input.java", "comparisons");
+        List<String> sources = List.of(Files.readString(Path.of("resources/prim.java")),
+                Files.readString(Path.of("resources/input.java")), COMPARISONS);
+        for (int p = 0; p < sources.size(); p++) {
+            CodeBuffer code = Emitter.emitCode(Parser.parse(sources.get(p), null, true));
+            CodeBuffer optimized = Emitter.emitCode(Parser.parse(sources.get(p), null, true));
+            long start = System.nanoTime();
+            PeepholeOptimizer.standard().optimize(optimized);
+            double time = (System.nanoTime() - start) / 1e6;
+            long executed = 0;
+            long executedOptimized = 0;
+            for (int input = 0; input < 200; input++) {
+                var output = jvm.run(code, input, 2, 3, 1);
+                executed += jvm.getExecuted();
+                if (!output.equals(jvm.run(optimized, input, 2, 3, 1))) {
+                    throw new IllegalStateException("The optimized " + names.get(p) + " prints something else");
+                }
+                executedOptimized += jvm.getExecuted();
+            }
+            System.out.printf("%-14s %10d %10d %14d %14d %12.2f%n", names.get(p), code.size(), optimized.size(),
+                    executed, executedOptimized, time);
+        }
+    }
+}
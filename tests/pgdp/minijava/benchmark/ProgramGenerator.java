@@ -0,0 +1,41 @@
+package pgdp.minijava.benchmark;
+
+/**
+ * Generates large, valid miniJava programs for the benchmarks.
+ */
+class ProgramGenerator {
+    private ProgramGenerator() {
+
+    }
+
+    static String generate(int blocks) {
+        StringBuilder out = new StringBuilder();
+        out.append("int number, divisor, sum, i;\n");
+        out.append("boolean prim;\n");
+        out.append("number = readInt();\n");
+        for (int b = 0; b < blocks; b++) {
+            out.append("block").append(b).append(": {\n");
+            out.append("    int local").append(b).append(" = number * ").append(b % 97).append(" + 3;\n");
+            out.append("    divisor = 2;\n");
+            out.append("    prim = true;\n");
+            out.append("    while (divisor * divisor <= number && prim) {\n");
+            out.append("        if (number % divisor == 0) {\n");
+            out.append("            prim = false;\n");
+            out.append("        } else {\n");
+            out.append("            sum = sum + (local").append(b).append(" - divisor) / 2;\n");
+            out.append("        }\n");
+            out.append("        divisor = divisor + 1;\n");
+            out.append("    }\n");
+            out.append("    i = -").append(b).append(";\n");
+            out.append("    write(sum);\n");
+            out.append("}\n");
+        }
+        out.append("write(number);\n");
+        return out.toString();
+    }
+
+    static String generateOfSize(int chars) {
+        int perBlock = generate(1).length() - generate(0).length();
+        return generate(Math.max(1, chars / perBlock));
+    }
+}
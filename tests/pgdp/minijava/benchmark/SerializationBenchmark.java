@@ -0,0 +1,48 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.Parser;
+import pgdp.minijava.ast.SyntaxTreeCodec;
+import pgdp.minijava.ast.SyntaxTreeNode;
+
+/**
+ * Compares parsing a generated program with decoding its tree from the binary format of
+ * {@link SyntaxTreeCodec}, for the debug and the lean tree. Decoding should be several times faster.
+ * <p>
+ * Run with an optional number of generated blocks as argument.
+ */
+public class SerializationBenchmark {
+    public static void main(String[] args) {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        String source = ProgramGenerator.generate(blocks);
+        System.out.printf("%d characters%n", source.length());
+        System.out.printf("%8s %12s %12s %12s %10s%n", "tree", "bytes", "parse [ms]", "decode [ms]", "speedup");
+        for (int round = 0; round < 3; round++) {
+            measure("debug", source, false);
+            measure("lean", source, true);
+        }
+    }
+
+    private static void measure(String name, String source, boolean lean) {
+        long parse = Long.MAX_VALUE;
+        SyntaxTreeNode tree = null;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            tree = Parser.parse(source, null, lean);
+            parse = Math.min(parse, System.nanoTime() - start);
+        }
+        byte[] bytes = SyntaxTreeCodec.encode(tree);
+
+        long decode = Long.MAX_VALUE;
+        SyntaxTreeNode decoded = null;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            decoded = SyntaxTreeCodec.decode(bytes);
+            decode = Math.min(decode, System.nanoTime() - start);
+        }
+        if (!decoded.equals(tree)) {
+            throw new IllegalStateException("Decoded tree differs from the parsed one");
+        }
+        System.out.printf("%8s %12d %12.1f %12.1f %9.1fx%n", name, bytes.length, parse / 1e6, decode / 1e6,
+                (double) parse / decode);
+    }
+}
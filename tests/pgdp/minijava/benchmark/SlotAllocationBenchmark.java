@@ -0,0 +1,80 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.CodeBuffer;
+import pgdp.minijava.Emitter;
+import pgdp.minijava.MiniJvm;
+import pgdp.minijava.Opcode;
+import pgdp.minijava.Parser;
+import pgdp.minijava.SlotAllocator;
+
+/**
+ * Regression benchmark for the {@link SlotAllocator}. Generates programs of doubling size made of blocks
+ * with temporaries of their own, as generated code tends to be, and compares the slots the code allocates
+ * and the most stack cells a run on the {@link MiniJvm} uses at once before and after allocating the
+ * slots by liveness, along with the time that takes.
+ * <p>
+ * Run with an optional maximum number of blocks as argument.
+ */
+public class SlotAllocationBenchmark {
+    public static void main(String[] args) {
+        int maxBlocks = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        var jvm = new MiniJvm(100_000_000);
+        System.out.printf("%10s %12s %12s %12s %12s %12s%n", "blocks", "allocated", "after",
+                "footprint", "after", "time [ms]");
+        for (int blocks = 1_000; blocks <= maxBlocks; blocks *= 2) {
+            String source = generate(blocks);
+            CodeBuffer code = Emitter.emitCode(Parser.parse(source, null, true));
+            int allocated = allocations(code);
+            var expected = jvm.run(code, 7);
+            int footprint = jvm.getFootprint();
+            double best = Double.MAX_VALUE;
+            int frame = 0;
+            for (int round = 0; round < 5; round++) {
+                code = Emitter.emitCode(Parser.parse(source, null, true));
+                long start = System.nanoTime();
+                frame = SlotAllocator.allocate(code);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            if (!expected.equals(jvm.run(code, 7))) {
+                throw new IllegalStateException("Allocated code behaves differently");
+            }
+            System.out.printf("%10d %12d %12d %12d %12d %12.2f%n", blocks, allocated, frame, footprint,
+                    jvm.getFootprint(), best);
+        }
+    }
+
+    private static String generate(int blocks) {
+        StringBuilder out = new StringBuilder();
+        out.append("int n, i, sum;\n");
+        out.append("n = readInt();\n");
+        for (int b = 0; b < blocks; b++) {
+            out.append("{\n");
+            out.append("    int t").append(b).append(", u").append(b).append(";\n");
+            out.append("    t").append(b).append(" = n * ").append(b % 89).append(";\n");
+            if (b % 8 == 0) {
+                out.append("    i = 0;\n");
+                out.append("    u").append(b).append(" = 0;\n");
+                out.append("    while (i < 3) {\n");
+                out.append("        u").append(b).append(" = u").append(b).append(" + t").append(b).append(";\n");
+                out.append("        i = i + 1;\n");
+                out.append("    }\n");
+            } else {
+                out.append("    u").append(b).append(" = t").append(b).append(" - ").append(b % 13).append(";\n");
+            }
+            out.append("    sum = sum + u").append(b).append(";\n");
+            out.append("}\n");
+        }
+        out.append("write(sum);\n");
+        return out.toString();
+    }
+
+    private static int allocations(CodeBuffer code) {
+        int total = 0;
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == Opcode.ALLOC) {
+                total += code.operand(i);
+            }
+        }
+        return total;
+    }
+}
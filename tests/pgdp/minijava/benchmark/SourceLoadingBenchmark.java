@@ -0,0 +1,72 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.SourceReader;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Regression benchmark for {@link SourceReader}. Loads generated sources of doubling size with the old
+ * line concatenating reader and the memory mapped reader; the time per line has to stay flat for the latter.
+ * <p>
+ * Run with an optional maximum line count as argument.
+ */
+public class SourceLoadingBenchmark {
+    private static final int LEGACY_LIMIT = 40_000;
+
+    public static void main(String[] args) throws IOException {
+        int maxLines = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        Path file = Files.createTempFile("minijava", ".java");
+        try {
+            System.out.printf("%10s %14s %14s%n", "lines", "legacy [ms]", "mapped [ms]");
+            for (int blocks = 400; ; blocks *= 2) {
+                String source = ProgramGenerator.generate(blocks);
+                long lines = source.lines().count();
+                if (lines > maxLines) {
+                    break;
+                }
+                Files.writeString(file, source);
+                String legacy = lines <= LEGACY_LIMIT ? String.format("%14.1f", time(() -> readLegacy(file))) : String.format("%14s", "-");
+                double mapped = time(() -> checksum(SourceReader.read(file)));
+                if (!SourceReader.read(file).toString().equals(source)) {
+                    throw new IllegalStateException("Mapped source differs from the file content");
+                }
+                System.out.printf("%10d %s %14.1f%n", lines, legacy, mapped);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String readLegacy(Path file) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(file.toFile(), Charset.defaultCharset()))) {
+            return br.lines().reduce("", (s, str) -> s.concat(str).concat("\n"));
+        }
+    }
+
+    private static int checksum(CharSequence source) {
+        int sum = 0;
+        for (int i = 0; i < source.length(); i++) {
+            sum += source.charAt(i);
+        }
+        return sum;
+    }
+
+    private static double time(Loader loader) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            loader.load();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    private interface Loader {
+        Object load() throws IOException;
+    }
+}
@@ -0,0 +1,80 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.Token;
+import pgdp.minijava.TokenBuffer;
+import pgdp.minijava.Tokenizer;
+import pgdp.minijava.exceptions.IllegalCharacterException;
+
+import java.util.List;
+
+/**
+ * Compares the table driven {@link Tokenizer} against the regex based {@link LegacyTokenizer} and
+ * measures the memory of a {@link Token} list against a {@link TokenBuffer}.
+ * <p>
+ * Run with an optional source size in megabytes as argument.
+ */
+public class TokenizerBenchmark {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IllegalCharacterException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        String source = ProgramGenerator.generateOfSize(megabytes << 20);
+        System.out.println("Source: " + source.length() + " chars, " + source.lines().count() + " lines");
+
+        List<Token> expected = LegacyTokenizer.tokenize(source);
+        List<Token> actual = Tokenizer.tokenize(source);
+        verify(expected, actual);
+        System.out.println("Token streams identical: " + actual.size() + " tokens");
+
+        long legacy = Long.MAX_VALUE;
+        long table = Long.MAX_VALUE;
+        long buffer = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            LegacyTokenizer.tokenize(source);
+            legacy = Math.min(legacy, System.nanoTime() - start);
+            start = System.nanoTime();
+            Tokenizer.tokenize(source);
+            table = Math.min(table, System.nanoTime() - start);
+            start = System.nanoTime();
+            TokenBuffer.tokenize(source, true);
+            buffer = Math.min(buffer, System.nanoTime() - start);
+        }
+        System.out.printf("Legacy tokenizer: %8.1f ms%n", legacy / 1e6);
+        System.out.printf("Table tokenizer:  %8.1f ms%n", table / 1e6);
+        System.out.printf("Token buffer:     %8.1f ms%n", buffer / 1e6);
+        System.out.printf("Speedup:          %8.1fx%n", (double) legacy / table);
+
+        long base = usedMemory();
+        List<Token> list = LegacyTokenizer.tokenize(source);
+        long listBytes = usedMemory() - base;
+        System.out.printf("Token list:       %8.1f bytes per token%n", (double) listBytes / list.size());
+        list = null;
+        base = usedMemory();
+        TokenBuffer tokens = TokenBuffer.tokenize(source, true);
+        long bufferBytes = usedMemory() - base;
+        System.out.printf("Token buffer:     %8.1f bytes per token%n", (double) bufferBytes / tokens.size());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void verify(List<Token> expected, List<Token> actual) {
+        if (expected.size() != actual.size()) {
+            throw new IllegalStateException("Token count differs: " + expected.size() + " vs " + actual.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Token e = expected.get(i);
+            Token a = actual.get(i);
+            if (e.getTokenType() != a.getTokenType() || e.getLine() != a.getLine()
+                    || !e.getContentAsString().equals(a.getContentAsString())) {
+                throw new IllegalStateException("Token " + i + " differs: " + e + " vs " + a);
+            }
+        }
+    }
+}
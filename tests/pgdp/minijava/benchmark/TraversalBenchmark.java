@@ -0,0 +1,98 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.Emitter;
+import pgdp.minijava.Parser;
+import pgdp.minijava.ast.NodeView;
+import pgdp.minijava.ast.SyntaxTreeNode;
+import pgdp.minijava.ast.TreeCursor;
+import pgdp.minijava.ast.TreeVisitor;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Walks one large lean tree in the different ways the passes do and prints the time and the bytes
+ * allocated per node. The walks themselves shouldn't allocate per node; the emitter allocates for the
+ * code it produces.
+ * <p>
+ * Run with an optional number of generated blocks as argument, the default gives about 10M nodes and
+ * needs a heap of a few GB ({@code -Xmx4g}). The emitter is measured on a tenth of the blocks.
+ */
+public class TraversalBenchmark {
+    public static void main(String[] args) {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 125_000;
+        SyntaxTreeNode tree = Parser.parse(ProgramGenerator.generate(blocks), null, true);
+        var cursor = new TreeCursor();
+        long nodes = preorder(cursor, tree);
+        System.out.printf("%d nodes%n", nodes);
+        System.out.printf("%12s %12s %16s%n", "walk", "time [ms]", "bytes per node");
+        for (int round = 0; round < 3; round++) {
+            measure("preorder", nodes, () -> preorder(cursor, tree));
+            measure("postorder", nodes, () -> postorder(cursor, tree));
+            measure("visitor", nodes, () -> visit(cursor, tree));
+            measure("iterator", nodes, () -> iterate(tree));
+        }
+        SyntaxTreeNode small = Parser.parse(ProgramGenerator.generate(Math.max(1, blocks / 10)), null, true);
+        long smallNodes = preorder(cursor, small);
+        for (int round = 0; round < 3; round++) {
+            measure("emit", smallNodes, () -> Emitter.emit(small).length());
+        }
+    }
+
+    private static long preorder(TreeCursor cursor, NodeView tree) {
+        long count = 0;
+        cursor.reset(tree, TreeCursor.Order.PREORDER);
+        while (cursor.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static long postorder(TreeCursor cursor, NodeView tree) {
+        long count = 0;
+        cursor.reset(tree, TreeCursor.Order.POSTORDER);
+        while (cursor.next()) {
+            count += cursor.depth() >= 0 ? 1 : 0;
+        }
+        return count;
+    }
+
+    private static long visit(TreeCursor cursor, NodeView tree) {
+        var counter = new TreeVisitor() {
+            long names;
+
+            @Override
+            public boolean visitName(NodeView node) {
+                names++;
+                return false;
+            }
+        };
+        cursor.walk(tree, counter);
+        return counter.names;
+    }
+
+    private static long iterate(SyntaxTreeNode tree) {
+        long count = 0;
+        for (SyntaxTreeNode ignored : tree) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void measure(String name, long nodes, Walk walk) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long result = walk.run();
+        long time = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        if (result < 0) {
+            throw new IllegalStateException();
+        }
+        System.out.printf("%12s %12d %16.3f%n", name, time / 1_000_000, (double) allocated / nodes);
+    }
+
+    private interface Walk {
+        long run();
+    }
+}
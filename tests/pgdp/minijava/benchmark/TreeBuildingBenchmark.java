@@ -0,0 +1,45 @@
+package pgdp.minijava.benchmark;
+
+import pgdp.minijava.Parser;
+import pgdp.minijava.ast.SyntaxTreeNode;
+
+/**
+ * Regression benchmark for building wide trees. Adds up to a million statements to a single PROGRAM
+ * node, directly and by parsing a program of that many statements. With amortized child storage the
+ * time per statement stays flat as the program grows.
+ * <p>
+ * Run with an optional maximum number of statements as argument.
+ */
+public class TreeBuildingBenchmark {
+    public static void main(String[] args) {
+        int maxStatements = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%12s %18s %18s%n", "statements", "add [ns/stmt]", "parse [ns/stmt]");
+        for (int statements = maxStatements / 8; statements <= maxStatements; statements *= 2) {
+            String source = "int a;\n" + "a = a + 1;\n".repeat(statements);
+
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 3; i++) {
+                long start = System.nanoTime();
+                var root = new SyntaxTreeNode(SyntaxTreeNode.Type.PROGRAM, "");
+                for (int s = 0; s < statements; s++) {
+                    root.addChild(new SyntaxTreeNode(SyntaxTreeNode.Type.STMT, ""));
+                }
+                root.freeze();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double add = (double) best / statements;
+
+            best = Long.MAX_VALUE;
+            for (int i = 0; i < 3; i++) {
+                long start = System.nanoTime();
+                var tree = Parser.parseFromString(source);
+                best = Math.min(best, System.nanoTime() - start);
+                if (tree.getNumberChildren() != statements + 1) {
+                    throw new IllegalStateException("Parsed the wrong number of statements");
+                }
+            }
+            double parse = (double) best / statements;
+            System.out.printf("%12d %18.1f %18.1f%n", statements, add, parse);
+        }
+    }
+}